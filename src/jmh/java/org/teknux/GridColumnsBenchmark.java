@@ -0,0 +1,124 @@
+package org.teknux;
+
+import com.amazonaws.regions.Regions;
+import com.vaadin.data.provider.Query;
+import com.vaadin.data.provider.QuerySortOrder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.teknux.api.model.Ec2States;
+import org.teknux.benchmark.SyntheticFleet;
+import org.teknux.service.ServiceException;
+import org.teknux.service.ServiceManager;
+import org.teknux.service.automation.*;
+import org.teknux.service.broadcast.InventoryDelta;
+import org.teknux.service.client.Ec2ClientServiceImpl;
+import org.teknux.service.client.IEc2ClientService;
+import org.teknux.service.inventory.InstanceFilter;
+import org.teknux.service.inventory.InstanceRow;
+import org.teknux.ui.data.InstanceDataProvider;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pages of instance rows as requested by the grid while scrolling, each row going through the column functions of
+ * {@link AppUI}; a tenth of the instances have plans
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridColumnsBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+    private static final List<QuerySortOrder> BY_NAME = QuerySortOrder.asc(InstanceDataProvider.SORT_NAME).build();
+    private static final InstanceFilter RUNNING = new InstanceFilter(null, EnumSet.of(Ec2States.RUNNING), null, null);
+    private static final InstanceFilter STOPPED = new InstanceFilter(null, EnumSet.of(Ec2States.STOPPED), null, null);
+
+    @Param({"1000", "10000", "100000"})
+    public int instances;
+
+    private SchedulerServiceImpl scheduler;
+    private InstanceDataProvider dataProvider;
+    private final AppUI.RegionCaptionGenerator regionCaptionGenerator = new AppUI.RegionCaptionGenerator();
+    private int offset;
+    private boolean running;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ServiceException {
+        System.setProperty(SchedulerServiceImpl.JOURNAL_DIR_PROPERTY, "");
+        scheduler = new SchedulerServiceImpl();
+        final Ec2AutomationServiceImpl automationService = new Ec2AutomationServiceImpl();
+        final ServiceManager serviceManager = new ServiceManager();
+        serviceManager.addService(ISchedulerService.class, scheduler);
+        serviceManager.addService(IEc2ClientService.class, new Ec2ClientServiceImpl());
+        serviceManager.addService(IEc2AutomationService.class, automationService);
+        scheduler.start();
+
+        final LocalDateTime base = LocalDateTime.now().plusDays(7);
+        for (int i = 0; i < instances; i += 10) {
+            final LocalDateTime start = base.plusMinutes(i);
+            automationService.runBetween(SyntheticFleet.instanceId(i), SyntheticFleet.region(i), () -> start, () -> start.plusHours(8));
+        }
+
+        dataProvider = new InstanceDataProvider(automationService);
+        final int perRegion = instances / SyntheticFleet.REGIONS.length;
+        for (int r = 0; r < SyntheticFleet.REGIONS.length; r++) {
+            final Regions region = SyntheticFleet.REGIONS[r];
+            dataProvider.apply(InventoryDelta.initial(SyntheticFleet.snapshot(region, SyntheticFleet.instances(r * perRegion, perRegion, r))));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws ServiceException {
+        scheduler.stop();
+    }
+
+    private void render(Iterator<InstanceRow> rows, Blackhole blackhole) {
+        while (rows.hasNext()) {
+            final InstanceRow row = rows.next();
+            blackhole.consume(row.getName());
+            blackhole.consume(AppUI.formatState(row));
+            blackhole.consume(row.getInstanceId());
+            blackhole.consume(regionCaptionGenerator.apply(row.getRegion()));
+            blackhole.consume(AppUI.formatPublicIp(row));
+            blackhole.consume(row.getLaunchTime());
+            blackhole.consume(AppUI.formatSchedule(row.getStartSchedule()));
+            blackhole.consume(AppUI.formatSchedule(row.getStopSchedule()));
+        }
+    }
+
+    /**
+     * Next page of the sorted rows, the selection being cached by the data provider
+     */
+    @Benchmark
+    public void scroll(Blackhole blackhole) {
+        offset = offset + PAGE_SIZE >= instances ? 0 : offset + PAGE_SIZE;
+        render(dataProvider.fetch(new Query<>(offset, PAGE_SIZE, BY_NAME, null, null)).iterator(), blackhole);
+    }
+
+    /**
+     * Size then first page of another filter, as requested when the state filter changes
+     */
+    @Benchmark
+    public void filter(Blackhole blackhole) {
+        running = !running;
+        final InstanceFilter filter = running ? RUNNING : STOPPED;
+        blackhole.consume(dataProvider.size(new Query<>(0, Integer.MAX_VALUE, BY_NAME, null, filter)));
+        render(dataProvider.fetch(new Query<>(0, PAGE_SIZE, BY_NAME, null, filter)).iterator(), blackhole);
+    }
+
+    /**
+     * Rows of a whole page without the column functions, to tell their share
+     */
+    @Benchmark
+    public void fetchOnly(Blackhole blackhole) {
+        offset = offset + PAGE_SIZE >= instances ? 0 : offset + PAGE_SIZE;
+        dataProvider.fetch(new Query<>(offset, PAGE_SIZE, BY_NAME, null, null)).forEach(blackhole::consume);
+    }
+}
@@ -0,0 +1,35 @@
+package org.teknux.api.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State lookups done for every instance row built, going through every state code and name in turn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Ec2StatesBenchmark {
+
+    //272 is running on some hosts, with the high byte set
+    private final int[] codes = {0, 16, 32, 48, 64, 80, 272, 99};
+    private final String[] names = {"pending", "running", "shutting-down", "terminated", "stopping", "stopped", "unknown"};
+    private int next;
+
+    @Benchmark
+    public Optional<Ec2States> fromCode() {
+        next = next + 1 == codes.length ? 0 : next + 1;
+        return Ec2States.fromCode(codes[next]);
+    }
+
+    @Benchmark
+    public Optional<Ec2States> fromName() {
+        next = next + 1 == names.length ? 0 : next + 1;
+        return Ec2States.fromName(names[next]);
+    }
+}
@@ -0,0 +1,109 @@
+package org.teknux.benchmark;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.ec2.model.Address;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.amazonaws.services.ec2.model.Tag;
+import org.teknux.api.model.Ec2States;
+import org.teknux.service.inventory.InventorySnapshot;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Reproducible fleets of instances and elastic IPs shaped like DescribeInstances and DescribeAddresses results
+ */
+public final class SyntheticFleet {
+
+    public static final Regions[] REGIONS = {Regions.EU_WEST_1, Regions.EU_CENTRAL_1, Regions.US_EAST_1, Regions.US_WEST_2};
+
+    private static final Ec2States[] STATES = {Ec2States.RUNNING, Ec2States.RUNNING, Ec2States.RUNNING, Ec2States.STOPPED, Ec2States.STOPPED, Ec2States.PENDING, Ec2States.STOPPING, Ec2States.TERMINATED};
+    private static final String[] TEAMS = {"build", "web", "batch", "db", "search", "cache", "ml", "qa"};
+    private static final long LAUNCH_EPOCH_MS = 1483228800000L;
+
+    private SyntheticFleet() {
+    }
+
+    public static String instanceId(int i) {
+        return String.format("i-%017x", i);
+    }
+
+    public static Regions region(int i) {
+        return REGIONS[i % REGIONS.length];
+    }
+
+    /**
+     * @return instances 0 to count - 1, every third one having a public IP
+     */
+    public static Set<Instance> instances(int count, long seed) {
+        return instances(0, count, seed);
+    }
+
+    public static Set<Instance> instances(int first, int count, long seed) {
+        final Random random = new Random(seed);
+        final Set<Instance> instances = new LinkedHashSet<>(count * 2);
+        for (int i = first; i < first + count; i++) {
+            instances.add(instance(i, STATES[random.nextInt(STATES.length)], random));
+        }
+        return instances;
+    }
+
+    private static Instance instance(int i, Ec2States state, Random random) {
+        return new Instance()
+                .withInstanceId(instanceId(i))
+                .withInstanceType("t2.medium")
+                .withState(state(state))
+                .withPublicIpAddress(i % 3 == 0 ? publicIp(i) : null)
+                .withPrivateIpAddress(String.format("10.%d.%d.%d", (i >> 16) & 0xFF, (i >> 8) & 0xFF, i & 0xFF))
+                .withLaunchTime(new Date(LAUNCH_EPOCH_MS + random.nextInt(Integer.MAX_VALUE) * 100L))
+                .withTags(new Tag("Name", String.format("%s-%s-%05d", TEAMS[random.nextInt(TEAMS.length)], random.nextBoolean() ? "prod" : "dev", i)),
+                        new Tag("team", TEAMS[i % TEAMS.length]));
+    }
+
+    private static InstanceState state(Ec2States state) {
+        return new InstanceState().withCode(state.getCode()).withName(state.getName());
+    }
+
+    private static String publicIp(int i) {
+        return String.format("52.%d.%d.%d", (i >> 16) & 0xFF, (i >> 8) & 0xFF, i & 0xFF);
+    }
+
+    /**
+     * @return elastic IPs associated with one in ten of the instances having a public IP
+     */
+    public static List<Address> elasticIPs(Collection<Instance> instances) {
+        final List<Address> addresses = new ArrayList<>();
+        int publicIps = 0;
+        for (Instance instance : instances) {
+            if (instance.getPublicIpAddress() != null && publicIps++ % 10 == 0) {
+                addresses.add(new Address()
+                        .withPublicIp(instance.getPublicIpAddress())
+                        .withInstanceId(instance.getInstanceId())
+                        .withDomain("vpc")
+                        .withAllocationId("eipalloc-" + instance.getInstanceId().substring(2)));
+            }
+        }
+        return addresses;
+    }
+
+    public static InventorySnapshot snapshot(Regions region, Set<Instance> instances) {
+        return new InventorySnapshot(region, instances, elasticIPs(instances), LocalDateTime.now());
+    }
+
+    /**
+     * @return copies of the instances, one in a hundred having changed state
+     */
+    public static Set<Instance> changed(Set<Instance> instances) {
+        final Set<Instance> changed = new LinkedHashSet<>(instances.size() * 2);
+        int i = 0;
+        for (Instance instance : instances) {
+            final Instance copy = instance.clone();
+            if (i++ % 100 == 0) {
+                copy.setState(state(Ec2States.RUNNING.getCode() == instance.getState().getCode() ? Ec2States.STOPPING : Ec2States.PENDING));
+            }
+            changed.add(copy);
+        }
+        return changed;
+    }
+}
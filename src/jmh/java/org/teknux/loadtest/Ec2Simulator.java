@@ -0,0 +1,546 @@
+package org.teknux.loadtest;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.services.ec2.AbstractAmazonEC2Async;
+import com.amazonaws.services.ec2.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.teknux.api.model.Ec2States;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-process stand-in of the EC2 API of one region, for load tests without an AWS account.
+ * The fleet is generated on creation; instances started or stopped go through pending or stopping for a while,
+ * and a few of them may change state on their own (churn). Calls take a log-normally distributed time and are
+ * throttled with RequestLimitExceeded by token buckets like EC2 ones. DescribeInstances honours MaxResults, NextToken
+ * and the filters used by this application.
+ * <p>
+ * Requests go through the given request handlers and retry policy the way the SDK client runs them, so that the
+ * rate limiter, concurrency cap and retry budget of the client service are exercised as against EC2.
+ * Only the calls used by this application are simulated, the others are unsupported.
+ */
+public class Ec2Simulator extends AbstractAmazonEC2Async {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Ec2Simulator.class);
+
+    public static final String INSTANCES_PROPERTY = "ec2.simulator.instances";
+    public static final String LATENCY_MEDIAN_PROPERTY = "ec2.simulator.latencyMedianMs";
+    public static final String LATENCY_P99_PROPERTY = "ec2.simulator.latencyP99Ms";
+    public static final String LATENCY_PER_INSTANCE_PROPERTY = "ec2.simulator.latencyPerInstanceUs";
+    public static final String DESCRIBE_RATE_PROPERTY = "ec2.simulator.describeRate";
+    public static final String DESCRIBE_BURST_PROPERTY = "ec2.simulator.describeBurst";
+    public static final String MUTATE_RATE_PROPERTY = "ec2.simulator.mutateRate";
+    public static final String MUTATE_BURST_PROPERTY = "ec2.simulator.mutateBurst";
+    public static final String TRANSITION_PROPERTY = "ec2.simulator.transitionMs";
+    public static final String CHURN_PROPERTY = "ec2.simulator.churnPerMinute";
+
+    private static final String SERVICE_NAME = "AmazonEC2";
+    //z-score of the 99th percentile of the normal distribution
+    private static final double Z_99 = 2.326;
+
+    private final Regions region;
+    private final ExecutorService executor;
+    private final SimulatedInstance[] fleet;
+    private final Map<String, SimulatedInstance> byId;
+    private final List<Address> elasticIPs = new ArrayList<>();
+    private final double latencyMu;
+    private final double latencySigma;
+    private final long latencyPerInstanceNanos;
+    private final TokenBucket describeBucket;
+    private final TokenBucket mutateBucket;
+    private final long transitionMs;
+    private final double churnPerMs;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    private List<RequestHandler2> requestHandlers = Collections.emptyList();
+    private RetryPolicy retryPolicy = PredefinedRetryPolicies.NO_RETRY_POLICY;
+    private long lastChurnMs = System.currentTimeMillis();
+    private double pendingChurn;
+
+    /**
+     * Simulator configured from the ec2.simulator.* system properties
+     *
+     * @param executor runs the async calls, shut down with the simulator
+     */
+    public static Ec2Simulator fromSystemProperties(Regions region, ExecutorService executor) {
+        return new Ec2Simulator(region, executor,
+                Integer.getInteger(INSTANCES_PROPERTY, 1000),
+                Long.getLong(LATENCY_MEDIAN_PROPERTY, 50L),
+                Long.getLong(LATENCY_P99_PROPERTY, 500L),
+                Long.getLong(LATENCY_PER_INSTANCE_PROPERTY, 20L),
+                Double.parseDouble(System.getProperty(DESCRIBE_RATE_PROPERTY, "20")), Integer.getInteger(DESCRIBE_BURST_PROPERTY, 100),
+                Double.parseDouble(System.getProperty(MUTATE_RATE_PROPERTY, "5")), Integer.getInteger(MUTATE_BURST_PROPERTY, 50),
+                Long.getLong(TRANSITION_PROPERTY, 15 * 1000L),
+                Double.parseDouble(System.getProperty(CHURN_PROPERTY, "0")));
+    }
+
+    /**
+     * @param instances            fleet size, a third of it running, a third stopped and the rest pending, stopping or terminated
+     * @param latencyMedianMs      median duration of a call
+     * @param latencyP99Ms         99th percentile duration of a call
+     * @param latencyPerInstanceUs time added per instance described
+     * @param transitionMs         time spent pending or stopping before running or stopped
+     * @param churnPerMinute       instances changing state on their own per minute
+     */
+    public Ec2Simulator(Regions region, ExecutorService executor, int instances, long latencyMedianMs, long latencyP99Ms, long latencyPerInstanceUs,
+                        double describeRate, int describeBurst, double mutateRate, int mutateBurst, long transitionMs, double churnPerMinute) {
+        this.region = region;
+        this.executor = executor;
+        this.latencyMu = Math.log(Math.max(1, latencyMedianMs));
+        this.latencySigma = latencyP99Ms > latencyMedianMs ? Math.log((double) latencyP99Ms / Math.max(1, latencyMedianMs)) / Z_99 : 0;
+        this.latencyPerInstanceNanos = TimeUnit.MICROSECONDS.toNanos(latencyPerInstanceUs);
+        this.describeBucket = new TokenBucket(describeRate, describeBurst);
+        this.mutateBucket = new TokenBucket(mutateRate, mutateBurst);
+        this.transitionMs = transitionMs;
+        this.churnPerMs = churnPerMinute / 60000;
+
+        this.fleet = new SimulatedInstance[instances];
+        this.byId = new HashMap<>(instances * 2);
+        final Random random = new Random(region.ordinal());
+        for (int i = 0; i < instances; i++) {
+            fleet[i] = new SimulatedInstance(region, i, random);
+            byId.put(fleet[i].id, fleet[i]);
+            if (fleet[i].elastic) {
+                elasticIPs.add(new Address().withPublicIp(fleet[i].publicIp).withInstanceId(fleet[i].id).withDomain("vpc")
+                        .withAllocationId(String.format("eipalloc-%02x%06x", region.ordinal(), i)));
+            }
+        }
+        LOG.info("Simulating EC2 in [{}] with [{}] instances", region.getName(), instances);
+    }
+
+    public Ec2Simulator withRequestHandlers(RequestHandler2... requestHandlers) {
+        this.requestHandlers = Arrays.asList(requestHandlers);
+        return this;
+    }
+
+    public Ec2Simulator withRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public Regions getRegion() {
+        return region;
+    }
+
+    /**
+     * @return attempts received, retries and throttled ones included
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * @return attempts rejected with RequestLimitExceeded
+     */
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    /**
+     * Runs a call through the request handlers, retrying it as allowed by the retry policy
+     */
+    private <Q extends AmazonWebServiceRequest, R> R invoke(Q originalRequest, TokenBucket bucket, Function<Q, R> operation) {
+        final Request<Q> request = new DefaultRequest<>(originalRequest, SERVICE_NAME);
+        requestHandlers.forEach(handler -> handler.beforeRequest(request));
+        int retries = 0;
+        while (true) {
+            try {
+                final R result = attempt(originalRequest, bucket, operation);
+                requestHandlers.forEach(handler -> handler.afterResponse(request, null));
+                return result;
+            } catch (AmazonServiceException e) {
+                if (retries >= retryPolicy.getMaxErrorRetry() || !retryPolicy.getRetryCondition().shouldRetry(originalRequest, e, retries)) {
+                    requestHandlers.forEach(handler -> handler.afterError(request, null, e));
+                    throw e;
+                }
+                pause(TimeUnit.MILLISECONDS.toNanos(retryPolicy.getBackoffStrategy().delayBeforeNextRetry(originalRequest, e, retries)));
+                retries++;
+            }
+        }
+    }
+
+    private <Q extends AmazonWebServiceRequest, R> R attempt(Q request, TokenBucket bucket, Function<Q, R> operation) {
+        calls.incrementAndGet();
+        if (!bucket.tryAcquire()) {
+            throttled.incrementAndGet();
+            pause(TimeUnit.MILLISECONDS.toNanos(5));
+            throw error("RequestLimitExceeded", "Request limit exceeded.", 503);
+        }
+        pause(latencyNanos());
+        return operation.apply(request);
+    }
+
+    private long latencyNanos() {
+        final double ms = Math.exp(latencyMu + latencySigma * ThreadLocalRandom.current().nextGaussian());
+        return (long) (ms * 1e6);
+    }
+
+    private static void pause(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException("Interrupted during a simulated call", e);
+        }
+    }
+
+    private static AmazonServiceException error(String errorCode, String message, int statusCode) {
+        final AmazonServiceException e = new AmazonServiceException(message);
+        e.setErrorCode(errorCode);
+        e.setStatusCode(statusCode);
+        e.setErrorType(statusCode >= 500 ? AmazonServiceException.ErrorType.Service : AmazonServiceException.ErrorType.Client);
+        e.setServiceName(SERVICE_NAME);
+        e.setRequestId(UUID.randomUUID().toString());
+        return e;
+    }
+
+    private <Q extends AmazonWebServiceRequest, R> Future<R> async(Q request, AsyncHandler<Q, R> asyncHandler, Function<Q, R> call) {
+        return executor.submit(() -> {
+            final R result;
+            try {
+                result = call.apply(request);
+            } catch (Exception e) {
+                if (asyncHandler != null) {
+                    asyncHandler.onError(e);
+                }
+                throw e;
+            }
+            if (asyncHandler != null) {
+                asyncHandler.onSuccess(request, result);
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public DescribeInstancesResult describeInstances(DescribeInstancesRequest request) {
+        return invoke(request, describeBucket, this::doDescribeInstances);
+    }
+
+    @Override
+    public Future<DescribeInstancesResult> describeInstancesAsync(DescribeInstancesRequest request, AsyncHandler<DescribeInstancesRequest, DescribeInstancesResult> asyncHandler) {
+        return async(request, asyncHandler, this::describeInstances);
+    }
+
+    private DescribeInstancesResult doDescribeInstances(DescribeInstancesRequest request) {
+        final Integer maxResults = request.getMaxResults();
+        if (maxResults != null && (maxResults < 5 || maxResults > 1000)) {
+            throw error("InvalidParameterValue", "MaxResults must be between 5 and 1000", 400);
+        }
+        if (maxResults != null && !request.getInstanceIds().isEmpty()) {
+            throw error("InvalidParameterCombination", "The parameter instancesSet cannot be used with the parameter maxResults", 400);
+        }
+        final int offset;
+        try {
+            offset = request.getNextToken() == null ? 0 : Integer.parseInt(request.getNextToken());
+        } catch (NumberFormatException e) {
+            throw error("InvalidParameterValue", "Invalid NextToken", 400);
+        }
+
+        final long now = System.currentTimeMillis();
+        final List<Reservation> reservations = new ArrayList<>();
+        int next = -1;
+        synchronized (this) {
+            churn(now);
+            final Collection<SimulatedInstance> candidates = candidates(request.getInstanceIds());
+            int matched = 0;
+            for (SimulatedInstance instance : candidates) {
+                if (!matches(instance, request.getFilters(), now)) {
+                    continue;
+                }
+                if (matched++ < offset) {
+                    continue;
+                }
+                if (maxResults != null && reservations.size() == maxResults) {
+                    next = matched - 1;
+                    break;
+                }
+                reservations.add(new Reservation()
+                        .withReservationId("r-" + instance.id.substring(2))
+                        .withOwnerId("123456789012")
+                        .withInstances(instance.describe(now)));
+            }
+        }
+        pause(latencyPerInstanceNanos * reservations.size());
+        return new DescribeInstancesResult().withReservations(reservations).withNextToken(next < 0 ? null : String.valueOf(next));
+    }
+
+    private Collection<SimulatedInstance> candidates(List<String> instanceIds) {
+        if (instanceIds.isEmpty()) {
+            return Arrays.asList(fleet);
+        }
+        final List<SimulatedInstance> instances = new ArrayList<>(instanceIds.size());
+        for (String instanceId : instanceIds) {
+            instances.add(instance(instanceId));
+        }
+        return instances;
+    }
+
+    private SimulatedInstance instance(String instanceId) {
+        final SimulatedInstance instance = byId.get(instanceId);
+        if (instance == null) {
+            throw error("InvalidInstanceID.NotFound", String.format("The instance ID '%s' does not exist", instanceId), 400);
+        }
+        return instance;
+    }
+
+    private boolean matches(SimulatedInstance instance, List<Filter> filters, long now) {
+        for (Filter filter : filters) {
+            final String name = filter.getName();
+            final String value;
+            if ("instance-id".equals(name)) {
+                value = instance.id;
+            } else if ("instance-state-code".equals(name)) {
+                value = String.valueOf(instance.state(now).getCode());
+            } else if ("instance-state-name".equals(name)) {
+                value = instance.state(now).getName();
+            } else if ("vpc-id".equals(name)) {
+                value = SimulatedInstance.VPC_ID;
+            } else if ("tag:Name".equals(name)) {
+                value = instance.name;
+            } else if ("tag-key".equals(name)) {
+                value = "Name";
+            } else if (name != null && name.startsWith("tag:")) {
+                return false;
+            } else {
+                throw error("InvalidParameterValue", String.format("The filter '%s' is invalid", name), 400);
+            }
+            if (!filter.getValues().contains(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts or stops random instances at the configured churn rate, since the previous describe
+     */
+    private void churn(long now) {
+        pendingChurn += (now - lastChurnMs) * churnPerMs;
+        lastChurnMs = now;
+        final Random random = ThreadLocalRandom.current();
+        for (; pendingChurn >= 1 && fleet.length > 0; pendingChurn--) {
+            final SimulatedInstance instance = fleet[random.nextInt(fleet.length)];
+            final Ec2States state = instance.state(now);
+            if (state == Ec2States.RUNNING) {
+                instance.transition(Ec2States.STOPPING, Ec2States.STOPPED, now, transitionMs);
+            } else if (state == Ec2States.STOPPED) {
+                instance.transition(Ec2States.PENDING, Ec2States.RUNNING, now, transitionMs);
+            }
+        }
+    }
+
+    @Override
+    public StartInstancesResult startInstances(StartInstancesRequest request) {
+        return invoke(request, mutateBucket, this::doStartInstances);
+    }
+
+    @Override
+    public Future<StartInstancesResult> startInstancesAsync(StartInstancesRequest request, AsyncHandler<StartInstancesRequest, StartInstancesResult> asyncHandler) {
+        return async(request, asyncHandler, this::startInstances);
+    }
+
+    private synchronized StartInstancesResult doStartInstances(StartInstancesRequest request) {
+        return new StartInstancesResult().withStartingInstances(change(request.getInstanceIds(), Ec2States.PENDING, Ec2States.RUNNING));
+    }
+
+    @Override
+    public StopInstancesResult stopInstances(StopInstancesRequest request) {
+        return invoke(request, mutateBucket, this::doStopInstances);
+    }
+
+    @Override
+    public Future<StopInstancesResult> stopInstancesAsync(StopInstancesRequest request, AsyncHandler<StopInstancesRequest, StopInstancesResult> asyncHandler) {
+        return async(request, asyncHandler, this::stopInstances);
+    }
+
+    private synchronized StopInstancesResult doStopInstances(StopInstancesRequest request) {
+        return new StopInstancesResult().withStoppingInstances(change(request.getInstanceIds(), Ec2States.STOPPING, Ec2States.STOPPED));
+    }
+
+    /**
+     * Moves the instances to the transient state then to the target one, as a whole or not at all like EC2 does
+     */
+    private List<InstanceStateChange> change(List<String> instanceIds, Ec2States transitional, Ec2States target) {
+        final long now = System.currentTimeMillis();
+        final List<SimulatedInstance> instances = new ArrayList<>(instanceIds.size());
+        for (String instanceId : instanceIds) {
+            final SimulatedInstance instance = instance(instanceId);
+            final Ec2States state = instance.state(now);
+            if (state == Ec2States.TERMINATED || state == Ec2States.SHUTTING_DOWN
+                    || (target == Ec2States.RUNNING && state == Ec2States.STOPPING)) {
+                throw error("IncorrectInstanceState", String.format("The instance '%s' is not in a state from which it can be %s", instanceId,
+                        target == Ec2States.RUNNING ? "started" : "stopped"), 400);
+            }
+            instances.add(instance);
+        }
+
+        final List<InstanceStateChange> changes = new ArrayList<>(instances.size());
+        for (SimulatedInstance instance : instances) {
+            final Ec2States previous = instance.state(now);
+            if (previous != target && previous != transitional) {
+                instance.transition(transitional, target, now, transitionMs);
+            }
+            changes.add(new InstanceStateChange()
+                    .withInstanceId(instance.id)
+                    .withPreviousState(instanceState(previous))
+                    .withCurrentState(instanceState(instance.state(now))));
+        }
+        return changes;
+    }
+
+    @Override
+    public DescribeAddressesResult describeAddresses(DescribeAddressesRequest request) {
+        return invoke(request, describeBucket, r -> new DescribeAddressesResult().withAddresses(new ArrayList<>(elasticIPs)));
+    }
+
+    @Override
+    public Future<DescribeAddressesResult> describeAddressesAsync(DescribeAddressesRequest request, AsyncHandler<DescribeAddressesRequest, DescribeAddressesResult> asyncHandler) {
+        return async(request, asyncHandler, this::describeAddresses);
+    }
+
+    @Override
+    public DescribeKeyPairsResult describeKeyPairs(DescribeKeyPairsRequest request) {
+        return invoke(request, describeBucket, r -> new DescribeKeyPairsResult().withKeyPairs(
+                new KeyPairInfo().withKeyName("simulated").withKeyFingerprint("00:00:00:00:00:00:00:00:00:00:00:00:00:00:00:00:00:00:00:00")));
+    }
+
+    @Override
+    public Future<DescribeKeyPairsResult> describeKeyPairsAsync(DescribeKeyPairsRequest request, AsyncHandler<DescribeKeyPairsRequest, DescribeKeyPairsResult> asyncHandler) {
+        return async(request, asyncHandler, this::describeKeyPairs);
+    }
+
+    @Override
+    public DescribeSecurityGroupsResult describeSecurityGroups(DescribeSecurityGroupsRequest request) {
+        return invoke(request, describeBucket, r -> new DescribeSecurityGroupsResult().withSecurityGroups(
+                new SecurityGroup().withGroupId("sg-00000001").withGroupName("default").withVpcId(SimulatedInstance.VPC_ID).withDescription("default VPC security group")));
+    }
+
+    @Override
+    public Future<DescribeSecurityGroupsResult> describeSecurityGroupsAsync(DescribeSecurityGroupsRequest request, AsyncHandler<DescribeSecurityGroupsRequest, DescribeSecurityGroupsResult> asyncHandler) {
+        return async(request, asyncHandler, this::describeSecurityGroups);
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdownNow();
+        LOG.info("EC2 simulator of [{}] stopped after [{}] calls, [{}] throttled", region.getName(), calls.get(), throttled.get());
+    }
+
+    private static InstanceState instanceState(Ec2States state) {
+        return new InstanceState().withCode(state.getCode()).withName(state.getName());
+    }
+
+    /**
+     * Instance whose state moves from a transient state to a target one once its transition is over
+     */
+    private static class SimulatedInstance {
+
+        static final String VPC_ID = "vpc-00000001";
+
+        private static final Ec2States[] INITIAL_STATES = {Ec2States.RUNNING, Ec2States.RUNNING, Ec2States.RUNNING, Ec2States.RUNNING,
+                Ec2States.STOPPED, Ec2States.STOPPED, Ec2States.STOPPED, Ec2States.STOPPED, Ec2States.TERMINATED, Ec2States.PENDING, Ec2States.STOPPING};
+        private static final String[] TEAMS = {"build", "web", "batch", "db", "search", "cache", "ml", "qa"};
+
+        final String id;
+        final String name;
+        final String publicIp;
+        final boolean elastic;
+        private final Instance template;
+
+        private Ec2States state;
+        private Ec2States target;
+        private long targetAt;
+
+        SimulatedInstance(Regions region, int index, Random random) {
+            this.id = String.format("i-%02x%015x", region.ordinal(), index);
+            this.name = String.format("%s-%s-%05d", TEAMS[random.nextInt(TEAMS.length)], random.nextBoolean() ? "prod" : "dev", index);
+            this.publicIp = index % 3 == 0 ? String.format("52.%d.%d.%d", region.ordinal() * 8 + ((index >> 16) & 0x7), (index >> 8) & 0xFF, index & 0xFF) : null;
+            this.elastic = index % 30 == 0;
+            this.state = INITIAL_STATES[random.nextInt(INITIAL_STATES.length)];
+            //instances found in a transient state settle like the others
+            this.target = state == Ec2States.PENDING ? Ec2States.RUNNING : state == Ec2States.STOPPING ? Ec2States.STOPPED : state;
+            this.targetAt = System.currentTimeMillis() + random.nextInt(10000);
+            this.template = new Instance()
+                    .withInstanceId(id)
+                    .withImageId("ami-00000001")
+                    .withInstanceType(index % 4 == 0 ? "m4.large" : "t2.medium")
+                    .withKeyName("simulated")
+                    .withVpcId(VPC_ID)
+                    .withSubnetId("subnet-00000001")
+                    .withPlacement(new Placement(region.getName() + (char) ('a' + index % 3)))
+                    .withPrivateIpAddress(String.format("10.%d.%d.%d", (index >> 16) & 0xFF, (index >> 8) & 0xFF, index & 0xFF))
+                    .withLaunchTime(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1 + random.nextInt(700))))
+                    .withTags(new Tag("Name", name));
+        }
+
+        Ec2States state(long now) {
+            if (state != target && now >= targetAt) {
+                state = target;
+            }
+            return state;
+        }
+
+        void transition(Ec2States transitional, Ec2States target, long now, long transitionMs) {
+            this.state = transitional;
+            this.target = target;
+            this.targetAt = now + transitionMs;
+        }
+
+        Instance describe(long now) {
+            final Ec2States current = state(now);
+            final Instance instance = template.clone().withState(instanceState(current));
+            //public IPs are released on stop, unless elastic
+            if (elastic || current == Ec2States.RUNNING || current == Ec2States.STOPPING) {
+                instance.setPublicIpAddress(publicIp);
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * EC2 request token bucket: a call takes a token or is throttled, tokens come back at the refill rate
+     */
+    private static class TokenBucket {
+
+        private final double ratePerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double ratePerSecond, int capacity) {
+            this.ratePerNano = ratePerSecond / 1e9;
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        synchronized boolean tryAcquire() {
+            final long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * ratePerNano);
+            refilledAt = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+}
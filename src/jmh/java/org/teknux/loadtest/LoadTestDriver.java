@@ -0,0 +1,368 @@
+package org.teknux.loadtest;
+
+import com.amazonaws.regions.Regions;
+import com.vaadin.data.provider.Query;
+import com.vaadin.data.provider.QuerySortOrder;
+import org.teknux.api.model.Ec2States;
+import org.teknux.service.ServiceManager;
+import org.teknux.service.automation.*;
+import org.teknux.service.background.BackgroundServiceImpl;
+import org.teknux.service.background.IBackgroundService;
+import org.teknux.service.broadcast.BroadcasterServiceImpl;
+import org.teknux.service.broadcast.IBroadcasterService;
+import org.teknux.service.broadcast.InventoryDelta;
+import org.teknux.service.bulk.BulkAction;
+import org.teknux.service.bulk.BulkActionServiceImpl;
+import org.teknux.service.bulk.IBulkActionService;
+import org.teknux.service.client.Ec2ClientMetrics;
+import org.teknux.service.client.Ec2ClientServiceImpl;
+import org.teknux.service.client.IEc2ClientService;
+import org.teknux.service.client.SimulatedEc2ClientService;
+import org.teknux.service.events.IInstanceEventService;
+import org.teknux.service.events.InstanceEventServiceImpl;
+import org.teknux.service.inventory.*;
+import org.teknux.ui.data.InstanceDataProvider;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the services as the servlet does against the EC2 simulator, with N simulated UI sessions and M plans coming due
+ * during the run, and prints AWS calls per second, refresh and UI action latencies, thread counts and heap usage.
+ * <p>
+ * A session subscribes to one or all regions like AppUI, applies every delta to its own {@link InstanceDataProvider},
+ * then scrolls, filters, checks and changes plans, or starts and stops a few instances, after each think time.
+ * Refresh latency is measured from the start of a region fetch to the session having applied the resulting delta.
+ * <p>
+ * Configured with system properties: loadtest.sessions, loadtest.plans, loadtest.durationSec, loadtest.thinkTimeMs,
+ * loadtest.reportIntervalSec, and the application ones; ec2.simulator.instances and ec2.regions get load test defaults.
+ */
+public class LoadTestDriver {
+
+    public static final String SESSIONS_PROPERTY = "loadtest.sessions";
+    public static final String PLANS_PROPERTY = "loadtest.plans";
+    public static final String DURATION_PROPERTY = "loadtest.durationSec";
+    public static final String THINK_TIME_PROPERTY = "loadtest.thinkTimeMs";
+    public static final String REPORT_INTERVAL_PROPERTY = "loadtest.reportIntervalSec";
+
+    private static final int PAGE_SIZE = 50;
+    private static final List<QuerySortOrder> BY_NAME = QuerySortOrder.asc(InstanceDataProvider.SORT_NAME).build();
+    private static final Ec2States[] FILTER_STATES = {Ec2States.RUNNING, Ec2States.STOPPED, Ec2States.PENDING};
+
+    private final ServiceManager serviceManager = new ServiceManager();
+    private final IEc2ClientService clientService = new SimulatedEc2ClientService();
+    private final IInventoryService inventoryService = new InventoryServiceImpl();
+    private final IBroadcasterService broadcasterService = new BroadcasterServiceImpl();
+    private final IBulkActionService bulkActionService = new BulkActionServiceImpl();
+    private final ISchedulerService schedulerService = new SchedulerServiceImpl();
+    private final IEc2AutomationService automationService = new Ec2AutomationServiceImpl();
+
+    private final LatencyRecorder refreshLatency = new LatencyRecorder();
+    private final LatencyRecorder actionLatency = new LatencyRecorder();
+    private final AtomicLong deltas = new AtomicLong();
+    private final AtomicLong bulkRejected = new AtomicLong();
+    private final AtomicLong actionErrors = new AtomicLong();
+    private final List<Session> sessions = new ArrayList<>();
+
+    private ScheduledExecutorService uiThreads;
+    private volatile boolean running;
+
+    public static void main(String[] args) throws Exception {
+        setDefault(Ec2Simulator.INSTANCES_PROPERTY, "2000");
+        setDefault(Ec2ClientServiceImpl.REGIONS_PROPERTY, "eu-west-1,us-east-1,ap-southeast-1");
+        setDefault(SchedulerServiceImpl.JOURNAL_DIR_PROPERTY, "");
+        new LoadTestDriver().run(
+                Integer.getInteger(SESSIONS_PROPERTY, 50),
+                Integer.getInteger(PLANS_PROPERTY, 1000),
+                Duration.ofSeconds(Long.getLong(DURATION_PROPERTY, 120L)),
+                Long.getLong(THINK_TIME_PROPERTY, 2000L),
+                Duration.ofSeconds(Long.getLong(REPORT_INTERVAL_PROPERTY, 10L)));
+        System.exit(0);
+    }
+
+    private static void setDefault(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+
+    private void run(int sessionCount, int planCount, Duration duration, long thinkTimeMs, Duration reportInterval) throws Exception {
+        serviceManager.addService(IEc2ClientService.class, clientService);
+        serviceManager.addService(IBackgroundService.class, new BackgroundServiceImpl());
+        serviceManager.addService(IInventoryService.class, inventoryService);
+        serviceManager.addService(IBroadcasterService.class, broadcasterService);
+        serviceManager.addService(IInstanceEventService.class, new InstanceEventServiceImpl());
+        serviceManager.addService(IBulkActionService.class, bulkActionService);
+        serviceManager.addService(ISchedulerService.class, schedulerService);
+        serviceManager.addService(IEc2AutomationService.class, automationService);
+        if (Integer.getInteger(Ec2Simulator.INSTANCES_PROPERTY, 0) <= 0) {
+            throw new IllegalStateException(Ec2Simulator.INSTANCES_PROPERTY + " must be positive");
+        }
+        serviceManager.start();
+
+        final List<Regions> regions = clientService.regions();
+        System.out.printf("Load test of %d sessions and %d plans over %s, %s instances in each of %s%n",
+                sessionCount, planCount, duration, System.getProperty(Ec2Simulator.INSTANCES_PROPERTY), regions);
+
+        //terminated instances are left out, as nobody plans or bulk starts them
+        final Map<Regions, List<String>> instanceIds = new EnumMap<>(Regions.class);
+        for (Regions region : regions) {
+            final List<String> ids = new ArrayList<>();
+            inventoryService.snapshot(region).getInstances().stream()
+                    .filter(instance -> Ec2States.fromCode(instance.getState().getCode()).orElse(Ec2States.UNKNOWN) != Ec2States.TERMINATED)
+                    .forEach(instance -> ids.add(instance.getInstanceId()));
+            instanceIds.put(region, ids);
+        }
+        plan(planCount, duration, instanceIds);
+
+        running = true;
+        uiThreads = Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        final Random random = new Random(0);
+        for (int i = 0; i < sessionCount; i++) {
+            //a third of the sessions shows every region, the others a single one
+            final List<Regions> shown = i % 3 == 0 ? regions : Collections.singletonList(regions.get(random.nextInt(regions.size())));
+            final Session session = new Session(i, shown, instanceIds, thinkTimeMs);
+            sessions.add(session);
+            session.open();
+        }
+
+        final long startNanos = System.nanoTime();
+        final Snapshot start = new Snapshot(startNanos);
+        Snapshot previous = start;
+        while (System.nanoTime() - startNanos < duration.toNanos()) {
+            Thread.sleep(Math.min(reportInterval.toMillis(), TimeUnit.NANOSECONDS.toMillis(duration.toNanos() - (System.nanoTime() - startNanos)) + 1));
+            final Snapshot current = new Snapshot(System.nanoTime());
+            report(String.format("%4ds", TimeUnit.NANOSECONDS.toSeconds(current.nanos - startNanos)), previous, current, refreshLatency.drain(), actionLatency.drain());
+            previous = current;
+        }
+
+        running = false;
+        sessions.forEach(Session::close);
+        uiThreads.shutdownNow();
+        report("total", start, new Snapshot(System.nanoTime()), refreshLatency.all(), actionLatency.all());
+        System.out.printf("%d deltas applied, %d plans left, %d bulk jobs rejected, %d failed actions, inventory %s%n",
+                deltas.get(), schedulerService.planned().size(), bulkRejected.get(), actionErrors.get(), inventoryService.metrics());
+        serviceManager.stop();
+    }
+
+    /**
+     * Plans instances to run between two random times of the run, the plans coming due in batches like real ones
+     */
+    private void plan(int planCount, Duration duration, Map<Regions, List<String>> instanceIds) {
+        final Random random = new Random(1);
+        final List<Regions> regions = new ArrayList<>(instanceIds.keySet());
+        final LocalDateTime now = LocalDateTime.now();
+        final long durationSec = Math.max(2, duration.getSeconds());
+        for (int i = 0; i < planCount; i++) {
+            final Regions region = regions.get(i % regions.size());
+            final List<String> ids = instanceIds.get(region);
+            final LocalDateTime start = now.plusSeconds(5 + random.nextInt((int) Math.max(1, durationSec * 3 / 4)));
+            final LocalDateTime stop = start.plusSeconds(10 + random.nextInt((int) Math.max(1, durationSec / 2)));
+            automationService.runBetween(ids.get(random.nextInt(ids.size())), region, () -> start, () -> stop);
+        }
+    }
+
+    private void report(String label, Snapshot from, Snapshot to, long[] refreshes, long[] actions) {
+        final double seconds = Math.max(1e-3, (to.nanos - from.nanos) / 1e9);
+        System.out.printf("[%s] AWS %.1f calls/s (%.1f throttled/s, %.1f requests/s) | refresh p50 %s p99 %s (%d) | action p50 %s p99 %s (%d) | threads %d (peak %d) | heap %d MB%n",
+                label,
+                (to.calls - from.calls) / seconds, (to.throttled - from.throttled) / seconds, (to.requests - from.requests) / seconds,
+                LatencyRecorder.format(refreshes, 0.5), LatencyRecorder.format(refreshes, 0.99), refreshes.length,
+                LatencyRecorder.format(actions, 0.5), LatencyRecorder.format(actions, 0.99), actions.length,
+                to.threads, to.peakThreads, to.heapBytes >> 20);
+    }
+
+    /**
+     * Counters read at a point of the run
+     */
+    private class Snapshot {
+
+        final long nanos;
+        final long calls;
+        final long throttled;
+        final long requests;
+        final int threads;
+        final int peakThreads;
+        final long heapBytes;
+
+        Snapshot(long nanos) {
+            this.nanos = nanos;
+            long calls = 0;
+            long throttled = 0;
+            for (Regions region : clientService.regions()) {
+                if (clientService.metrics().containsKey(region) && clientService.asyncClient(region) instanceof Ec2Simulator) {
+                    final Ec2Simulator simulator = (Ec2Simulator) clientService.asyncClient(region);
+                    calls += simulator.getCalls();
+                    throttled += simulator.getThrottled();
+                }
+            }
+            this.calls = calls;
+            this.throttled = throttled;
+            this.requests = clientService.metrics().values().stream().mapToLong(Ec2ClientMetrics::getRequests).sum();
+
+            final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+            this.threads = threadBean.getThreadCount();
+            this.peakThreads = threadBean.getPeakThreadCount();
+            this.heapBytes = memoryBean.getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    /**
+     * Simulated AppUI: deltas and actions are run under the session lock, as Vaadin does under the session lock
+     */
+    private class Session {
+
+        private final int number;
+        private final List<Regions> regions;
+        private final Map<Regions, List<String>> instanceIds;
+        private final long thinkTimeMs;
+        private final InstanceDataProvider dataProvider = new InstanceDataProvider(automationService);
+        private final List<IBroadcasterService.Subscription> subscriptions = new ArrayList<>();
+        private final IBroadcasterService.Subscriber subscriber = this::onDelta;
+        private final Map<Regions, LocalDateTime> fetchedAt = new EnumMap<>(Regions.class);
+        private final Random random;
+
+        Session(int number, List<Regions> regions, Map<Regions, List<String>> instanceIds, long thinkTimeMs) {
+            this.number = number;
+            this.regions = regions;
+            this.instanceIds = instanceIds;
+            this.thinkTimeMs = thinkTimeMs;
+            this.random = new Random(number);
+        }
+
+        void open() {
+            regions.forEach(region -> subscriptions.add(broadcasterService.subscribe(region, subscriber)));
+            uiThreads.schedule(this::act, random.nextInt((int) Math.max(1, thinkTimeMs)), TimeUnit.MILLISECONDS);
+        }
+
+        void close() {
+            subscriptions.forEach(IBroadcasterService.Subscription::unsubscribe);
+        }
+
+        private synchronized void onDelta(InventoryDelta delta) {
+            dataProvider.apply(delta);
+            dataProvider.fetch(new Query<>(0, PAGE_SIZE, BY_NAME, null, null)).forEach(row -> row.getStateName());
+            deltas.incrementAndGet();
+            broadcasterService.pushed(delta);
+
+            //state changes applied from events or tracked instances keep the fetch time of their snapshot
+            final LocalDateTime snapshotFetchedAt = delta.getSnapshot().getFetchedAt();
+            if (!snapshotFetchedAt.equals(fetchedAt.put(delta.getRegion(), snapshotFetchedAt))) {
+                refreshLatency.record(Duration.between(snapshotFetchedAt, LocalDateTime.now()).toNanos());
+            }
+        }
+
+        private void act() {
+            if (!running) {
+                return;
+            }
+            final long startNanos = System.nanoTime();
+            try {
+                synchronized (this) {
+                    actOnce();
+                }
+                actionLatency.record(System.nanoTime() - startNanos);
+            } catch (RuntimeException e) {
+                actionErrors.incrementAndGet();
+            }
+            final long jitter = thinkTimeMs / 2 + (thinkTimeMs > 0 ? random.nextInt((int) Math.max(1, thinkTimeMs)) : 0);
+            if (running) {
+                uiThreads.schedule(this::act, jitter, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void actOnce() {
+            final int size = dataProvider.size(new Query<>());
+            final int dice = random.nextInt(100);
+            if (dice < 50) {
+                //scroll
+                final int offset = size <= PAGE_SIZE ? 0 : random.nextInt(size - PAGE_SIZE);
+                dataProvider.fetch(new Query<>(offset, PAGE_SIZE, BY_NAME, null, null)).forEach(row -> row.getStateName());
+            } else if (dice < 70) {
+                //filter on a state
+                final InstanceFilter filter = new InstanceFilter(null, EnumSet.of(FILTER_STATES[random.nextInt(FILTER_STATES.length)]), null, null);
+                dataProvider.size(new Query<>(0, Integer.MAX_VALUE, BY_NAME, null, filter));
+                dataProvider.fetch(new Query<>(0, PAGE_SIZE, BY_NAME, null, filter)).forEach(row -> row.getStateName());
+            } else if (dice < 85) {
+                //selection of a few rows enabling the buttons
+                for (int i = 0; i < 10 && size > 0; i++) {
+                    automationService.hasPlan(dataProvider.getIndex().get(random.nextInt(size)).getInstanceId());
+                }
+            } else if (dice < 95) {
+                //plan a stop far enough not to come due, then cancel the plans of another instance
+                final Regions region = regions.get(random.nextInt(regions.size()));
+                final LocalDateTime stop = LocalDateTime.now().plusHours(1 + random.nextInt(48));
+                automationService.stopOn(randomInstance(region), region, () -> stop);
+                automationService.cancelPlans(randomInstance(region));
+            } else {
+                //bulk start or stop of a few instances
+                final Regions region = regions.get(random.nextInt(regions.size()));
+                final Set<String> ids = new HashSet<>();
+                for (int i = 1 + random.nextInt(20); i > 0; i--) {
+                    ids.add(randomInstance(region));
+                }
+                try {
+                    bulkActionService.submit(this, random.nextBoolean() ? BulkAction.START : BulkAction.STOP, Collections.singletonMap(region, ids), progress -> {
+                    });
+                } catch (RejectedExecutionException e) {
+                    bulkRejected.incrementAndGet();
+                }
+            }
+        }
+
+        private String randomInstance(Regions region) {
+            final List<String> ids = instanceIds.get(region);
+            return ids.get(random.nextInt(ids.size()));
+        }
+
+        @Override
+        public String toString() {
+            return "Session#" + number;
+        }
+    }
+
+    /**
+     * Latencies recorded over an interval and over the whole run
+     */
+    private static class LatencyRecorder {
+
+        private final List<Long> interval = new ArrayList<>();
+        private final List<Long> all = new ArrayList<>();
+
+        synchronized void record(long nanos) {
+            interval.add(nanos);
+            all.add(nanos);
+        }
+
+        synchronized long[] drain() {
+            final long[] latencies = sorted(interval);
+            interval.clear();
+            return latencies;
+        }
+
+        synchronized long[] all() {
+            return sorted(all);
+        }
+
+        private static long[] sorted(List<Long> latencies) {
+            final long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        static String format(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return "-";
+            }
+            final long nanos = sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+            return nanos >= 10_000_000L ? String.format("%dms", TimeUnit.NANOSECONDS.toMillis(nanos)) : String.format("%.2fms", nanos / 1e6);
+        }
+    }
+}
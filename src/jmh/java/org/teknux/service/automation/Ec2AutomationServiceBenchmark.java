@@ -0,0 +1,104 @@
+package org.teknux.service.automation;
+
+import org.openjdk.jmh.annotations.*;
+import org.teknux.benchmark.SyntheticFleet;
+import org.teknux.service.ServiceException;
+import org.teknux.service.ServiceManager;
+import org.teknux.service.client.Ec2ClientServiceImpl;
+import org.teknux.service.client.IEc2ClientService;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plan lookups of the automation service, as done for every instance row, half of the instances running between
+ * a planned start and stop
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Ec2AutomationServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int instances;
+
+    private SchedulerServiceImpl scheduler;
+    private Ec2AutomationServiceImpl automationService;
+    private String[] instanceIds;
+    private LocalDateTime base;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ServiceException {
+        System.setProperty(SchedulerServiceImpl.JOURNAL_DIR_PROPERTY, "");
+        scheduler = new SchedulerServiceImpl();
+        automationService = new Ec2AutomationServiceImpl();
+
+        //the client service is not started, planned tasks never run
+        final ServiceManager serviceManager = new ServiceManager();
+        serviceManager.addService(ISchedulerService.class, scheduler);
+        serviceManager.addService(IEc2ClientService.class, new Ec2ClientServiceImpl());
+        serviceManager.addService(IEc2AutomationService.class, automationService);
+        scheduler.start();
+
+        base = LocalDateTime.now().plusDays(7);
+        instanceIds = new String[instances];
+        for (int i = 0; i < instances; i++) {
+            instanceIds[i] = SyntheticFleet.instanceId(i);
+            if (i % 2 == 0) {
+                runBetween(i);
+            }
+        }
+    }
+
+    private void runBetween(int i) {
+        final LocalDateTime start = base.plusMinutes(i);
+        automationService.runBetween(instanceIds[i], SyntheticFleet.region(i), () -> start, () -> start.plusHours(8));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws ServiceException {
+        scheduler.stop();
+    }
+
+    private int next() {
+        next = next + 1 == instances ? 0 : next + 1;
+        return next;
+    }
+
+    @Benchmark
+    public ISchedulerService.Schedule getStartSchedule() {
+        return automationService.getStartSchedule(instanceIds[next()]);
+    }
+
+    @Benchmark
+    public ISchedulerService.Schedule getStopSchedule() {
+        return automationService.getStopSchedule(instanceIds[next()]);
+    }
+
+    @Benchmark
+    public boolean hasPlan() {
+        return automationService.hasPlan(instanceIds[next()]);
+    }
+
+    /**
+     * Cancels the plans of an instance and plans them again when it had some
+     */
+    @Benchmark
+    public void cancelPlans() {
+        final int i = next();
+        automationService.cancelPlans(instanceIds[i]);
+        if (i % 2 == 0) {
+            runBetween(i);
+        }
+    }
+
+    @Benchmark
+    public Map<String, ISchedulerService.Schedule> getStopSchedules() {
+        return automationService.getStopSchedules();
+    }
+}
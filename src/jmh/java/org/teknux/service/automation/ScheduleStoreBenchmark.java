@@ -0,0 +1,66 @@
+package org.teknux.service.automation;
+
+import org.openjdk.jmh.annotations.*;
+import org.teknux.benchmark.SyntheticFleet;
+import org.teknux.task.automation.Ec2InstanceStopAutomationTask;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Due-task scan of the store behind the scheduler alarm: a few tasks coming due among many plans due later
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScheduleStoreBenchmark {
+
+    private static final int DUE = 16;
+
+    @Param({"1000", "10000", "100000"})
+    public int plans;
+
+    private ScheduleStore store;
+    private Runnable[] dueTasks;
+    private Schedule dueSchedule;
+    private LocalDateTime now;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        now = LocalDateTime.now();
+        store = new ScheduleStore();
+        for (int i = 0; i < plans; i++) {
+            store.put(new Ec2InstanceStopAutomationTask(null, SyntheticFleet.instanceId(i), SyntheticFleet.region(i)), new Schedule(now.plusMinutes(i + 1)));
+        }
+
+        dueTasks = new Runnable[DUE];
+        for (int i = 0; i < DUE; i++) {
+            dueTasks[i] = new Ec2InstanceStopAutomationTask(null, SyntheticFleet.instanceId(plans + i), SyntheticFleet.region(i));
+        }
+        dueSchedule = new Schedule(now.minusSeconds(1));
+    }
+
+    /**
+     * Plans tasks already due then polls them, the store getting back to its initial plans
+     */
+    @Benchmark
+    public int pollDue() {
+        for (Runnable task : dueTasks) {
+            store.put(task, dueSchedule);
+        }
+        return store.pollDue(now).size();
+    }
+
+    @Benchmark
+    public int pollNothingDue() {
+        return store.pollDue(now).size();
+    }
+
+    @Benchmark
+    public LocalDateTime first() {
+        return store.first().when;
+    }
+}
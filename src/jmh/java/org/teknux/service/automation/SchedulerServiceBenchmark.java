@@ -0,0 +1,98 @@
+package org.teknux.service.automation;
+
+import org.openjdk.jmh.annotations.*;
+import org.teknux.benchmark.SyntheticFleet;
+import org.teknux.service.ServiceException;
+import org.teknux.task.automation.Ec2InstanceStartAutomationTask;
+import org.teknux.task.automation.Ec2InstanceStopAutomationTask;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plan lookups and updates of the scheduler holding a start and a stop plan for each of the instances, journal disabled
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchedulerServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int plans;
+
+    private SchedulerServiceImpl scheduler;
+    private Runnable[] tasks;
+    private Schedule[] schedules;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ServiceException {
+        System.setProperty(SchedulerServiceImpl.JOURNAL_DIR_PROPERTY, "");
+        scheduler = new SchedulerServiceImpl();
+        scheduler.start();
+
+        //far enough for nothing to come due while measuring
+        final LocalDateTime base = LocalDateTime.now().plusDays(7);
+        tasks = new Runnable[plans];
+        schedules = new Schedule[plans];
+        for (int i = 0; i < plans; i++) {
+            final String instanceId = SyntheticFleet.instanceId(i / 2);
+            tasks[i] = i % 2 == 0
+                    ? new Ec2InstanceStartAutomationTask(null, instanceId, SyntheticFleet.region(i / 2))
+                    : new Ec2InstanceStopAutomationTask(null, instanceId, SyntheticFleet.region(i / 2));
+            schedules[i] = new Schedule(base.plusMinutes(i));
+            scheduler.plan(tasks[i], schedules[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws ServiceException {
+        scheduler.stop();
+    }
+
+    private int next() {
+        next = next + 1 == plans ? 0 : next + 1;
+        return next;
+    }
+
+    @Benchmark
+    public ISchedulerService.Schedule find() {
+        return scheduler.find(tasks[next()]);
+    }
+
+    /**
+     * Plans an already planned task again, replacing its plan
+     */
+    @Benchmark
+    public void plan() {
+        final int i = next();
+        scheduler.plan(tasks[i], schedules[i]);
+    }
+
+    @Benchmark
+    public void cancelThenPlan() {
+        final int i = next();
+        scheduler.cancel(tasks[i]);
+        scheduler.plan(tasks[i], schedules[i]);
+    }
+
+    @Benchmark
+    public Collection<Runnable> plannedByInstance() {
+        return scheduler.planned(SyntheticFleet.instanceId(next() / 2));
+    }
+
+    @Benchmark
+    public Map<Ec2InstanceStopAutomationTask, ISchedulerService.Schedule> plannedByType() {
+        return scheduler.planned(Ec2InstanceStopAutomationTask.class);
+    }
+
+    @Benchmark
+    public Collection<Runnable> planned() {
+        return scheduler.planned();
+    }
+}
@@ -0,0 +1,16 @@
+package org.teknux.service.client;
+
+import org.teknux.loadtest.Ec2Simulator;
+
+/**
+ * Client service handing out EC2 simulators configured from the ec2.simulator.* system properties, behind the same
+ * rate limiter, retry policy and request handler as the EC2 clients
+ */
+public class SimulatedEc2ClientService extends Ec2ClientServiceImpl {
+
+    public SimulatedEc2ClientService() {
+        super((region, configuration, requestHandler, executorFactory) -> Ec2Simulator.fromSystemProperties(region, executorFactory.newExecutor())
+                .withRetryPolicy(configuration.getRetryPolicy())
+                .withRequestHandlers(requestHandler));
+    }
+}
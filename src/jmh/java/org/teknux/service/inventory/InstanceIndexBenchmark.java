@@ -0,0 +1,116 @@
+package org.teknux.service.inventory;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.ec2.model.Address;
+import com.amazonaws.services.ec2.model.Instance;
+import org.openjdk.jmh.annotations.*;
+import org.teknux.api.model.Ec2States;
+import org.teknux.benchmark.SyntheticFleet;
+import org.teknux.service.broadcast.InventoryDelta;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * View model built from each inventory snapshot: the instance index with its rows, its selections, the merge of
+ * several regions and the delta against the previous snapshot
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InstanceIndexBenchmark {
+
+    private static final List<InstanceIndex.Sort> BY_NAME = Collections.singletonList(new InstanceIndex.Sort(InstanceIndex.SortKey.NAME, true));
+    private static final List<InstanceIndex.Sort> BY_STATE_THEN_LAUNCH = Arrays.asList(
+            new InstanceIndex.Sort(InstanceIndex.SortKey.STATE, true),
+            new InstanceIndex.Sort(InstanceIndex.SortKey.LAUNCH_TIME, false));
+    private static final InstanceFilter RUNNING_PROD = new InstanceFilter("prod", EnumSet.of(Ec2States.RUNNING), null, null);
+
+    @Param({"1000", "10000", "100000"})
+    public int instances;
+
+    private Set<Instance> fleet;
+    private List<Address> elasticIPs;
+    private InventorySnapshot previous;
+    private InventorySnapshot current;
+    private InstanceIndex index;
+    private List<InstanceIndex> regionIndexes;
+    private Predicate<String> scheduled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fleet = SyntheticFleet.instances(instances, 42);
+        elasticIPs = SyntheticFleet.elasticIPs(fleet);
+        previous = new InventorySnapshot(Regions.EU_WEST_1, fleet, elasticIPs, previousFetch());
+        current = new InventorySnapshot(Regions.EU_WEST_1, SyntheticFleet.changed(fleet), elasticIPs, previousFetch().plusSeconds(30));
+        index = new InstanceIndex(Regions.EU_WEST_1, fleet, elasticIPs);
+        index.select(InstanceFilter.NONE, BY_NAME, id -> false);
+
+        //same instance count split across the regions
+        final List<Set<Instance>> regionFleets = new ArrayList<>();
+        for (int r = 0; r < SyntheticFleet.REGIONS.length; r++) {
+            regionFleets.add(new LinkedHashSet<>());
+        }
+        int i = 0;
+        for (Instance instance : fleet) {
+            regionFleets.get(i++ % SyntheticFleet.REGIONS.length).add(instance);
+        }
+        regionIndexes = new ArrayList<>();
+        for (int r = 0; r < SyntheticFleet.REGIONS.length; r++) {
+            regionIndexes.add(new InstanceIndex(SyntheticFleet.REGIONS[r], regionFleets.get(r), elasticIPs));
+        }
+
+        scheduled = id -> id.hashCode() % 7 == 0;
+    }
+
+    private static LocalDateTime previousFetch() {
+        return LocalDateTime.of(2017, 10, 1, 12, 0);
+    }
+
+    /**
+     * Builds every row, as done once per fetched snapshot
+     */
+    @Benchmark
+    public InstanceIndex build() {
+        return new InstanceIndex(Regions.EU_WEST_1, fleet, elasticIPs);
+    }
+
+    /**
+     * Builds the index then sorts it, as done for the first query of a new snapshot
+     */
+    @Benchmark
+    public int[] buildThenSort() {
+        return new InstanceIndex(Regions.EU_WEST_1, fleet, elasticIPs).select(InstanceFilter.NONE, BY_STATE_THEN_LAUNCH, scheduled);
+    }
+
+    /**
+     * Filters the cached name order, as done when the filter fields change
+     */
+    @Benchmark
+    public int[] selectFiltered() {
+        return index.select(RUNNING_PROD, BY_NAME, scheduled);
+    }
+
+    @Benchmark
+    public int[] selectScheduled() {
+        return index.select(new InstanceFilter(null, null, true, null), BY_NAME, scheduled);
+    }
+
+    @Benchmark
+    public InstanceIndex merge() {
+        return InstanceIndex.merge(regionIndexes);
+    }
+
+    /**
+     * Compares two snapshots a hundredth of the instances of which changed state
+     */
+    @Benchmark
+    public InventoryDelta delta() {
+        return InventoryDelta.between(previous, current);
+    }
+}
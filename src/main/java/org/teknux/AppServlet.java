@@ -12,6 +12,16 @@ import org.teknux.service.automation.ISchedulerService;
 import org.teknux.service.automation.SchedulerServiceImpl;
 import org.teknux.service.background.BackgroundServiceImpl;
 import org.teknux.service.background.IBackgroundService;
+import org.teknux.service.broadcast.BroadcasterServiceImpl;
+import org.teknux.service.broadcast.IBroadcasterService;
+import org.teknux.service.bulk.BulkActionServiceImpl;
+import org.teknux.service.bulk.IBulkActionService;
+import org.teknux.service.client.Ec2ClientServiceImpl;
+import org.teknux.service.client.IEc2ClientService;
+import org.teknux.service.events.IInstanceEventService;
+import org.teknux.service.events.InstanceEventServiceImpl;
+import org.teknux.service.inventory.IInventoryService;
+import org.teknux.service.inventory.InventoryServiceImpl;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -19,7 +29,7 @@ import javax.servlet.UnavailableException;
 import javax.servlet.annotation.WebServlet;
 import java.util.Objects;
 
-@WebServlet(urlPatterns = "/*", name = "AppServlet", asyncSupported = true)
+@WebServlet(urlPatterns = "/*", name = "AppServlet", asyncSupported = true, loadOnStartup = 1)
 @VaadinServletConfiguration(ui = AppUI.class, productionMode = true)
 public class AppServlet extends VaadinServlet implements SessionInitListener, SessionDestroyListener {
 
@@ -46,7 +56,12 @@ public class AppServlet extends VaadinServlet implements SessionInitListener, Se
             serviceManager = new ServiceManager();
             getServletContext().setAttribute(CONTEXT_ATTRIBUTE_SERVICE_MANAGER, serviceManager);
 
+            serviceManager.addService(IEc2ClientService.class, new Ec2ClientServiceImpl());
             serviceManager.addService(IBackgroundService.class, new BackgroundServiceImpl());
+            serviceManager.addService(IInventoryService.class, new InventoryServiceImpl());
+            serviceManager.addService(IBroadcasterService.class, new BroadcasterServiceImpl());
+            serviceManager.addService(IInstanceEventService.class, new InstanceEventServiceImpl());
+            serviceManager.addService(IBulkActionService.class, new BulkActionServiceImpl());
             serviceManager.addService(ISchedulerService.class, new SchedulerServiceImpl());
             serviceManager.addService(IEc2AutomationService.class, new Ec2AutomationServiceImpl());
 
@@ -1,40 +1,45 @@
 package org.teknux;
 
 import com.amazonaws.regions.Regions;
-import com.amazonaws.services.ec2.model.Address;
-import com.amazonaws.services.ec2.model.Instance;
-import com.amazonaws.services.ec2.model.InstanceStateChange;
-import com.amazonaws.services.ec2.model.Tag;
 import com.vaadin.annotations.Push;
 import com.vaadin.annotations.Theme;
+import com.vaadin.data.provider.ConfigurableFilterDataProvider;
 import com.vaadin.event.selection.SelectionEvent;
 import com.vaadin.icons.VaadinIcons;
 import com.vaadin.server.FontIcon;
 import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.VaadinServlet;
 import com.vaadin.shared.communication.PushMode;
+import com.vaadin.shared.ui.ValueChangeMode;
 import com.vaadin.ui.*;
 import com.vaadin.ui.renderers.HtmlRenderer;
 import com.vaadin.ui.renderers.LocalDateTimeRenderer;
 import com.vaadin.ui.themes.ValoTheme;
-import de.akquinet.engineering.vaadin.timerextension.TimerExtension;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.teknux.api.Ec2Api;
 import org.teknux.api.model.Ec2States;
 import org.teknux.service.IServiceManager;
 import org.teknux.service.automation.IEc2AutomationService;
 import org.teknux.service.automation.ISchedulerService;
-import org.teknux.service.background.IBackgroundService;
-import org.teknux.task.LongRunningUiTask;
+import org.teknux.service.automation.RecurringSchedule;
+import org.teknux.service.broadcast.IBroadcasterService;
+import org.teknux.service.broadcast.InventoryDelta;
+import org.teknux.service.bulk.BulkAction;
+import org.teknux.service.bulk.BulkProgress;
+import org.teknux.service.bulk.IBulkActionService;
+import org.teknux.service.client.IEc2ClientService;
+import org.teknux.service.inventory.InstanceFilter;
+import org.teknux.service.inventory.InstanceIndex;
+import org.teknux.service.inventory.InstanceRow;
+import org.teknux.ui.data.InstanceDataProvider;
 import org.teknux.ui.window.ScheduleStartWindow;
 import org.teknux.ui.window.ScheduleStopWindow;
 
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.*;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 import static org.teknux.api.model.Ec2States.UNKNOWN;
@@ -49,35 +54,39 @@ public class AppUI extends UI {
     private static final Logger LOG = LoggerFactory.getLogger(AppUI.class);
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
-    private LongRunningUiTask.UiCallback<ViewModel> uiPostProcess;
-    private LongRunningUiTask<ViewModel> refreshTask;
-
-    private LongRunningUiTask.UiCallback<List<InstanceStateChange>> startUiPostProcess;
-    private LongRunningUiTask<List<InstanceStateChange>> startInstanceTask;
-
-    private LongRunningUiTask.UiCallback<List<InstanceStateChange>> stopUiPostProcess;
-    private LongRunningUiTask<List<InstanceStateChange>> stopInstanceTask;
-
-    private TimerExtension timerExtension;
-
     private ComboBox<Regions> regionsComboBox;
     private Button startButton;
     private Button stopButton;
     private Button scheduleStartButton;
     private Button scheduleStopButton;
     private Button cancelButton;
-    private Grid<Instance> instancesGrid;
+    private Grid<InstanceRow> instancesGrid;
+    private InstanceDataProvider instanceDataProvider;
+    private ConfigurableFilterDataProvider<InstanceRow, Void, InstanceFilter> instanceFilterProvider;
+    private TextField nameFilterField;
+    private ComboBox<Ec2States> stateFilterComboBox;
+    private CheckBox scheduledFilterCheckBox;
+    private CheckBox elasticIpFilterCheckBox;
     private Label lastupdateLabel;
+    private Label bulkProgressLabel;
 
-    private ViewModel viewModel;
+    private final List<IBroadcasterService.Subscription> subscriptions = new ArrayList<>();
+    private final IBroadcasterService.Subscriber inventorySubscriber = this::onInventoryDelta;
+    private final Set<Regions> shownRegions = EnumSet.noneOf(Regions.class);
+    private final RegionCaptionGenerator regionCaptionGenerator = new RegionCaptionGenerator();
+    private Grid.Column<InstanceRow, String> regionColumn;
 
-    private IBackgroundService backgroundService;
     private IEc2AutomationService ec2AutomationService;
+    private IEc2ClientService ec2ClientService;
+    private IBulkActionService bulkActionService;
+    private IBroadcasterService broadcasterService;
 
     @Override
     protected void init(VaadinRequest vaadinRequest) {
-        backgroundService = getServiceManager().getService(IBackgroundService.class);
         ec2AutomationService = getServiceManager().getService(IEc2AutomationService.class);
+        ec2ClientService = getServiceManager().getService(IEc2ClientService.class);
+        bulkActionService = getServiceManager().getService(IBulkActionService.class);
+        broadcasterService = getServiceManager().getService(IBroadcasterService.class);
 
         final VerticalLayout rootLayout = new VerticalLayout();
         rootLayout.setMargin(true);
@@ -91,14 +100,18 @@ public class AppUI extends UI {
         topLayout.setWidth(100, Unit.PERCENTAGE);
         rootLayout.addComponents(topLayout);
 
+        //no selection stands for all the enabled regions
+        final List<Regions> regions = ec2ClientService.regions();
         regionsComboBox = new ComboBox<>();
-        regionsComboBox.setItemCaptionGenerator(new RegionCaptionGenerator());
-        regionsComboBox.setItems(regions(Regions.GovCloud));
-        regionsComboBox.setSelectedItem(Regions.US_EAST_1);
+        regionsComboBox.setItemCaptionGenerator(regionCaptionGenerator);
+        regionsComboBox.setItems(regions);
+        regionsComboBox.setEmptySelectionAllowed(true);
+        regionsComboBox.setEmptySelectionCaption("All regions");
+        regionsComboBox.setSelectedItem(regions.contains(Regions.US_EAST_1) ? Regions.US_EAST_1 : regions.get(0));
         regionsComboBox.setWidth(250, Unit.PIXELS);
         regionsComboBox.addSelectionListener(event -> {
             instancesGrid.deselectAll();
-            doRefresh();
+            subscribe(event.getSelectedItem().map(Collections::singletonList).orElse(regions));
         });
         regionsComboBox.setEnabled(false);
         regionsComboBox.setPageLength(25);
@@ -121,8 +134,8 @@ public class AppUI extends UI {
         startBtnGroup.addComponent(startButton);
 
         scheduleStartButton = createButton("", event -> {
-            Window scheduleStartWindow = new ScheduleStartWindow(instancesGrid.getSelectedItems(), regionsComboBox.getSelectedItem().get(), ec2AutomationService);
-            scheduleStartWindow.addCloseListener(e -> doRefresh());
+            Window scheduleStartWindow = new ScheduleStartWindow(instancesGrid.getSelectedItems(), ec2AutomationService);
+            scheduleStartWindow.addCloseListener(e -> refreshSchedules());
             this.addWindow(scheduleStartWindow);
         });
         scheduleStartButton.setIcon(VaadinIcons.CLOCK);
@@ -139,8 +152,8 @@ public class AppUI extends UI {
         stopBtnGroup.addComponent(stopButton);
 
         scheduleStopButton = createButton("", event -> {
-            Window scheduleStopWindow = new ScheduleStopWindow(instancesGrid.getSelectedItems(), regionsComboBox.getSelectedItem().get(), ec2AutomationService);
-            scheduleStopWindow.addCloseListener(e -> doRefresh());
+            Window scheduleStopWindow = new ScheduleStopWindow(instancesGrid.getSelectedItems(), ec2AutomationService);
+            scheduleStopWindow.addCloseListener(e -> refreshSchedules());
             this.addWindow(scheduleStopWindow);
         });
         scheduleStopButton.setIcon(VaadinIcons.CLOCK);
@@ -155,63 +168,49 @@ public class AppUI extends UI {
 
         topButtonsLayout.addComponents(startBtnGroup, stopBtnGroup, cancelButton);
 
-        // ec2 instances grid
-        instancesGrid = new Grid<>();
-        instancesGrid.addColumn(Instance::getTags, tags -> tags.stream().filter(tag -> tag.getKey().toLowerCase().equals("name")).findFirst().orElse(new Tag()).getValue()).setCaption("Name");
-        instancesGrid.addColumn(Instance::getState, instanceState -> {
-            final Ec2States ec2States= Ec2States.fromCode(instanceState.getCode()).orElse(UNKNOWN);
-            FontIcon icon = VaadinIcons.QUESTION;
-            if (ec2States != null) {
-                switch (ec2States) {
-                    case PENDING:
-                        icon = VaadinIcons.HOURGLASS;
-                        break;
-                    case RUNNING:
-                        icon = VaadinIcons.CHECK_CIRCLE;
-                        break;
-                    case STOPPED:
-                        icon = VaadinIcons.CIRCLE_THIN;
-                        break;
-                    case STOPPING:
-                        icon = VaadinIcons.CIRCLE;
-                        break;
-                    case TERMINATED:
-                        icon = VaadinIcons.CLOSE_CIRCLE_O;
-                        break;
-                }
-            }
-            return icon.getHtml() + String.format("<span>%s</span>", instanceState.getName());
-        }, new HtmlRenderer()).setCaption("State");
-        instancesGrid.addColumn(Instance::getInstanceId).setCaption("Id");
-        instancesGrid.addColumn(Instance::getPublicIpAddress, instanceAddress -> {
-            if (instanceAddress == null || instanceAddress.isEmpty()) {
-                return "";
-            }
-            boolean isElastic = viewModel.elasticIPs.stream().filter(address -> instanceAddress.equals(address.getPublicIp())).findFirst().isPresent();
-            return isElastic ? String.format("[ %s ]", instanceAddress) : instanceAddress;
-
-        }).setCaption("IPv4 Public IP");
-        instancesGrid.addColumn(Instance::getLaunchTime).setCaption("Launch Time");
-        instancesGrid.addColumn(Instance::getInstanceId, instanceId -> {
-            ISchedulerService.Schedule schedule = ec2AutomationService.getStartSchedule(instanceId);
-            if (schedule == null) {
-                return "-";
-            } else {
-                return schedule.when().format(DATE_TIME_FORMATTER);
-            }
-        }).setCaption("Scheduled Start");
-
-        instancesGrid.addColumn(Instance::getInstanceId, instanceId -> {
-            ISchedulerService.Schedule schedule = ec2AutomationService.getStopSchedule(instanceId);
-            if (schedule == null) {
-                return "-";
-            } else {
-                return schedule.when().format(DATE_TIME_FORMATTER);
-            }
-        }).setCaption("Scheduled Stop");
+        //filters bar, evaluated server side by the data provider
+        final HorizontalLayout filterLayout = new HorizontalLayout();
+        filterLayout.setMargin(false);
+        filterLayout.setSpacing(true);
+        rootLayout.addComponent(filterLayout);
+
+        nameFilterField = new TextField();
+        nameFilterField.setPlaceholder("Filter by name");
+        nameFilterField.setValueChangeMode(ValueChangeMode.LAZY);
+        nameFilterField.addValueChangeListener(event -> applyFilter());
+
+        stateFilterComboBox = new ComboBox<>();
+        stateFilterComboBox.setPlaceholder("Any state");
+        stateFilterComboBox.setItems(Arrays.stream(Ec2States.values()).filter(state -> state != UNKNOWN));
+        stateFilterComboBox.setItemCaptionGenerator(state -> state.name().toLowerCase().replace('_', '-'));
+        stateFilterComboBox.addValueChangeListener(event -> applyFilter());
 
-        instancesGrid.setStyleGenerator(instance -> {
-            final Ec2States state = Ec2States.fromCode(instance.getState().getCode()).orElse(UNKNOWN);
+        scheduledFilterCheckBox = new CheckBox("Scheduled only");
+        scheduledFilterCheckBox.addValueChangeListener(event -> applyFilter());
+
+        elasticIpFilterCheckBox = new CheckBox("Elastic IP only");
+        elasticIpFilterCheckBox.addValueChangeListener(event -> applyFilter());
+
+        filterLayout.addComponents(nameFilterField, stateFilterComboBox, scheduledFilterCheckBox, elasticIpFilterCheckBox);
+        filterLayout.setComponentAlignment(scheduledFilterCheckBox, Alignment.MIDDLE_LEFT);
+        filterLayout.setComponentAlignment(elasticIpFilterCheckBox, Alignment.MIDDLE_LEFT);
+
+        // ec2 instances grid
+        instanceDataProvider = new InstanceDataProvider(ec2AutomationService);
+        instanceFilterProvider = instanceDataProvider.withConfigurableFilter();
+        instancesGrid = new Grid<>(instanceFilterProvider);
+        instancesGrid.addColumn(InstanceRow::getName).setCaption("Name").setSortProperty(InstanceDataProvider.SORT_NAME);
+        instancesGrid.addColumn(AppUI::formatState, new HtmlRenderer()).setCaption("State").setSortProperty(InstanceDataProvider.SORT_STATE);
+        instancesGrid.addColumn(InstanceRow::getInstanceId).setCaption("Id").setSortProperty(InstanceDataProvider.SORT_ID);
+        regionColumn = instancesGrid.addColumn(row -> regionCaptionGenerator.apply(row.getRegion())).setCaption("Region").setSortProperty(InstanceDataProvider.SORT_REGION);
+        instancesGrid.addColumn(AppUI::formatPublicIp).setCaption("IPv4 Public IP").setSortProperty(InstanceDataProvider.SORT_PUBLIC_IP);
+        instancesGrid.addColumn(InstanceRow::getLaunchTime, new LocalDateTimeRenderer(DATE_TIME_FORMATTER, "")).setCaption("Launch Time").setSortProperty(InstanceDataProvider.SORT_LAUNCH_TIME);
+        instancesGrid.addColumn(InstanceRow::getStartSchedule, AppUI::formatSchedule).setCaption("Scheduled Start").setSortable(false);
+
+        instancesGrid.addColumn(InstanceRow::getStopSchedule, AppUI::formatSchedule).setCaption("Scheduled Stop").setSortable(false);
+
+        instancesGrid.setStyleGenerator(row -> {
+            final Ec2States state = row.getState();
             if (state != null) {
                 switch (state) {
                     case PENDING:
@@ -233,9 +232,9 @@ public class AppUI extends UI {
         instancesGrid.setSelectionMode(Grid.SelectionMode.MULTI);
         instancesGrid.addSelectionListener(event -> gridSelectionChanged(event));
         instancesGrid.addItemClickListener(event -> {
-            final Instance clickedInstance = event.getItem();
+            final InstanceRow clickedInstance = event.getItem();
             if (clickedInstance != null) {
-                final Set<Instance> selection = instancesGrid.getSelectedItems();
+                final Set<InstanceRow> selection = instancesGrid.getSelectedItems();
                 instancesGrid.deselectAll();
                 if (!selection.contains(clickedInstance) || selection.size() > 1) {
                     instancesGrid.select(clickedInstance);
@@ -248,20 +247,64 @@ public class AppUI extends UI {
         instancesGrid.getColumns().stream().forEach(instanceColumn -> instanceColumn.setHidable(true));
         instancesGrid.setVisible(false);
 
+        //status bar
+        final HorizontalLayout statusLayout = new HorizontalLayout();
+        statusLayout.setMargin(false);
+        statusLayout.setSpacing(true);
+        statusLayout.setWidth(100, Unit.PERCENTAGE);
+
+        bulkProgressLabel = new Label();
         lastupdateLabel = new Label();
+        statusLayout.addComponents(bulkProgressLabel, lastupdateLabel);
+        statusLayout.setComponentAlignment(lastupdateLabel, Alignment.MIDDLE_RIGHT);
 
-        rootLayout.addComponents(instancesGrid, lastupdateLabel);
+        rootLayout.addComponents(instancesGrid, statusLayout);
         rootLayout.setExpandRatio(instancesGrid, 1.0f);
-        rootLayout.setComponentAlignment(lastupdateLabel, Alignment.BOTTOM_RIGHT);
 
         setContent(rootLayout);
 
-        // run a refresh to start fetching AWS Ec2 data in background and avoid blocking UI
-        setupStartTasks();
-        setupStopTasks();
-        setupRefreshTasks();
+        // subscribe to the region inventory, it is fetched in background and pushed to the UI
+        subscribe(regionsComboBox.getSelectedItem().map(Collections::singletonList).orElse(regions));
+    }
+
+    static String formatState(InstanceRow row) {
+        final Ec2States ec2States = row.getState();
+        FontIcon icon = VaadinIcons.QUESTION;
+        if (ec2States != null) {
+            switch (ec2States) {
+                case PENDING:
+                    icon = VaadinIcons.HOURGLASS;
+                    break;
+                case RUNNING:
+                    icon = VaadinIcons.CHECK_CIRCLE;
+                    break;
+                case STOPPED:
+                    icon = VaadinIcons.CIRCLE_THIN;
+                    break;
+                case STOPPING:
+                    icon = VaadinIcons.CIRCLE;
+                    break;
+                case TERMINATED:
+                    icon = VaadinIcons.CLOSE_CIRCLE_O;
+                    break;
+            }
+        }
+        return icon.getHtml() + String.format("<span>%s</span>", row.getStateName());
+    }
 
-        doRefresh();
+    static String formatPublicIp(InstanceRow row) {
+        if (row.getPublicIp() == null) {
+            return "";
+        }
+        return row.isElastic() ? String.format("[ %s ]", row.getPublicIp()) : row.getPublicIp();
+    }
+
+    static String formatSchedule(ISchedulerService.Schedule schedule) {
+        if (schedule == null) {
+            return "-";
+        }
+        final String when = schedule.when().format(DATE_TIME_FORMATTER);
+        return schedule instanceof RecurringSchedule ? when + " (recurring)" : when;
     }
 
     private static Button createButton(String caption, Button.ClickListener clickListener) {
@@ -270,94 +313,89 @@ public class AppUI extends UI {
         return button;
     }
 
-    private void setupRefreshTasks() {
-        timerExtension = TimerExtension.create(this);
-        timerExtension.setIntervalInMs(30*1000);
-        timerExtension.addTimerListener(timerEvent -> doRefresh());
-
-        Callable<ViewModel> backgroundTask = () -> {
-            final Ec2Api fetcher = Ec2Api.instance(regionsComboBox.getSelectedItem().orElse(Regions.DEFAULT_REGION));
-            final Set<Instance> instances = fetcher.instances();
-            final List<Address> elasticAddresses = fetcher.elasticIPs();
-
-            return new ViewModel(instances, elasticAddresses);
-        };
-
-        //configure ui required handling after background task is done
-        uiPostProcess = viewModel -> {
-            this.viewModel = viewModel;
-
-            if (!instancesGrid.isVisible()) {
-                instancesGrid.setVisible(true);
-            }
-
-            Set<Instance> selectedItems = instancesGrid.asMultiSelect().getSelectedItems();
-            instancesGrid.setItems(viewModel.getInstances());
-            if (selectedItems != null) {
-                selectedItems.forEach(instance -> instancesGrid.select(instance));
-            }
-
-            lastupdateLabel.setValue(String.format("Lastupdate at %s", LocalDateTime.now().format(DateTimeFormatter.ISO_TIME).toString()));
-            regionsComboBox.setEnabled(true);
-
-            timerExtension.start();
-        };
-
-        //configure overall recurrent task (background data fetch + ui update)
-        refreshTask = new LongRunningUiTask<>(backgroundTask, uiPostProcess, instancesGrid);
+    /**
+     * Shows the inventory of the given regions, each of them being fetched concurrently and shown as soon as received
+     */
+    private void subscribe(List<Regions> regions) {
+        unsubscribe();
+        shownRegions.addAll(regions);
+        instanceDataProvider.clear();
+        regionColumn.setHidden(regions.size() == 1);
+        lastupdateLabel.setValue("loading ...");
+        regions.forEach(region -> subscriptions.add(broadcasterService.subscribe(region, inventorySubscriber)));
     }
 
-    private void setupStartTasks() {
-        Callable<List<InstanceStateChange>> backgroundStartTask = () -> {
-            Set<String> ids = new HashSet<>(instancesGrid.getSelectedItems().stream().map(instance -> instance.getInstanceId()).collect(Collectors.toList()));
-            return Ec2Api.instance(regionsComboBox.getSelectedItem().orElse(Regions.DEFAULT_REGION)).startInstances(ids);
-        };
-
-        //configure ui required handling after background task is done
-        startUiPostProcess = instances -> {
-            instancesGrid.deselectAll();
-            doRefresh();
-        };
+    private void unsubscribe() {
+        subscriptions.forEach(IBroadcasterService.Subscription::unsubscribe);
+        subscriptions.clear();
+        shownRegions.clear();
+    }
 
-        //configure overall recurrent task (background data fetch + ui update)
-        startInstanceTask = new LongRunningUiTask<>(backgroundStartTask, startUiPostProcess, instancesGrid);
+    private void onInventoryDelta(InventoryDelta delta) {
+        try {
+            access(() -> {
+                //deltas of a previously selected region may still be in flight
+                if (!shownRegions.contains(delta.getRegion())) {
+                    return;
+                }
+                applyDelta(delta);
+                push();
+                broadcasterService.pushed(delta);
+            });
+        } catch (UIDetachedException e) {
+            LOG.trace("!!! UI is detached, inventory delta dropped !!!");
+        }
     }
 
-    private void setupStopTasks() {
-        Callable<List<InstanceStateChange>> backgroundStopTask = () -> {
-            Set<String> ids = new HashSet<>(instancesGrid.getSelectedItems().stream().map(instance -> instance.getInstanceId()).collect(Collectors.toList()));
-            return Ec2Api.instance(regionsComboBox.getSelectedItem().orElse(Regions.DEFAULT_REGION)).stopInstances(ids);
-        };
+    private void applyDelta(InventoryDelta delta) {
+        if (!instancesGrid.isVisible()) {
+            instancesGrid.setVisible(true);
+        }
 
-        //configure ui required handling after background task is done
-        stopUiPostProcess = instances -> {
+        if (delta.isInitial()) {
             instancesGrid.deselectAll();
-            doRefresh();
-        };
+        }
+        instanceDataProvider.apply(delta);
+        //drop the selected instances which no longer exist
+        final InstanceIndex index = instanceDataProvider.getIndex();
+        new ArrayList<>(instancesGrid.getSelectedItems()).stream().filter(row -> index.find(row.getInstanceId()) == null).forEach(instancesGrid::deselect);
+        //selected instances may have changed state
+        updateButtonsState(instancesGrid.getSelectedItems());
+
+        final String lastUpdate = String.format("Lastupdate at %s", delta.getSnapshot().getFetchedAt().format(DateTimeFormatter.ISO_TIME));
+        if (shownRegions.size() == 1) {
+            lastupdateLabel.setValue(lastUpdate);
+        } else {
+            //slow or failing regions are retried on next refresh, meanwhile the others are shown
+            lastupdateLabel.setValue(String.format("%s (%d/%d regions)", lastUpdate, instanceDataProvider.getLoadedRegions().size(), shownRegions.size()));
+        }
+        regionsComboBox.setEnabled(true);
+    }
 
-        //configure overall recurrent task (background data fetch + ui update)
-        stopInstanceTask = new LongRunningUiTask<>(backgroundStopTask, stopUiPostProcess, instancesGrid);
+    private static Map<Regions, Set<String>> idsByRegion(Set<InstanceRow> rows) {
+        return rows.stream().collect(Collectors.groupingBy(InstanceRow::getRegion, () -> new EnumMap<>(Regions.class), Collectors.mapping(InstanceRow::getInstanceId, Collectors.toSet())));
     }
 
-    private List<Regions> regions(Regions... exclude) {
-        return Arrays.asList(Regions.values()).stream().filter(regions -> !Arrays.asList(exclude).contains(regions)).collect(Collectors.toList());
+    private void applyFilter() {
+        final Set<Ec2States> states = stateFilterComboBox.getSelectedItem().map(EnumSet::of).orElse(null);
+        instanceFilterProvider.setFilter(new InstanceFilter(
+                nameFilterField.getValue(),
+                states,
+                scheduledFilterCheckBox.getValue() ? Boolean.TRUE : null,
+                elasticIpFilterCheckBox.getValue() ? Boolean.TRUE : null));
     }
 
-    private void doRefresh() {
-        if (timerExtension.isStarted()) {
-            timerExtension.stop();
-        }
-        lastupdateLabel.setValue("loading ...");
-        // run task now in background
-        backgroundService.execute(refreshTask);
+    private void refreshSchedules() {
+        //schedules are not part of the inventory, only re-render the rows
+        instanceDataProvider.refreshAll();
     }
 
-    private void gridSelectionChanged(final SelectionEvent<Instance> event) {
-        final Set<Instance> selection = event.getAllSelectedItems();
+    private void gridSelectionChanged(final SelectionEvent<InstanceRow> event) {
+        final Set<InstanceRow> selection = event.getAllSelectedItems();
         updateButtonsState(selection);
     }
 
-    private void updateButtonsState(final Set<Instance> selection) {
+    private void updateButtonsState(final Set<InstanceRow> selection) {
         if (selection == null || selection.isEmpty()) {
             startButton.setEnabled(false);
             stopButton.setEnabled(false);
@@ -367,31 +405,76 @@ public class AppUI extends UI {
             return;
         }
 
-        boolean isStopped = selection.stream().allMatch(instance -> instance.getState().getCode() == Ec2States.STOPPED.getCode());
+        boolean isStopped = selection.stream().allMatch(row -> row.getState() == Ec2States.STOPPED);
         startButton.setEnabled(isStopped);
         scheduleStartButton.setEnabled(isStopped);
 
-        boolean isStarted = selection.stream().allMatch(instance -> instance.getState().getCode() == Ec2States.RUNNING.getCode());
+        boolean isStarted = selection.stream().allMatch(row -> row.getState() == Ec2States.RUNNING);
         stopButton.setEnabled(isStarted);
         scheduleStopButton.setEnabled(isStarted);
 
-        cancelButton.setEnabled(selection.stream().anyMatch(instance -> ec2AutomationService.hasPlan(instance.getInstanceId())));
+        cancelButton.setEnabled(selection.stream().anyMatch(row -> ec2AutomationService.hasPlan(row.getInstanceId())));
     }
 
-    private void doStart(Set<Instance> instances) {
-        new Notification("Start", String.format("Starting [%s] Instance(s)", instances.size()), Notification.Type.HUMANIZED_MESSAGE, true).show(this.getPage());
-        backgroundService.execute(startInstanceTask);
+    private void doStart(Set<InstanceRow> instances) {
+        if (submit(BulkAction.START, instances)) {
+            new Notification("Start", String.format("Starting [%s] Instance(s)", instances.size()), Notification.Type.HUMANIZED_MESSAGE, true).show(this.getPage());
+        }
     }
 
-    private void doStop(Set<Instance> instances) {
-        new Notification("Stop", String.format("Stopping [%s] Instance(s) to stop", instances.size()), Notification.Type.HUMANIZED_MESSAGE, true).show(this.getPage());
-        backgroundService.execute(stopInstanceTask);
+    private void doStop(Set<InstanceRow> instances) {
+        if (submit(BulkAction.STOP, instances)) {
+            new Notification("Stop", String.format("Stopping [%s] Instance(s) to stop", instances.size()), Notification.Type.HUMANIZED_MESSAGE, true).show(this.getPage());
+        }
+    }
+
+    /**
+     * Submits the action on the ids of the selected instances, captured here on the UI thread
+     *
+     * @return false if the action was not queued, the selection being kept
+     */
+    private boolean submit(BulkAction action, Set<InstanceRow> instances) {
+        final Map<Regions, Set<String>> instanceIds = idsByRegion(instances);
+        final CompletableFuture<BulkProgress> result;
+        try {
+            result = bulkActionService.submit(getSession(), action, instanceIds, this::onBulkProgress);
+        } catch (RejectedExecutionException e) {
+            new Notification(action.getCaption(), "Too many actions pending, please retry in a moment", Notification.Type.WARNING_MESSAGE, true).show(this.getPage());
+            return false;
+        }
+        //the same action on the same instances is still pending, its progress is already shown
+        if (result.isCancelled()) {
+            new Notification(action.getCaption(), "The same action is already running on these instances", Notification.Type.WARNING_MESSAGE, true).show(this.getPage());
+            return false;
+        }
+        instancesGrid.deselectAll();
+        bulkProgressLabel.setValue(String.format("%s: 0/%d", action.getCaption(), instances.size()));
+        return true;
+    }
+
+    private void onBulkProgress(BulkProgress progress) {
+        try {
+            access(() -> {
+                final String summary = String.format("%s: %d/%d%s", progress.getAction().getCaption(), progress.getDone(), progress.getTotal(),
+                        progress.getFailed() == 0 ? "" : String.format(" (%d failed)", progress.getFailed()));
+                bulkProgressLabel.setValue(summary);
+                progress.getOutcomes().stream().filter(outcome -> !outcome.isSucceeded()).forEach(outcome ->
+                        LOG.debug("{} of [{}] failed: {}", progress.getAction(), outcome.getInstanceId(), outcome.getError()));
+
+                if (progress.isCompleted() && progress.getFailed() > 0) {
+                    new Notification(progress.getAction().getCaption(), summary, Notification.Type.WARNING_MESSAGE, true).show(this.getPage());
+                }
+                push();
+            });
+        } catch (UIDetachedException e) {
+            LOG.trace("!!! UI is detached, bulk progress dropped !!!");
+        }
     }
 
-    private void doCancel(Set<Instance> selectedItems) {
-        selectedItems.stream().forEach(instance -> ec2AutomationService.cancelPlans(instance.getInstanceId()));
+    private void doCancel(Set<InstanceRow> selectedItems) {
+        selectedItems.stream().forEach(row -> ec2AutomationService.cancelPlans(row.getInstanceId()));
         instancesGrid.deselectAll();
-        doRefresh();
+        refreshSchedules();
     }
 
     @Override
@@ -403,6 +486,7 @@ public class AppUI extends UI {
     @Override
     public void detach() {
         LOG.trace("Detaching UI");
+        unsubscribe();
         super.detach();
     }
 
@@ -410,7 +494,7 @@ public class AppUI extends UI {
         return AppServlet.getServiceManager(VaadinServlet.getCurrent().getServletContext());
     }
 
-    private class RegionCaptionGenerator implements ItemCaptionGenerator<Regions> {
+    static class RegionCaptionGenerator implements ItemCaptionGenerator<Regions> {
 
         @Override
         public String apply(Regions item) {
@@ -451,49 +535,4 @@ public class AppUI extends UI {
             return "Unknown";
         }
     }
-
-    private static class ViewModel {
-
-        private Set<Instance> instances;
-        private List<Address> elasticIPs;
-
-        public ViewModel(Set<Instance> instances, List<Address> elasticIPs) {
-            this.instances = instances;
-            this.elasticIPs = elasticIPs;
-        }
-
-        public Set<Instance> getInstances() {
-            return instances;
-        }
-
-        public void setInstances(Set<Instance> instances) {
-            this.instances = instances;
-        }
-
-        public List<Address> getElasticIPs() {
-            return elasticIPs;
-        }
-
-        public void setElasticIPs(List<Address> elasticIPs) {
-            this.elasticIPs = elasticIPs;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-
-            ViewModel viewModel = (ViewModel) o;
-
-            if (instances != null ? !instances.equals(viewModel.instances) : viewModel.instances != null) return false;
-            return elasticIPs != null ? elasticIPs.equals(viewModel.elasticIPs) : viewModel.elasticIPs == null;
-        }
-
-        @Override
-        public int hashCode() {
-            int result = instances != null ? instances.hashCode() : 0;
-            result = 31 * result + (elasticIPs != null ? elasticIPs.hashCode() : 0);
-            return result;
-        }
-    }
 }
@@ -0,0 +1,80 @@
+package org.teknux;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.teknux.service.IServiceManager;
+import org.teknux.service.events.IInstanceEventService;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Webhook receiving EC2 instance state-change events, e.g. from an EventBridge API destination:
+ * POST /events/ec2 with the event JSON as body and the configured token in the X-Events-Token header
+ */
+@WebServlet(urlPatterns = "/events/*", name = "InstanceEventServlet")
+public class InstanceEventServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(InstanceEventServlet.class);
+
+    public static final String TOKEN_HEADER = "X-Events-Token";
+    private static final int MAX_BODY_SIZE = 1024 * 1024;
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        final IServiceManager serviceManager = AppServlet.getServiceManager(getServletContext());
+        if (serviceManager == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        final IInstanceEventService eventService = serviceManager.getService(IInstanceEventService.class);
+        if (!"/ec2".equals(request.getPathInfo()) || !eventService.isWebhookEnabled()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!eventService.isWebhookAuthorized(request.getHeader(TOKEN_HEADER))) {
+            LOG.warn("Instance event from [{}] refused, wrong token", request.getRemoteAddr());
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        final String body = readBody(request);
+        if (body == null) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        try {
+            eventService.ingest(body);
+            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the body, null if larger than the accepted size
+     */
+    private static String readBody(HttpServletRequest request) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        try (InputStream in = request.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (body.size() + read > MAX_BODY_SIZE) {
+                    return null;
+                }
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,278 @@
+package org.teknux;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.teknux.service.IServiceManager;
+import org.teknux.service.automation.ISchedulerService;
+import org.teknux.service.automation.SchedulerMetrics;
+import org.teknux.service.background.BackgroundMetrics;
+import org.teknux.service.background.IBackgroundService;
+import org.teknux.service.broadcast.BroadcasterMetrics;
+import org.teknux.service.broadcast.IBroadcasterService;
+import org.teknux.service.client.Ec2ClientMetrics;
+import org.teknux.service.client.IEc2ClientService;
+import org.teknux.service.events.IInstanceEventService;
+import org.teknux.service.events.InstanceEventMetrics;
+import org.teknux.service.inventory.IInventoryService;
+import org.teknux.service.inventory.InventoryMetrics;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collection;
+
+/**
+ * Metrics of the services in the Prometheus text format: GET /metrics, with the configured token as bearer
+ * token in the Authorization header when one is set. Durations are exposed in seconds as count, sum and max, so
+ * that rates and means are computed by the scraper.
+ */
+@WebServlet(urlPatterns = "/metrics", name = "MetricsServlet")
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsServlet.class);
+
+    public static final String TOKEN_PROPERTY = "metrics.token";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private byte[] token;
+
+    @Override
+    public void init() throws ServletException {
+        final String configuredToken = System.getProperty(TOKEN_PROPERTY, "").trim();
+        token = configuredToken.isEmpty() ? null : ("Bearer " + configuredToken).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        final IServiceManager serviceManager = AppServlet.getServiceManager(getServletContext());
+        if (serviceManager == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        if (token != null) {
+            final String authorization = request.getHeader("Authorization");
+            if (authorization == null || !MessageDigest.isEqual(token, authorization.getBytes(StandardCharsets.UTF_8))) {
+                LOG.warn("Metrics scrape from [{}] refused, wrong token", request.getRemoteAddr());
+                response.sendError(HttpServletResponse.SC_FORBIDDEN);
+                return;
+            }
+        }
+
+        final Exposition exposition = new Exposition();
+        writeClients(exposition, serviceManager.getService(IEc2ClientService.class).metrics().values());
+        writeInventory(exposition, serviceManager.getService(IInventoryService.class).metrics());
+        writeScheduler(exposition, serviceManager.getService(ISchedulerService.class).metrics());
+        writeBackground(exposition, serviceManager.getService(IBackgroundService.class).metrics());
+        writeBroadcaster(exposition, serviceManager.getService(IBroadcasterService.class).metrics());
+        writeEvents(exposition, serviceManager.getService(IInstanceEventService.class).metrics());
+        writeJvm(exposition);
+
+        response.setContentType(CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-cache");
+        response.getOutputStream().write(exposition.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeClients(Exposition out, Collection<Ec2ClientMetrics> clients) {
+        out.family("ec2_api_seconds", "summary", "EC2 calls by region and operation, from the wait for a permit to the outcome, retries included");
+        clients.forEach(client -> client.getOperations().values().forEach(operation -> {
+            out.sample("ec2_api_seconds_count", operation.getCount(), "region", client.getRegion().getName(), "operation", operation.getOperation());
+            out.sample("ec2_api_seconds_sum", operation.getTotalMs() / 1000, "region", client.getRegion().getName(), "operation", operation.getOperation());
+        }));
+        out.family("ec2_api_seconds_max", "gauge", "Longest EC2 call by region and operation");
+        clients.forEach(client -> client.getOperations().values().forEach(operation ->
+                out.sample("ec2_api_seconds_max", operation.getMaxMs() / 1000, "region", client.getRegion().getName(), "operation", operation.getOperation())));
+        out.family("ec2_api_errors_total", "counter", "EC2 calls failed after their retries, by region and operation");
+        clients.forEach(client -> client.getOperations().values().forEach(operation ->
+                out.sample("ec2_api_errors_total", operation.getErrors(), "region", client.getRegion().getName(), "operation", operation.getOperation())));
+
+        out.family("ec2_client_requests_total", "counter", "EC2 calls started by region");
+        clients.forEach(client -> out.sample("ec2_client_requests_total", client.getRequests(), "region", client.getRegion().getName()));
+        out.family("ec2_client_errors_total", "counter", "EC2 calls failed by region");
+        clients.forEach(client -> out.sample("ec2_client_errors_total", client.getErrors(), "region", client.getRegion().getName()));
+        out.family("ec2_client_throttles_total", "counter", "EC2 responses with a throttling error by region");
+        clients.forEach(client -> out.sample("ec2_client_throttles_total", client.getThrottles(), "region", client.getRegion().getName()));
+        out.family("ec2_client_retries_total", "counter", "EC2 call retries by region");
+        clients.forEach(client -> out.sample("ec2_client_retries_total", client.getRetries(), "region", client.getRegion().getName()));
+        out.family("ec2_client_retries_denied_total", "counter", "EC2 call retries not attempted for lack of retry budget by region");
+        clients.forEach(client -> out.sample("ec2_client_retries_denied_total", client.getRetriesDenied(), "region", client.getRegion().getName()));
+        out.family("ec2_client_connections_leased", "gauge", "EC2 calls holding a pooled connection by region");
+        clients.forEach(client -> out.sample("ec2_client_connections_leased", client.getLeased(), "region", client.getRegion().getName()));
+        out.family("ec2_client_connections_max", "gauge", "Pooled connections allowed by region");
+        clients.forEach(client -> out.sample("ec2_client_connections_max", client.getMaxConnections(), "region", client.getRegion().getName()));
+        out.family("ec2_client_rate", "gauge", "EC2 calls per second currently allowed by region and category, lowered on throttling");
+        clients.forEach(client -> {
+            out.sample("ec2_client_rate", client.getDescribeRate(), "region", client.getRegion().getName(), "category", "describe");
+            out.sample("ec2_client_rate", client.getMutateRate(), "region", client.getRegion().getName(), "category", "mutate");
+        });
+    }
+
+    private static void writeInventory(Exposition out, InventoryMetrics inventory) {
+        out.family("inventory_stage_seconds", "summary", "Inventory fetches by stage");
+        inventory.getStages().values().forEach(stage -> {
+            out.sample("inventory_stage_seconds_count", stage.getCount(), "stage", stage.getStage().name().toLowerCase());
+            out.sample("inventory_stage_seconds_sum", stage.getTotalMs() / 1000, "stage", stage.getStage().name().toLowerCase());
+        });
+        out.family("inventory_stage_seconds_max", "gauge", "Longest inventory fetch stage");
+        inventory.getStages().values().forEach(stage -> out.sample("inventory_stage_seconds_max", stage.getMaxMs() / 1000, "stage", stage.getStage().name().toLowerCase()));
+        out.family("inventory_stage_seconds_last", "gauge", "Last inventory fetch stage");
+        inventory.getStages().values().forEach(stage -> out.sample("inventory_stage_seconds_last", stage.getLastMs() / 1000, "stage", stage.getStage().name().toLowerCase()));
+        out.family("inventory_elastic_ips_reused_total", "counter", "Inventory fetches reusing the previous elastic IPs");
+        out.sample("inventory_elastic_ips_reused_total", inventory.getElasticIPsReused());
+        out.family("inventory_convergence_describes_total", "counter", "DescribeInstances calls limited to instances just started or stopped");
+        out.sample("inventory_convergence_describes_total", inventory.getConvergenceDescribes());
+    }
+
+    private static void writeScheduler(Exposition out, SchedulerMetrics scheduler) {
+        out.family("scheduler_planned", "gauge", "Plans not due yet");
+        out.sample("scheduler_planned", scheduler.getPlanned());
+        out.family("scheduler_pending", "gauge", "Due runs waiting for a worker");
+        out.sample("scheduler_pending", scheduler.getPending());
+        out.family("scheduler_running", "gauge", "Due runs being run");
+        out.sample("scheduler_running", scheduler.getRunning());
+        out.family("scheduler_runs_total", "counter", "Due runs completed, single tasks or batches");
+        out.sample("scheduler_runs_total", scheduler.getRuns());
+        out.family("scheduler_runs_failed_total", "counter", "Due runs failed");
+        out.sample("scheduler_runs_failed_total", scheduler.getFailed());
+        out.family("scheduler_dispatch_lag_seconds", "summary", "Time between the due time of a run and its start");
+        out.sample("scheduler_dispatch_lag_seconds_count", scheduler.getStarted());
+        out.sample("scheduler_dispatch_lag_seconds_sum", scheduler.getTotalLagMs() / 1000.0);
+        out.family("scheduler_dispatch_lag_seconds_max", "gauge", "Longest dispatch lag");
+        out.sample("scheduler_dispatch_lag_seconds_max", scheduler.getMaxLagMs() / 1000.0);
+        out.family("scheduler_dispatch_lag_seconds_last", "gauge", "Dispatch lag of the last run");
+        out.sample("scheduler_dispatch_lag_seconds_last", scheduler.getLastLagMs() / 1000.0);
+    }
+
+    private static void writeBackground(Exposition out, BackgroundMetrics background) {
+        out.family("background_threads", "gauge", "Threads of the background executor");
+        out.sample("background_threads", background.getThreads());
+        out.family("background_queued", "gauge", "Background jobs waiting for a thread");
+        out.sample("background_queued", background.getQueued());
+        out.family("background_active", "gauge", "Background jobs running");
+        out.sample("background_active", background.getActive());
+        out.family("background_submitted_total", "counter", "Background jobs submitted");
+        out.sample("background_submitted_total", background.getSubmitted());
+        out.family("background_rejected_total", "counter", "Background jobs rejected, too many being pending");
+        out.sample("background_rejected_total", background.getRejected());
+        out.family("background_deduplicated_total", "counter", "Background jobs dropped, an equal one being pending");
+        out.sample("background_deduplicated_total", background.getDeduplicated());
+
+        final Collection<BackgroundMetrics.TaskTypeMetrics> taskTypes = background.getTaskTypes().values();
+        out.family("background_wait_seconds", "summary", "Wait of the background jobs for a thread by type");
+        taskTypes.forEach(taskType -> {
+            out.sample("background_wait_seconds_count", taskType.getStarted(), "type", taskType.getTaskType());
+            out.sample("background_wait_seconds_sum", taskType.getTotalWaitMs() / 1000, "type", taskType.getTaskType());
+        });
+        out.family("background_wait_seconds_max", "gauge", "Longest wait of a background job by type");
+        taskTypes.forEach(taskType -> out.sample("background_wait_seconds_max", taskType.getMaxWaitMs() / 1000, "type", taskType.getTaskType()));
+        out.family("background_run_seconds", "summary", "Background jobs run by type");
+        taskTypes.forEach(taskType -> {
+            out.sample("background_run_seconds_count", taskType.getCompleted(), "type", taskType.getTaskType());
+            out.sample("background_run_seconds_sum", taskType.getTotalRunMs() / 1000, "type", taskType.getTaskType());
+        });
+        out.family("background_run_seconds_max", "gauge", "Longest background job by type");
+        taskTypes.forEach(taskType -> out.sample("background_run_seconds_max", taskType.getMaxRunMs() / 1000, "type", taskType.getTaskType()));
+        out.family("background_failed_total", "counter", "Background jobs failed by type");
+        taskTypes.forEach(taskType -> out.sample("background_failed_total", taskType.getFailed(), "type", taskType.getTaskType()));
+    }
+
+    private static void writeBroadcaster(Exposition out, BroadcasterMetrics broadcaster) {
+        out.family("ui_active", "gauge", "UIs subscribed to at least one region");
+        out.sample("ui_active", broadcaster.getSubscribers());
+        out.family("ui_subscriptions", "gauge", "Region subscriptions of the UIs");
+        out.sample("ui_subscriptions", broadcaster.getSubscriptions());
+        out.family("ui_deltas_posted_total", "counter", "Inventory deltas handed over to the UIs");
+        out.sample("ui_deltas_posted_total", broadcaster.getPosted());
+        out.family("ui_deltas_failed_total", "counter", "Inventory deltas the UIs failed to take");
+        out.sample("ui_deltas_failed_total", broadcaster.getFailed());
+        out.family("ui_push_seconds", "summary", "Time from the computation of an inventory delta to its push by a UI");
+        out.sample("ui_push_seconds_count", broadcaster.getPushed());
+        out.sample("ui_push_seconds_sum", broadcaster.getTotalPushMs() / 1000);
+        out.family("ui_push_seconds_max", "gauge", "Longest inventory delta push");
+        out.sample("ui_push_seconds_max", broadcaster.getMaxPushMs() / 1000);
+    }
+
+    private static void writeEvents(Exposition out, InstanceEventMetrics events) {
+        out.family("events_received_total", "counter", "Instance state-change events received");
+        out.sample("events_received_total", events.getReceived());
+        out.family("events_applied_total", "counter", "Instance state-change events applied to the inventory");
+        out.sample("events_applied_total", events.getApplied());
+        out.family("events_ignored_total", "counter", "Instance state-change events ignored");
+        out.sample("events_ignored_total", events.getIgnored());
+        out.family("events_malformed_total", "counter", "Instance state-change events which could not be read");
+        out.sample("events_malformed_total", events.getMalformed());
+        out.family("events_delay_seconds_max", "gauge", "Longest time between a state change and the reception of its event");
+        out.sample("events_delay_seconds_max", events.getMaxDelayMs() / 1000.0);
+    }
+
+    private static void writeJvm(Exposition out) {
+        out.family("jvm_threads_live", "gauge", "Live threads");
+        out.sample("jvm_threads_live", ManagementFactory.getThreadMXBean().getThreadCount());
+        out.family("jvm_memory_heap_used_bytes", "gauge", "Used heap");
+        out.sample("jvm_memory_heap_used_bytes", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+    }
+
+    /**
+     * Prometheus text format, the samples of a family following its header
+     */
+    private static class Exposition {
+
+        private final StringBuilder text = new StringBuilder(16 * 1024);
+
+        void family(String name, String type, String help) {
+            text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+
+        /**
+         * @param labels label names and values, alternately
+         */
+        void sample(String name, double value, String... labels) {
+            text.append(name);
+            if (labels.length > 0) {
+                text.append('{');
+                for (int i = 0; i < labels.length; i += 2) {
+                    if (i > 0) {
+                        text.append(',');
+                    }
+                    text.append(labels[i]).append("=\"");
+                    escape(labels[i + 1]);
+                    text.append('"');
+                }
+                text.append('}');
+            }
+            text.append(' ');
+            if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                text.append((long) value);
+            } else {
+                text.append(value);
+            }
+            text.append('\n');
+        }
+
+        private void escape(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '\\' || c == '"') {
+                    text.append('\\').append(c);
+                } else if (c == '\n') {
+                    text.append("\\n");
+                } else {
+                    text.append(c);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
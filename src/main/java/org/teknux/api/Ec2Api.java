@@ -1,41 +1,63 @@
 package org.teknux.api;
 
-import com.amazonaws.auth.AWSCredentials;
-import com.amazonaws.auth.AWSCredentialsProvider;
-import com.amazonaws.regions.Regions;
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
 import com.amazonaws.services.ec2.model.*;
+import org.teknux.api.model.InstanceQuery;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Ec2Api {
 
+    /**
+     * Maximum count of instance ids sent in a single start or stop call
+     */
+    public static final int MAX_INSTANCE_IDS_PER_CALL = 1000;
+
     private AmazonEC2 ec2;
 
     public Ec2Api(AmazonEC2 ec2) {
         this.ec2 = ec2;
     }
 
-    public static Ec2Api instance() {
-        return instance(Regions.DEFAULT_REGION);
+    public Set<Instance> instances() {
+        return instances(InstanceQuery.all());
     }
 
-    public static Ec2Api instance(Regions region) {
-        return new Ec2Api(AmazonEC2ClientBuilder.standard().withCredentials(new PropertiesCredentialProvider()).withRegion(region).build());
+    public Set<Instance> instances(InstanceQuery query) {
+        final Set<Instance> instances = new HashSet<>();
+        instances(query, instances::addAll);
+        return instances;
     }
 
-    public Set<Instance> instances() {
-        DescribeInstancesResult describeInstancesRequest = ec2.describeInstances();
+    /**
+     * Fetches the instances matching the query page by page, following NextToken until the last page
+     *
+     * @param pageConsumer called once per DescribeInstances page, in order
+     */
+    public void instances(InstanceQuery query, Consumer<List<Instance>> pageConsumer) {
+        String nextToken = null;
+        do {
+            final DescribeInstancesResult result = ec2.describeInstances(query.toRequest(nextToken));
+            pageConsumer.accept(pageInstances(result));
+            nextToken = result.getNextToken();
+        } while (nextToken != null && !nextToken.isEmpty());
+    }
 
-        List<Reservation> reservations = describeInstancesRequest.getReservations();
-        Set<Instance> instances = new HashSet<>();
-        reservations.forEach(reservation -> instances.addAll(reservation.getInstances()));
+    /**
+     * Lazily streams the instances matching the query, the next page being requested only once the previous one has been consumed
+     */
+    public Stream<Instance> instanceStream(InstanceQuery query) {
+        return StreamSupport.stream(new InstanceSpliterator(query), false);
+    }
 
+    private static List<Instance> pageInstances(DescribeInstancesResult result) {
+        final List<Instance> instances = new ArrayList<>();
+        result.getReservations().forEach(reservation -> instances.addAll(reservation.getInstances()));
         return instances;
     }
 
@@ -53,6 +75,49 @@ public class Ec2Api {
         return result.getStoppingInstances();
     }
 
+    /**
+     * Starts the instances in as few calls as possible, reporting the outcome of each instance
+     */
+    public void startInstances(Collection<String> ids, InstanceOutcomeListener listener) {
+        inBatches(ids, this::startInstances, listener);
+    }
+
+    /**
+     * Stops the instances in as few calls as possible, reporting the outcome of each instance
+     */
+    public void stopInstances(Collection<String> ids, InstanceOutcomeListener listener) {
+        inBatches(ids, this::stopInstances, listener);
+    }
+
+    private static void inBatches(Collection<String> ids, Function<Set<String>, List<InstanceStateChange>> action, InstanceOutcomeListener listener) {
+        final List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        for (int from = 0; from < distinctIds.size(); from += MAX_INSTANCE_IDS_PER_CALL) {
+            final Set<String> batch = new LinkedHashSet<>(distinctIds.subList(from, Math.min(distinctIds.size(), from + MAX_INSTANCE_IDS_PER_CALL)));
+            try {
+                action.apply(batch).forEach(listener::changed);
+            } catch (AmazonServiceException e) {
+                if (batch.size() > 1 && isInstanceError(e)) {
+                    //a single unknown or busy instance fails the whole call, retry one by one so that the others still apply
+                    batch.forEach(id -> {
+                        try {
+                            action.apply(Collections.singleton(id)).forEach(listener::changed);
+                        } catch (AmazonServiceException instanceError) {
+                            listener.failed(id, instanceError);
+                        }
+                    });
+                } else {
+                    batch.forEach(id -> listener.failed(id, e));
+                }
+            }
+            listener.batchCompleted();
+        }
+    }
+
+    private static boolean isInstanceError(AmazonServiceException e) {
+        final String errorCode = e.getErrorCode();
+        return errorCode != null && (errorCode.startsWith("InvalidInstanceID") || errorCode.equals("IncorrectInstanceState") || errorCode.equals("UnsupportedOperation"));
+    }
+
     public List<Address> elasticIPs() {
         DescribeAddressesResult response = ec2.describeAddresses();
         return response.getAddresses();
@@ -111,32 +176,46 @@ public class Ec2Api {
         ec2.createTags(new CreateTagsRequest().withResources(resourceId).withTags(tags));
     }
 
-    private static class PropertiesCredentialProvider implements AWSCredentialsProvider {
+    /**
+     * Outcome of a multi-instance call, instance by instance
+     */
+    public interface InstanceOutcomeListener {
+        void changed(InstanceStateChange stateChange);
 
-        public static final String AWS_ACCESS_KEY_ID_PROPERTY = "AWSAccessKeyId";
-        public static final String AWS_SECRET_KEY_PROPERTY = "AWSSecretKey";
+        void failed(String instanceId, AmazonServiceException e);
 
-        @Override
-        public AWSCredentials getCredentials() {
-            final String accessKey = System.getProperty(AWS_ACCESS_KEY_ID_PROPERTY);
-            final String secretKey = System.getProperty(AWS_SECRET_KEY_PROPERTY);
-
-            return new AWSCredentials() {
-                @Override
-                public String getAWSAccessKeyId() {
-                    return accessKey;
-                }
+        /**
+         * Called once the instances of a call are all reported
+         */
+        default void batchCompleted() {
+        }
+    }
 
-                @Override
-                public String getAWSSecretKey() {
-                    return secretKey;
-                }
-            };
+    private class InstanceSpliterator extends Spliterators.AbstractSpliterator<Instance> {
+
+        private final InstanceQuery query;
+        private Iterator<Instance> page = Collections.emptyIterator();
+        private String nextToken;
+        private boolean lastPageFetched;
+
+        InstanceSpliterator(InstanceQuery query) {
+            super(Long.MAX_VALUE, Spliterator.DISTINCT | Spliterator.NONNULL);
+            this.query = query;
         }
 
         @Override
-        public void refresh() {
-            //nop
+        public boolean tryAdvance(Consumer<? super Instance> action) {
+            while (!page.hasNext()) {
+                if (lastPageFetched) {
+                    return false;
+                }
+                final DescribeInstancesResult result = ec2.describeInstances(query.toRequest(nextToken));
+                page = pageInstances(result).iterator();
+                nextToken = result.getNextToken();
+                lastPageFetched = nextToken == null || nextToken.isEmpty();
+            }
+            action.accept(page.next());
+            return true;
         }
     }
 }
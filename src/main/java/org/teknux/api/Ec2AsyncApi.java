@@ -0,0 +1,108 @@
+package org.teknux.api;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.ec2.AmazonEC2Async;
+import com.amazonaws.services.ec2.model.*;
+import org.teknux.api.model.InstanceQuery;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking counterpart of {@link Ec2Api}: calls go through the SDK async client and complete the returned
+ * futures from its callbacks, so that callers compose results instead of holding a thread per request.
+ * Futures complete on the async client threads, dependent stages should not block.
+ */
+public class Ec2AsyncApi {
+
+    private final AmazonEC2Async ec2;
+
+    public Ec2AsyncApi(AmazonEC2Async ec2) {
+        this.ec2 = ec2;
+    }
+
+    public CompletableFuture<Set<Instance>> instancesAsync() {
+        return instancesAsync(InstanceQuery.all());
+    }
+
+    public CompletableFuture<Set<Instance>> instancesAsync(InstanceQuery query) {
+        final Set<Instance> instances = new HashSet<>();
+        return instancesAsync(query, instances::addAll).thenApply(done -> instances);
+    }
+
+    /**
+     * Fetches the instances matching the query page by page, the next page being requested from the callback of the previous one
+     *
+     * @param pageConsumer called once per DescribeInstances page, in order
+     * @return future completed once the last page has been consumed
+     */
+    public CompletableFuture<Void> instancesAsync(InstanceQuery query, Consumer<List<Instance>> pageConsumer) {
+        return page(query, null, pageConsumer);
+    }
+
+    private CompletableFuture<Void> page(InstanceQuery query, String nextToken, Consumer<List<Instance>> pageConsumer) {
+        final CompletableFuture<DescribeInstancesResult> call = call(query.toRequest(nextToken), ec2::describeInstancesAsync);
+        return call.thenCompose(result -> {
+            final List<Instance> instances = new ArrayList<>();
+            result.getReservations().forEach(reservation -> instances.addAll(reservation.getInstances()));
+            pageConsumer.accept(instances);
+
+            final String token = result.getNextToken();
+            return token == null || token.isEmpty() ? CompletableFuture.completedFuture(null) : page(query, token, pageConsumer);
+        });
+    }
+
+    public CompletableFuture<List<Address>> elasticIPsAsync() {
+        final CompletableFuture<DescribeAddressesResult> call = call(new DescribeAddressesRequest(), ec2::describeAddressesAsync);
+        return call.thenApply(DescribeAddressesResult::getAddresses);
+    }
+
+    public CompletableFuture<List<InstanceStateChange>> startInstancesAsync(Set<String> ids) {
+        final CompletableFuture<StartInstancesResult> call = call(new StartInstancesRequest().withInstanceIds(ids), ec2::startInstancesAsync);
+        return call.thenApply(StartInstancesResult::getStartingInstances);
+    }
+
+    public CompletableFuture<List<InstanceStateChange>> stopInstancesAsync(Set<String> ids) {
+        final CompletableFuture<StopInstancesResult> call = call(new StopInstancesRequest().withInstanceIds(ids), ec2::stopInstancesAsync);
+        return call.thenApply(StopInstancesResult::getStoppingInstances);
+    }
+
+    public CompletableFuture<List<KeyPairInfo>> keyPairsAsync() {
+        final CompletableFuture<DescribeKeyPairsResult> call = call(new DescribeKeyPairsRequest(), ec2::describeKeyPairsAsync);
+        return call.thenApply(DescribeKeyPairsResult::getKeyPairs);
+    }
+
+    public CompletableFuture<List<SecurityGroup>> securityGroupsAsync() {
+        final CompletableFuture<DescribeSecurityGroupsResult> call = call(new DescribeSecurityGroupsRequest(), ec2::describeSecurityGroupsAsync);
+        return call.thenApply(DescribeSecurityGroupsResult::getSecurityGroups);
+    }
+
+    private static <Q extends AmazonWebServiceRequest, R> CompletableFuture<R> call(Q request, AsyncCall<Q, R> asyncCall) {
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            asyncCall.apply(request, new AsyncHandler<Q, R>() {
+                @Override
+                public void onError(Exception exception) {
+                    future.completeExceptionally(exception);
+                }
+
+                @Override
+                public void onSuccess(Q request, R result) {
+                    future.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            //rejected by the async client executor, e.g. while shutting down
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @FunctionalInterface
+    private interface AsyncCall<Q extends AmazonWebServiceRequest, R> {
+        Future<R> apply(Q request, AsyncHandler<Q, R> handler);
+    }
+}
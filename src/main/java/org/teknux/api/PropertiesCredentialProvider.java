@@ -0,0 +1,33 @@
+package org.teknux.api;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+
+public class PropertiesCredentialProvider implements AWSCredentialsProvider {
+
+    public static final String AWS_ACCESS_KEY_ID_PROPERTY = "AWSAccessKeyId";
+    public static final String AWS_SECRET_KEY_PROPERTY = "AWSSecretKey";
+
+    @Override
+    public AWSCredentials getCredentials() {
+        final String accessKey = System.getProperty(AWS_ACCESS_KEY_ID_PROPERTY);
+        final String secretKey = System.getProperty(AWS_SECRET_KEY_PROPERTY);
+
+        return new AWSCredentials() {
+            @Override
+            public String getAWSAccessKeyId() {
+                return accessKey;
+            }
+
+            @Override
+            public String getAWSSecretKey() {
+                return secretKey;
+            }
+        };
+    }
+
+    @Override
+    public void refresh() {
+        //nop
+    }
+}
@@ -24,7 +24,25 @@ public enum Ec2States {
         return code;
     }
 
+    /**
+     * @param code state code as given by EC2, whose high byte is internal and ignored, e.g. 272 for running
+     */
     public static Optional<Ec2States> fromCode(int code) {
-        return Arrays.asList(Ec2States.values()).stream().filter(ec2States -> ec2States.code == code).findFirst();
+        final int stateCode = code & 0xFF;
+        return Arrays.asList(Ec2States.values()).stream().filter(ec2States -> ec2States.code == stateCode).findFirst();
+    }
+
+    /**
+     * @param name state name as given by EC2, e.g. "shutting-down"
+     */
+    public static Optional<Ec2States> fromName(String name) {
+        return Arrays.stream(Ec2States.values()).filter(ec2States -> ec2States != UNKNOWN && ec2States.getName().equalsIgnoreCase(name)).findFirst();
+    }
+
+    /**
+     * @return state name as given by EC2, e.g. "shutting-down"
+     */
+    public String getName() {
+        return name().toLowerCase().replace('_', '-');
     }
 }
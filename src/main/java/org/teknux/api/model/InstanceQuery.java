@@ -0,0 +1,100 @@
+package org.teknux.api.model;
+
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.Filter;
+
+import java.util.*;
+
+/**
+ * Server-side filters and page size of a DescribeInstances fetch
+ */
+public class InstanceQuery {
+
+    public static final int MIN_PAGE_SIZE = 5;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private final Set<Ec2States> states = EnumSet.noneOf(Ec2States.class);
+    private final Map<String, Set<String>> tags = new LinkedHashMap<>();
+    private final Set<String> vpcIds = new LinkedHashSet<>();
+    private final Set<String> instanceIds = new LinkedHashSet<>();
+    private int pageSize = MAX_PAGE_SIZE;
+
+    public static InstanceQuery all() {
+        return new InstanceQuery();
+    }
+
+    public InstanceQuery withStates(Ec2States... states) {
+        this.states.addAll(Arrays.asList(states));
+        return this;
+    }
+
+    public InstanceQuery withStates(Collection<Ec2States> states) {
+        this.states.addAll(states);
+        return this;
+    }
+
+    public InstanceQuery withTag(String key, String... values) {
+        tags.computeIfAbsent(key, k -> new LinkedHashSet<>()).addAll(Arrays.asList(values));
+        return this;
+    }
+
+    public InstanceQuery withVpcIds(String... vpcIds) {
+        this.vpcIds.addAll(Arrays.asList(vpcIds));
+        return this;
+    }
+
+    public InstanceQuery withInstanceIds(Collection<String> instanceIds) {
+        this.instanceIds.addAll(instanceIds);
+        return this;
+    }
+
+    /**
+     * @param pageSize number of instances per DescribeInstances call, clamped to what EC2 accepts (5 to 1000)
+     */
+    public InstanceQuery withPageSize(int pageSize) {
+        this.pageSize = Math.max(MIN_PAGE_SIZE, Math.min(MAX_PAGE_SIZE, pageSize));
+        return this;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public List<Filter> toFilters() {
+        final List<Filter> filters = new ArrayList<>();
+        if (!states.isEmpty()) {
+            final List<String> codes = new ArrayList<>(states.size());
+            states.forEach(state -> codes.add(String.valueOf(state.getCode())));
+            filters.add(new Filter("instance-state-code", codes));
+        }
+        tags.forEach((key, values) -> {
+            if (values.isEmpty()) {
+                filters.add(new Filter("tag-key", Collections.singletonList(key)));
+            } else {
+                filters.add(new Filter("tag:" + key, new ArrayList<>(values)));
+            }
+        });
+        if (!vpcIds.isEmpty()) {
+            filters.add(new Filter("vpc-id", new ArrayList<>(vpcIds)));
+        }
+        //instance ids are passed as a filter since EC2 rejects InstanceIds combined with MaxResults
+        if (!instanceIds.isEmpty()) {
+            filters.add(new Filter("instance-id", new ArrayList<>(instanceIds)));
+        }
+        return filters;
+    }
+
+    public DescribeInstancesRequest toRequest(String nextToken) {
+        final DescribeInstancesRequest request = new DescribeInstancesRequest().withMaxResults(pageSize).withNextToken(nextToken);
+        final List<Filter> filters = toFilters();
+        if (!filters.isEmpty()) {
+            request.setFilters(filters);
+        }
+        return request;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InstanceQuery{states=%s, tags=%s, vpcIds=%s, instanceIds=%s, pageSize=%d}", states, tags, vpcIds, instanceIds, pageSize);
+    }
+}
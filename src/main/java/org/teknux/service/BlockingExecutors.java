@@ -0,0 +1,79 @@
+package org.teknux.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executors of the services running blocking EC2 calls. By default a fixed pool of platform threads, or one virtual
+ * thread per task when started with -Dexecutor.virtualThreads=true on a JVM supporting them (21+); virtual threads
+ * are then bounded by the EC2 client per region concurrency cap rather than by pool sizes. Virtual threads are created
+ * reflectively so that the Java 8 build runs them as is on a newer JVM.
+ */
+public final class BlockingExecutors {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlockingExecutors.class);
+
+    public static final String VIRTUAL_THREADS_PROPERTY = "executor.virtualThreads";
+
+    private static volatile Boolean virtualThreads;
+
+    private BlockingExecutors() {
+    }
+
+    /**
+     * @return true if the virtual thread mode is requested and supported by the running JVM
+     */
+    public static boolean isVirtualThreads() {
+        if (virtualThreads == null) {
+            synchronized (BlockingExecutors.class) {
+                if (virtualThreads == null) {
+                    virtualThreads = Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY) && virtualThreadsSupported();
+                    LOG.info("Blocking EC2 calls run on {} threads", virtualThreads ? "virtual" : "platform");
+                }
+            }
+        }
+        return virtualThreads;
+    }
+
+    private static boolean virtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            LOG.warn("{} is set but virtual threads need Java 21+ (running {}), using platform threads", VIRTUAL_THREADS_PROPERTY, System.getProperty("java.version"));
+            return false;
+        }
+    }
+
+    /**
+     * @param name            prefix of the virtual thread names
+     * @param platformThreads size of the fixed pool used in platform thread mode
+     */
+    public static ExecutorService newExecutor(String name, int platformThreads) {
+        if (isVirtualThreads()) {
+            try {
+                return newVirtualThreadPerTaskExecutor(name);
+            } catch (ReflectiveOperationException e) {
+                LOG.error("Unable to create virtual thread executor [{}], using platform threads", name, e);
+            }
+        }
+        return Executors.newFixedThreadPool(platformThreads);
+    }
+
+    /**
+     * Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory())
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String name) throws ReflectiveOperationException {
+        final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+        final Object builder = builderClass.getMethod("name", String.class, long.class)
+                .invoke(Thread.class.getMethod("ofVirtual").invoke(null), name + "-", 0L);
+        final ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        final Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        return (ExecutorService) newThreadPerTaskExecutor.invoke(null, factory);
+    }
+}
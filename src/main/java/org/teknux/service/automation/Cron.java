@@ -0,0 +1,207 @@
+package org.teknux.service.automation;
+
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Five field cron expression, "minute hour day-of-month month day-of-week", evaluated in a time zone. Fields accept
+ * "*", values, ranges, lists and steps such as "0,30", "8-18/2" or "MON-FRI", month and day names included. As in
+ * cron, a day matches either day field when both are restricted.
+ * <p>
+ * Occurrences are computed field by field, skipping whole months, days and hours which cannot match, and are
+ * returned as {@link LocalDateTime} of the system time zone like the other schedules.
+ */
+public final class Cron {
+
+    private static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"};
+    private static final String[] DAYS = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+    private static final int MAX_YEARS_AHEAD = 5;
+
+    private final String expression;
+    private final ZoneId zone;
+    private final BitSet minutes;
+    private final BitSet hours;
+    private final BitSet daysOfMonth;
+    private final BitSet months;
+    private final BitSet daysOfWeek;
+    private final boolean daysOfMonthRestricted;
+    private final boolean daysOfWeekRestricted;
+
+    private Cron(String expression, ZoneId zone, String[] fields) {
+        this.expression = expression;
+        this.zone = zone;
+        this.minutes = parseField(fields[0], 0, 59, null);
+        this.hours = parseField(fields[1], 0, 23, null);
+        this.daysOfMonth = parseField(fields[2], 1, 31, null);
+        this.months = parseField(fields[3], 1, 12, MONTHS);
+        final BitSet parsedDaysOfWeek = parseField(fields[4], 0, 7, DAYS);
+        //7 is Sunday as well
+        if (parsedDaysOfWeek.get(7)) {
+            parsedDaysOfWeek.set(0);
+        }
+        this.daysOfWeek = parsedDaysOfWeek;
+        this.daysOfMonthRestricted = !isWildcard(fields[2]);
+        this.daysOfWeekRestricted = !isWildcard(fields[4]);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is not a valid five field cron expression
+     */
+    public static Cron parse(String expression, ZoneId zone) {
+        Objects.requireNonNull(zone);
+        final String trimmed = Objects.requireNonNull(expression).trim();
+        final String[] fields = trimmed.split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException(String.format("Cron expression [%s] must have 5 fields: minute hour day-of-month month day-of-week", expression));
+        }
+        return new Cron(String.join(" ", fields), zone, fields);
+    }
+
+    private static boolean isWildcard(String field) {
+        return field.equals("*") || field.equals("?");
+    }
+
+    private static BitSet parseField(String field, int min, int max, String[] names) {
+        final BitSet values = new BitSet(max + 1);
+        for (String part : field.split(",")) {
+            int step = 1;
+            String range = part;
+            final int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseNumber(part.substring(slash + 1), 1, max, null, field);
+                range = part.substring(0, slash);
+            }
+
+            final int from;
+            final int to;
+            if (isWildcard(range)) {
+                from = min;
+                to = max;
+            } else if (range.indexOf('-') > 0) {
+                from = parseNumber(range.substring(0, range.indexOf('-')), min, max, names, field);
+                to = parseNumber(range.substring(range.indexOf('-') + 1), min, max, names, field);
+            } else {
+                from = parseNumber(range, min, max, names, field);
+                to = slash >= 0 ? max : from;
+            }
+            if (from > to) {
+                throw new IllegalArgumentException(String.format("Range [%s] of cron field [%s] is reversed", range, field));
+            }
+            for (int value = from; value <= to; value += step) {
+                values.set(value);
+            }
+        }
+        return values;
+    }
+
+    private static int parseNumber(String text, int min, int max, String[] names, String field) {
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equalsIgnoreCase(text)) {
+                    return names == MONTHS ? i + 1 : i;
+                }
+            }
+        }
+        final int value;
+        try {
+            value = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid value [%s] in cron field [%s]", text, field), e);
+        }
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(String.format("Value [%s] of cron field [%s] is out of %s-%s", text, field, min, max));
+        }
+        return value;
+    }
+
+    /**
+     * @param after time of the system time zone
+     * @return first occurrence strictly after the given time, in the system time zone, null if there is none in the
+     * next years
+     */
+    public LocalDateTime nextAfter(LocalDateTime after) {
+        final ZoneId systemZone = ZoneId.systemDefault();
+        final ZonedDateTime start = after.atZone(systemZone).withZoneSameInstant(zone);
+        final int lastYear = start.getYear() + MAX_YEARS_AHEAD;
+
+        LocalDateTime candidate = start.toLocalDateTime().truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        while (candidate.getYear() <= lastYear) {
+            if (!months.get(candidate.getMonthValue())) {
+                candidate = candidate.toLocalDate().withDayOfMonth(1).plusMonths(1).atStartOfDay();
+                continue;
+            }
+            if (!matchesDay(candidate.toLocalDate())) {
+                candidate = candidate.toLocalDate().plusDays(1).atStartOfDay();
+                continue;
+            }
+            final int hour = hours.nextSetBit(candidate.getHour());
+            if (hour < 0) {
+                candidate = candidate.toLocalDate().plusDays(1).atStartOfDay();
+                continue;
+            }
+            if (hour != candidate.getHour()) {
+                candidate = candidate.toLocalDate().atTime(hour, 0);
+            }
+            final int minute = minutes.nextSetBit(candidate.getMinute());
+            if (minute < 0) {
+                candidate = candidate.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+                continue;
+            }
+            candidate = candidate.withMinute(minute);
+
+            //local times skipped by a DST gap are moved forward, repeated ones are taken at their first offset
+            final LocalDateTime occurrence = ZonedDateTime.ofLocal(candidate, zone, null).withZoneSameInstant(systemZone).toLocalDateTime();
+            if (occurrence.isAfter(after)) {
+                return occurrence;
+            }
+            candidate = candidate.plusMinutes(1);
+        }
+        return null;
+    }
+
+    private boolean matchesDay(LocalDate date) {
+        final boolean dayOfMonth = daysOfMonth.get(date.getDayOfMonth());
+        final boolean dayOfWeek = daysOfWeek.get(date.getDayOfWeek().getValue() % 7);
+        if (daysOfMonthRestricted && daysOfWeekRestricted) {
+            return dayOfMonth || dayOfWeek;
+        }
+        return dayOfMonth && dayOfWeek;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * @return three letter name of the day, as accepted in the day-of-week field
+     */
+    static String dayName(DayOfWeek day) {
+        return DAYS[day.getValue() % 7];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Cron cron = (Cron) o;
+        return expression.toUpperCase(Locale.ROOT).equals(cron.expression.toUpperCase(Locale.ROOT)) && zone.equals(cron.zone);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * expression.toUpperCase(Locale.ROOT).hashCode() + zone.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return expression + " " + zone;
+    }
+}
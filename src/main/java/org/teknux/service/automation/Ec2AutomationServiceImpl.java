@@ -5,119 +5,127 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.teknux.service.IServiceManager;
 import org.teknux.service.ServiceException;
+import org.teknux.service.client.IEc2ClientService;
 import org.teknux.task.automation.AbstractEc2InstanceAutomation;
 import org.teknux.task.automation.Ec2InstanceStartAutomationTask;
 import org.teknux.task.automation.Ec2InstanceStopAutomationTask;
 
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
 
 public class Ec2AutomationServiceImpl implements IEc2AutomationService {
 
     private static final Logger LOG = LoggerFactory.getLogger(Ec2AutomationServiceImpl.class);
 
+    public static final String OFFICE_HOURS_PROPERTY = "automation.officeHours";
+    private static final String DEFAULT_OFFICE_HOURS = "MON-FRI 08:00-20:00";
+
     private ISchedulerService schedulerService;
+    private IEc2ClientService clientService;
+    private OfficeHours officeHours;
 
     @Override
     public void startTill(String instanceId, Regions region, ISchedulerService.Schedule scheduleToStop) {
-        LOG.debug(String.format("Schedule Start Instance [%s] till [%s]", instanceId, scheduleToStop.when()));
+        LOG.debug("Schedule Start Instance [{}] till [{}]", instanceId, scheduleToStop.when());
         cancelPlans(instanceId);
-        schedulerService.plan(new Ec2InstanceStartAutomationTask(instanceId, region), () -> LocalDateTime.now());
-        schedulerService.plan(new Ec2InstanceStopAutomationTask(instanceId, region), scheduleToStop);
+        schedulerService.plan(new Ec2InstanceStartAutomationTask(clientService, instanceId, region), () -> LocalDateTime.now());
+        schedulerService.plan(new Ec2InstanceStopAutomationTask(clientService, instanceId, region), scheduleToStop);
     }
 
     @Override
     public void runBetween(String instanceId, Regions region, ISchedulerService.Schedule scheduleToSart, ISchedulerService.Schedule scheduleToStop) {
-        LOG.debug(String.format("Schedule Run Instance [%s] between [%s]", instanceId, scheduleToSart.when(), scheduleToStop.when()));
+        LOG.debug("Schedule Run Instance [{}] between [{}] and [{}]", instanceId, scheduleToSart.when(), scheduleToStop.when());
         cancelPlans(instanceId);
-        schedulerService.plan(new Ec2InstanceStartAutomationTask(instanceId, region), scheduleToSart);
-        schedulerService.plan(new Ec2InstanceStopAutomationTask(instanceId, region), scheduleToStop);
+        schedulerService.plan(new Ec2InstanceStartAutomationTask(clientService, instanceId, region), scheduleToSart);
+        schedulerService.plan(new Ec2InstanceStopAutomationTask(clientService, instanceId, region), scheduleToStop);
     }
 
     @Override
     public void stopOn(String instanceId, Regions region, ISchedulerService.Schedule scheduleToStop) {
-        LOG.debug(String.format("Schedule Stop Instance [%s] on [%s]", instanceId, scheduleToStop.when()));
+        LOG.debug("Schedule Stop Instance [{}] on [{}]", instanceId, scheduleToStop.when());
         cancelPlans(instanceId);
-        schedulerService.plan(new Ec2InstanceStopAutomationTask(instanceId, region), scheduleToStop);
+        schedulerService.plan(new Ec2InstanceStopAutomationTask(clientService, instanceId, region), scheduleToStop);
+    }
+
+    @Override
+    public void runDuring(String instanceId, Regions region, OfficeHours officeHours) {
+        LOG.debug("Schedule Run Instance [{}] during [{}]", instanceId, officeHours);
+        final LocalDateTime now = LocalDateTime.now();
+        final RecurringSchedule start = officeHours.contains(now) ? new RecurringSchedule(officeHours.startCron(), now) : RecurringSchedule.first(officeHours.startCron(), now);
+        runBetween(instanceId, region, start, RecurringSchedule.first(officeHours.endCron(), now));
+    }
+
+    @Override
+    public OfficeHours getOfficeHours() {
+        return officeHours;
     }
 
     @Override
     public void cancelPlans(String instanceId) {
-        LOG.debug(String.format("Cancelling all schedules Instance [%s]", instanceId));
-        find(instanceId).stream().forEach(runnable -> {
+        LOG.debug("Cancelling all schedules Instance [{}]", instanceId);
+        schedulerService.planned(instanceId).forEach(runnable -> {
             schedulerService.cancel(runnable);
-            LOG.trace(String.format("++Cancelled InstanceId=[%s] Task=[%s]", instanceId, runnable));
+            LOG.trace("++Cancelled InstanceId=[{}] Task=[{}]", instanceId, runnable);
         });
     }
 
     @Override
     public boolean hasPlan(String instanceId) {
-        if (getStartSchedule(instanceId) != null) {
-            return true;
-        }
-
-        if (getStopSchedule(instanceId) != null) {
-            return true;
-        }
-
-        return false;
+        return !schedulerService.planned(instanceId).isEmpty();
     }
 
     @Override
     public ISchedulerService.Schedule getStartSchedule(String instanceId) {
-        Optional<Runnable> startTask = schedulerService.planned().stream().filter(runnable -> {
-            if (runnable instanceof Ec2InstanceStartAutomationTask) {
-                Ec2InstanceStartAutomationTask task = (Ec2InstanceStartAutomationTask) runnable;
-                if (instanceId.equals(task.getInstanceId())) {
-                    return true;
-                }
-            }
-            return false;
-        }).findFirst();
-
-        if (!startTask.isPresent()) {
-            return null;
-        }
-
-        return schedulerService.find(startTask.get());
+        return scheduleOf(instanceId, Ec2InstanceStartAutomationTask.class);
     }
 
     @Override
     public ISchedulerService.Schedule getStopSchedule(String instanceId) {
-        Optional<Runnable> stopTask = schedulerService.planned().stream().filter(runnable -> {
-            if (runnable instanceof Ec2InstanceStopAutomationTask) {
-                Ec2InstanceStopAutomationTask task = (Ec2InstanceStopAutomationTask) runnable;
-                if (instanceId.equals(task.getInstanceId())) {
-                    return true;
-                }
-            }
-            return false;
-        }).findFirst();
+        return scheduleOf(instanceId, Ec2InstanceStopAutomationTask.class);
+    }
 
-        if (!stopTask.isPresent()) {
-            return null;
+    private ISchedulerService.Schedule scheduleOf(String instanceId, Class<? extends AbstractEc2InstanceAutomation> taskType) {
+        for (Runnable runnable : schedulerService.planned(instanceId)) {
+            if (taskType.isInstance(runnable)) {
+                return schedulerService.find(runnable);
+            }
         }
+        return null;
+    }
 
-        return schedulerService.find(stopTask.get());
+    @Override
+    public Map<String, ISchedulerService.Schedule> getStartSchedules() {
+        return schedulesOf(Ec2InstanceStartAutomationTask.class);
     }
 
-    private List<Runnable> find(String instanceId) {
-        return schedulerService.planned().stream().filter(runnable -> {
-            if (runnable instanceof AbstractEc2InstanceAutomation) {
-                AbstractEc2InstanceAutomation task = (AbstractEc2InstanceAutomation) runnable;
-                if (instanceId.equals(task.getInstanceId())) {
-                    return true;
-                }
-            }
-            return false;
-        }).collect(Collectors.toList());
+    @Override
+    public Map<String, ISchedulerService.Schedule> getStopSchedules() {
+        return schedulesOf(Ec2InstanceStopAutomationTask.class);
+    }
+
+    private <T extends AbstractEc2InstanceAutomation & Runnable> Map<String, ISchedulerService.Schedule> schedulesOf(Class<T> taskType) {
+        final Map<T, ISchedulerService.Schedule> planned = schedulerService.planned(taskType);
+        final Map<String, ISchedulerService.Schedule> schedules = new HashMap<>(planned.size() * 2);
+        planned.forEach((task, schedule) -> schedules.putIfAbsent(task.getInstanceId(), schedule));
+        return schedules;
     }
 
     @Override
     public void init(IServiceManager serviceManager) {
         schedulerService = serviceManager.getService(ISchedulerService.class);
+        clientService = serviceManager.getService(IEc2ClientService.class);
+
+        try {
+            officeHours = OfficeHours.parse(System.getProperty(OFFICE_HOURS_PROPERTY, DEFAULT_OFFICE_HOURS), ZoneId.systemDefault());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Invalid {} [{}], using {}: {}", OFFICE_HOURS_PROPERTY, System.getProperty(OFFICE_HOURS_PROPERTY), DEFAULT_OFFICE_HOURS, e.getMessage());
+            officeHours = OfficeHours.parse(DEFAULT_OFFICE_HOURS, ZoneId.systemDefault());
+        }
+
+        schedulerService.registerTaskType(Ec2InstanceStartAutomationTask.class, (instanceId, region) -> new Ec2InstanceStartAutomationTask(clientService, instanceId, region));
+        schedulerService.registerTaskType(Ec2InstanceStopAutomationTask.class, (instanceId, region) -> new Ec2InstanceStopAutomationTask(clientService, instanceId, region));
     }
 
     @Override
@@ -3,6 +3,8 @@ package org.teknux.service.automation;
 import com.amazonaws.regions.Regions;
 import org.teknux.service.IService;
 
+import java.util.Map;
+
 public interface IEc2AutomationService extends IService {
 
     void startTill(String instanceId, Regions region, ISchedulerService.Schedule scheduleToStop);
@@ -11,6 +13,17 @@ public interface IEc2AutomationService extends IService {
 
     void stopOn(String instanceId, Regions region, ISchedulerService.Schedule scheduleToStop);
 
+    /**
+     * Starts the instance when the office hours begin and stops it when they end, every week, starting it right away
+     * when within them
+     */
+    void runDuring(String instanceId, Regions region, OfficeHours officeHours);
+
+    /**
+     * @return configured office hours, offered as a recurring schedule
+     */
+    OfficeHours getOfficeHours();
+
     void cancelPlans(String instanceId);
 
     boolean hasPlan(String instanceId);
@@ -18,4 +31,14 @@ public interface IEc2AutomationService extends IService {
     ISchedulerService.Schedule getStartSchedule(String instanceId);
 
     ISchedulerService.Schedule getStopSchedule(String instanceId);
+
+    /**
+     * @return planned start of every instance having one, by instance id
+     */
+    Map<String, ISchedulerService.Schedule> getStartSchedules();
+
+    /**
+     * @return planned stop of every instance having one, by instance id
+     */
+    Map<String, ISchedulerService.Schedule> getStopSchedules();
 }
@@ -1,10 +1,13 @@
 package org.teknux.service.automation;
 
+import com.amazonaws.regions.Regions;
 import org.teknux.service.IService;
 
 import java.time.LocalDateTime;
 import java.util.Collection;
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
 
 public interface ISchedulerService extends IService {
 
@@ -12,11 +15,68 @@ public interface ISchedulerService extends IService {
 
     Collection<Runnable> planned();
 
+    /**
+     * @return tasks planned for the given instance
+     */
+    Collection<Runnable> planned(String instanceId);
+
+    /**
+     * @return tasks planned in the given region
+     */
+    Collection<Runnable> planned(Regions region);
+
+    /**
+     * @return every planned task of the given type with its schedule
+     */
+    <T extends Runnable> Map<T, Schedule> planned(Class<T> taskType);
+
     Schedule find(Runnable task);
 
     void cancel(Runnable task);
 
+    /**
+     * Registers how to rebuild the tasks of the given type when plans are recovered on start.
+     * Only the plans of registered task types are persisted and survive a restart.
+     */
+    <T extends Runnable & Ec2Task> void registerTaskType(Class<T> taskType, BiFunction<String, Regions, T> factory);
+
+    SchedulerMetrics metrics();
+
     interface Schedule {
         LocalDateTime when();
+
+        /**
+         * Recurring schedules only keep their next occurrence in the scheduler, the following one being planned
+         * once it fired
+         *
+         * @return schedule of the first occurrence after the given time, null if the schedule does not recur
+         */
+        default Schedule next(LocalDateTime after) {
+            return null;
+        }
+    }
+
+    /**
+     * Task acting on an EC2 instance, indexed by instance id and region by the scheduler
+     */
+    interface Ec2Task {
+        String getInstanceId();
+
+        Regions getRegion();
+    }
+
+    /**
+     * Task which may be run together with the other tasks coming due in the same window and sharing its batch key
+     */
+    interface BatchTask extends Runnable {
+        /**
+         * @return key grouping the tasks able to run as a single batch, compared with equals
+         */
+        Object getBatchKey();
+
+        /**
+         * Runs all the tasks of the batch, this task included, in as few calls as possible
+         */
+        void runBatch(List<? extends Runnable> batch);
     }
 }
@@ -0,0 +1,137 @@
+package org.teknux.service.automation;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Weekly office hours in a time zone, such as "MON-FRI 08:00-20:00 Europe/Paris", turned into the cron expressions
+ * of their starts and ends
+ */
+public final class OfficeHours {
+
+    private final Set<DayOfWeek> days;
+    private final LocalTime start;
+    private final LocalTime end;
+    private final ZoneId zone;
+
+    public OfficeHours(Set<DayOfWeek> days, LocalTime start, LocalTime end, ZoneId zone) {
+        if (days.isEmpty()) {
+            throw new IllegalArgumentException("Office hours need at least one day");
+        }
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException(String.format("Office hours start [%s] must be before their end [%s]", start, end));
+        }
+        this.days = Collections.unmodifiableSet(EnumSet.copyOf(days));
+        this.start = start.withSecond(0).withNano(0);
+        this.end = end.withSecond(0).withNano(0);
+        this.zone = Objects.requireNonNull(zone);
+    }
+
+    /**
+     * @param text days as a range or a list of three letter names, then hours, then an optional time zone, e.g.
+     *             "MON-FRI 08:00-20:00" or "MON,WED,FRI 09:00-17:30 America/New_York"
+     * @param zone time zone used when the text has none
+     * @throws IllegalArgumentException if the text cannot be read as office hours
+     */
+    public static OfficeHours parse(String text, ZoneId zone) {
+        final String[] parts = text.trim().split("\\s+");
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException(String.format("Office hours [%s] must be like MON-FRI 08:00-20:00 [zone]", text));
+        }
+
+        final String[] hours = parts[1].split("-");
+        if (hours.length != 2) {
+            throw new IllegalArgumentException(String.format("Office hours [%s] must be like 08:00-20:00", parts[1]));
+        }
+        try {
+            return new OfficeHours(parseDays(parts[0]), LocalTime.parse(hours[0]), LocalTime.parse(hours[1]), parts.length == 3 ? ZoneId.of(parts[2]) : zone);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(String.format("Office hours [%s] must be like 08:00-20:00", parts[1]), e);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException(String.format("Unknown time zone [%s]", parts[2]), e);
+        }
+    }
+
+    private static Set<DayOfWeek> parseDays(String text) {
+        final Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (String part : text.split(",")) {
+            final int dash = part.indexOf('-');
+            if (dash > 0) {
+                final DayOfWeek from = parseDay(part.substring(0, dash));
+                final DayOfWeek to = parseDay(part.substring(dash + 1));
+                //ranges may wrap around the week, e.g. SUN-THU
+                for (DayOfWeek day = from; ; day = day.plus(1)) {
+                    days.add(day);
+                    if (day == to) {
+                        break;
+                    }
+                }
+            } else {
+                days.add(parseDay(part));
+            }
+        }
+        return days;
+    }
+
+    private static DayOfWeek parseDay(String name) {
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (Cron.dayName(day).equalsIgnoreCase(name)) {
+                return day;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown day [%s], expecting MON, TUE...", name));
+    }
+
+    public Cron startCron() {
+        return cronAt(start);
+    }
+
+    public Cron endCron() {
+        return cronAt(end);
+    }
+
+    private Cron cronAt(LocalTime time) {
+        return Cron.parse(String.format("%d %d * * %s", time.getMinute(), time.getHour(), dayNames()), zone);
+    }
+
+    private String dayNames() {
+        return days.stream().map(Cron::dayName).collect(Collectors.joining(","));
+    }
+
+    /**
+     * @param dateTime time of the system time zone
+     */
+    public boolean contains(LocalDateTime dateTime) {
+        final ZonedDateTime local = dateTime.atZone(ZoneId.systemDefault()).withZoneSameInstant(zone);
+        final LocalTime time = local.toLocalTime();
+        return days.contains(local.getDayOfWeek()) && !time.isBefore(start) && time.isBefore(end);
+    }
+
+    public Set<DayOfWeek> getDays() {
+        return days;
+    }
+
+    public LocalTime getStart() {
+        return start;
+    }
+
+    public LocalTime getEnd() {
+        return end;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s-%s %s", dayNames(), start, end, zone);
+    }
+}
@@ -0,0 +1,51 @@
+package org.teknux.service.automation;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * One occurrence of a cron schedule, the scheduler planning the next occurrence once this one fired
+ */
+public class RecurringSchedule implements ISchedulerService.Schedule {
+
+    private final Cron cron;
+    private final LocalDateTime dateTime;
+
+    /**
+     * @param dateTime this occurrence, which may also be a first run outside of the cron occurrences
+     */
+    public RecurringSchedule(Cron cron, LocalDateTime dateTime) {
+        this.cron = Objects.requireNonNull(cron);
+        this.dateTime = Objects.requireNonNull(dateTime);
+    }
+
+    /**
+     * @return schedule of the first occurrence after the given time, null if the cron expression never matches
+     */
+    public static RecurringSchedule first(Cron cron, LocalDateTime after) {
+        final LocalDateTime next = cron.nextAfter(after);
+        return next == null ? null : new RecurringSchedule(cron, next);
+    }
+
+    @Override
+    public LocalDateTime when() {
+        return dateTime;
+    }
+
+    /**
+     * Occurrences missed meanwhile, e.g. while the scheduler was stopped, are skipped
+     */
+    @Override
+    public RecurringSchedule next(LocalDateTime after) {
+        return first(cron, after.isAfter(dateTime) ? after : dateTime);
+    }
+
+    public Cron getCron() {
+        return cron;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s)", dateTime, cron);
+    }
+}
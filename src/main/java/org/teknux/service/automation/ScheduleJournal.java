@@ -0,0 +1,323 @@
+package org.teknux.service.automation;
+
+import com.amazonaws.regions.Regions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of plan, cancel and fired records, compacted from time to time into a snapshot of the
+ * live plans. Both files start with a magic and a version and hold records made of the payload length, the payload
+ * and its CRC32, so that a record torn by a crash is detected and dropped on replay. A record which cannot be decoded,
+ * e.g. of a region unknown to this SDK, is skipped. Replay reads memory mapped files.
+ * <p>
+ * Version 2 adds the cron expression and time zone of recurring plans. Version 1 files are still replayed, a version
+ * 1 journal being compacted into a version 2 snapshot when opened.
+ */
+class ScheduleJournal implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScheduleJournal.class);
+
+    static final String JOURNAL_FILE = "schedules.journal";
+    static final String SNAPSHOT_FILE = "schedules.snapshot";
+
+    private static final int MAGIC = 0x45433253;
+    private static final byte VERSION = 2;
+    private static final byte VERSION_ONE_SHOT = 1;
+    private static final int HEADER_SIZE = 5;
+    private static final int MAX_RECORD_SIZE = 4096;
+
+    private static final byte PLAN = 1;
+    private static final byte CANCEL = 2;
+    private static final byte FIRED = 3;
+
+    private final Path directory;
+    private final int compactThreshold;
+
+    private FileChannel journal;
+    private int records;
+
+    ScheduleJournal(Path directory, int compactThreshold) {
+        this.directory = directory;
+        this.compactThreshold = compactThreshold;
+    }
+
+    /**
+     * Replays the snapshot then the journal and opens the journal for appending
+     *
+     * @return the live plans, in journal order
+     */
+    synchronized Collection<Record> open() throws IOException {
+        Files.createDirectories(directory);
+
+        final Map<String, Record> live = new LinkedHashMap<>();
+        final Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        final Path journalFile = directory.resolve(JOURNAL_FILE);
+        replay(snapshotFile, live);
+        final long validLength = replay(journalFile, live);
+
+        if (validLength >= HEADER_SIZE && version(journalFile) != VERSION) {
+            //records of the current version cannot be appended to an older journal
+            writeSnapshot(live.values());
+            Files.delete(journalFile);
+            LOG.info("Schedule journal [{}] upgraded to version [{}]", journalFile, VERSION);
+        }
+
+        journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (validLength < journal.size()) {
+            LOG.warn("Dropping [{}] bytes of torn records at the end of [{}]", journal.size() - validLength, journalFile);
+            journal.truncate(Math.max(0, validLength));
+        }
+        if (journal.size() == 0) {
+            writeFully(journal, header());
+        }
+        journal.position(journal.size());
+
+        return live.values();
+    }
+
+    private static byte version(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            return header.remaining() < HEADER_SIZE || header.getInt() != MAGIC ? 0 : header.get();
+        }
+    }
+
+    /**
+     * @return length of the valid part of the file, 0 if the file does not exist or has an unknown format
+     */
+    private long replay(Path file, Map<String, Record> live) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size == 0) {
+                return 0;
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            final byte version = size < HEADER_SIZE || buffer.getInt() != MAGIC ? 0 : buffer.get();
+            if (version != VERSION && version != VERSION_ONE_SHOT) {
+                final Path unreadable = file.resolveSibling(file.getFileName() + ".unreadable");
+                LOG.error("Unknown format of [{}], moved to [{}]", file, unreadable);
+                Files.move(file, unreadable, StandardCopyOption.REPLACE_EXISTING);
+                return 0;
+            }
+
+            final CRC32 crc = new CRC32();
+            int count = 0;
+            while (buffer.remaining() >= 4) {
+                final int length = buffer.getInt(buffer.position());
+                if (length <= 0 || length > MAX_RECORD_SIZE || buffer.remaining() < length + 8) {
+                    break;
+                }
+                buffer.getInt();
+                final byte[] payload = new byte[length];
+                buffer.get(payload);
+                crc.reset();
+                crc.update(payload);
+                if (buffer.getInt() != (int) crc.getValue()) {
+                    LOG.warn("Corrupted record in [{}] at [{}]", file, buffer.position() - length - 8);
+                    return buffer.position() - length - 8;
+                }
+                final Record record;
+                try {
+                    record = decode(payload, version);
+                } catch (IOException | RuntimeException e) {
+                    //unknown region or time zone on this JVM, invalid cron... the record is skipped, not the journal
+                    LOG.warn("Unreadable record in [{}] at [{}] skipped: {}", file, buffer.position() - length - 8, e.toString());
+                    continue;
+                }
+                apply(record, live);
+                count++;
+            }
+            records += count;
+            LOG.debug("Replayed [{}] record(s) from [{}]", count, file);
+            return buffer.position();
+        }
+    }
+
+    private static void apply(Record record, Map<String, Record> live) {
+        if (record.when == null) {
+            live.remove(record.key());
+        } else {
+            live.remove(record.key());
+            live.put(record.key(), record);
+        }
+    }
+
+    /**
+     * @param cron recurrence of the plan, null for a one-shot plan
+     */
+    synchronized void planned(String type, String instanceId, Regions region, LocalDateTime when, Cron cron) {
+        append(PLAN, new Record(type, instanceId, region, when, cron));
+    }
+
+    synchronized void cancelled(String type, String instanceId, Regions region) {
+        append(CANCEL, new Record(type, instanceId, region, null, null));
+    }
+
+    synchronized void fired(String type, String instanceId, Regions region) {
+        append(FIRED, new Record(type, instanceId, region, null, null));
+    }
+
+    private void append(byte op, Record record) {
+        if (journal == null) {
+            LOG.warn("Journal is closed, [{}] not persisted", record);
+            return;
+        }
+        try {
+            writeFully(journal, encodeRecord(op, record));
+            records++;
+        } catch (IOException e) {
+            LOG.error("Unable to journal [{}]", record, e);
+        }
+    }
+
+    /**
+     * @return true once the journal holds many more records than there are live plans
+     */
+    synchronized boolean needsCompaction(int livePlans) {
+        return journal != null && records > compactThreshold && records > 2 * livePlans;
+    }
+
+    /**
+     * Writes the live plans to a new snapshot, atomically replacing the previous one, then empties the journal.
+     * Replaying the journal over a snapshot written from it is harmless, so a crash in between loses nothing.
+     */
+    synchronized void compact(Collection<Record> live) {
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            writeSnapshot(live);
+
+            journal.truncate(HEADER_SIZE);
+            journal.position(HEADER_SIZE);
+            journal.force(true);
+            LOG.debug("Compacted [{}] journal record(s) into [{}] plan(s)", records, live.size());
+            records = live.size();
+        } catch (IOException e) {
+            LOG.error("Unable to compact the schedule journal", e);
+        }
+    }
+
+    private void writeSnapshot(Collection<Record> live) throws IOException {
+        final Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        final Path tmpFile = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel snapshot = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + live.size() * 64);
+            bytes.write(header());
+            for (Record record : live) {
+                bytes.write(encodeRecord(PLAN, record));
+            }
+            writeFully(snapshot, bytes.toByteArray());
+            snapshot.force(true);
+        }
+        Files.move(tmpFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.force(true);
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private static byte[] header() {
+        return ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).put(VERSION).array();
+    }
+
+    private static byte[] encodeRecord(byte op, Record record) throws IOException {
+        final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(payloadBytes)) {
+            out.writeByte(op);
+            out.writeUTF(record.type);
+            out.writeUTF(record.instanceId);
+            out.writeUTF(record.region.name());
+            if (op == PLAN) {
+                out.writeLong(record.when.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(record.when.getNano());
+                out.writeBoolean(record.cron != null);
+                if (record.cron != null) {
+                    out.writeUTF(record.cron.getExpression());
+                    out.writeUTF(record.cron.getZone().getId());
+                }
+            }
+        }
+        final byte[] payload = payloadBytes.toByteArray();
+
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(payload.length + 8).putInt(payload.length).put(payload).putInt((int) crc.getValue()).array();
+    }
+
+    private static Record decode(byte[] payload, byte version) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            final byte op = in.readByte();
+            final String type = in.readUTF();
+            final String instanceId = in.readUTF();
+            final Regions region = Regions.valueOf(in.readUTF());
+            final LocalDateTime when = op == PLAN ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC) : null;
+            final Cron cron = op == PLAN && version != VERSION_ONE_SHOT && in.readBoolean() ? Cron.parse(in.readUTF(), ZoneId.of(in.readUTF())) : null;
+            return new Record(type, instanceId, region, when, cron);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Plan of a task of the given type on an instance, or its removal when there is no due time. Recurring plans hold
+     * their next occurrence and their cron expression.
+     */
+    static final class Record {
+
+        final String type;
+        final String instanceId;
+        final Regions region;
+        final LocalDateTime when;
+        final Cron cron;
+
+        Record(String type, String instanceId, Regions region, LocalDateTime when, Cron cron) {
+            this.type = type;
+            this.instanceId = instanceId;
+            this.region = region;
+            this.when = when;
+            this.cron = cron;
+        }
+
+        String key() {
+            return type + '|' + instanceId + '|' + region.name();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[%s@%s]%s%s", type, instanceId, region, when == null ? "" : " on " + when, cron == null ? "" : " then " + cron);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.teknux.service.automation;
+
+import com.amazonaws.regions.Regions;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Planned tasks with secondary indexes by task, instance id, task type, region and due time.
+ * Lookups are constant time, insertion, removal and due-time polling are logarithmic.
+ */
+class ScheduleStore {
+
+    private static final Comparator<Entry> DUE_ORDER = Comparator.comparing((Entry entry) -> entry.when).thenComparingLong(entry -> entry.sequence);
+
+    private final Map<Runnable, Entry> byTask = new HashMap<>();
+    private final Map<String, Set<Entry>> byInstance = new HashMap<>();
+    private final Map<Class<?>, Set<Entry>> byType = new HashMap<>();
+    private final Map<Regions, Set<Entry>> byRegion = new EnumMap<>(Regions.class);
+    private final NavigableSet<Entry> byTime = new TreeSet<>(DUE_ORDER);
+
+    private long sequence;
+
+    /**
+     * Plans the task, replacing any previous plan of the same task
+     *
+     * @return the replaced entry, null if none
+     */
+    synchronized Entry put(Runnable task, ISchedulerService.Schedule schedule) {
+        final Entry previous = remove(task);
+
+        final Entry entry = new Entry(task, schedule, sequence++);
+        byTask.put(task, entry);
+        byType.computeIfAbsent(task.getClass(), key -> new LinkedHashSet<>()).add(entry);
+        byTime.add(entry);
+        if (task instanceof ISchedulerService.Ec2Task) {
+            final ISchedulerService.Ec2Task ec2Task = (ISchedulerService.Ec2Task) task;
+            if (ec2Task.getInstanceId() != null) {
+                byInstance.computeIfAbsent(ec2Task.getInstanceId(), key -> new LinkedHashSet<>()).add(entry);
+            }
+            if (ec2Task.getRegion() != null) {
+                byRegion.computeIfAbsent(ec2Task.getRegion(), key -> new LinkedHashSet<>()).add(entry);
+            }
+        }
+        return previous;
+    }
+
+    synchronized Entry remove(Runnable task) {
+        final Entry entry = byTask.remove(task);
+        if (entry == null) {
+            return null;
+        }
+
+        removeFrom(byType, task.getClass(), entry);
+        byTime.remove(entry);
+        if (task instanceof ISchedulerService.Ec2Task) {
+            final ISchedulerService.Ec2Task ec2Task = (ISchedulerService.Ec2Task) task;
+            removeFrom(byInstance, ec2Task.getInstanceId(), entry);
+            removeFrom(byRegion, ec2Task.getRegion(), entry);
+        }
+        return entry;
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Entry>> index, K key, Entry entry) {
+        if (key == null) {
+            return;
+        }
+        final Set<Entry> entries = index.get(key);
+        if (entries != null) {
+            entries.remove(entry);
+            if (entries.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    synchronized Entry get(Runnable task) {
+        return byTask.get(task);
+    }
+
+    synchronized List<Runnable> tasks() {
+        return new ArrayList<>(byTask.keySet());
+    }
+
+    synchronized List<Entry> entries() {
+        return new ArrayList<>(byTask.values());
+    }
+
+    synchronized List<Runnable> tasksOf(String instanceId) {
+        return tasks(byInstance.get(instanceId));
+    }
+
+    synchronized List<Runnable> tasksIn(Regions region) {
+        return tasks(byRegion.get(region));
+    }
+
+    synchronized <T> Map<T, ISchedulerService.Schedule> entriesOf(Class<T> taskType) {
+        final Set<Entry> entries = byType.get(taskType);
+        if (entries == null) {
+            return Collections.emptyMap();
+        }
+        final Map<T, ISchedulerService.Schedule> result = new LinkedHashMap<>(entries.size() * 2);
+        entries.forEach(entry -> result.put(taskType.cast(entry.task), entry.schedule));
+        return result;
+    }
+
+    private static List<Runnable> tasks(Set<Entry> entries) {
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        final List<Runnable> tasks = new ArrayList<>(entries.size());
+        entries.forEach(entry -> tasks.add(entry.task));
+        return tasks;
+    }
+
+    /**
+     * Removes and returns the entries due at or before the given time, earliest first
+     */
+    synchronized List<Entry> pollDue(LocalDateTime now) {
+        final List<Entry> due = new ArrayList<>();
+        while (!byTime.isEmpty() && !byTime.first().when.isAfter(now)) {
+            final Entry entry = byTime.first();
+            remove(entry.task);
+            due.add(entry);
+        }
+        return due;
+    }
+
+    synchronized Entry first() {
+        return byTime.isEmpty() ? null : byTime.first();
+    }
+
+    synchronized int size() {
+        return byTask.size();
+    }
+
+    synchronized void clear() {
+        byTask.clear();
+        byInstance.clear();
+        byType.clear();
+        byRegion.clear();
+        byTime.clear();
+    }
+
+    static final class Entry {
+
+        final Runnable task;
+        final ISchedulerService.Schedule schedule;
+        final LocalDateTime when;
+        final long sequence;
+
+        Entry(Runnable task, ISchedulerService.Schedule schedule, long sequence) {
+            this.task = task;
+            this.schedule = schedule;
+            this.when = schedule.when();
+            this.sequence = sequence;
+        }
+    }
+}
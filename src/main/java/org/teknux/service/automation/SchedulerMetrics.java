@@ -0,0 +1,112 @@
+package org.teknux.service.automation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Plans waiting in the scheduler, due runs waiting for a worker and how late they start
+ */
+public class SchedulerMetrics {
+
+    private final IntSupplier planned;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong lastLagMs = new AtomicLong();
+    private final AtomicLong totalLagMs = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+
+    SchedulerMetrics(IntSupplier planned) {
+        this.planned = planned;
+    }
+
+    void dispatched() {
+        pending.incrementAndGet();
+    }
+
+    void started(long lagMs) {
+        pending.decrementAndGet();
+        running.incrementAndGet();
+        started.incrementAndGet();
+        lastLagMs.set(lagMs);
+        totalLagMs.addAndGet(Math.max(0, lagMs));
+        maxLagMs.accumulateAndGet(lagMs, Math::max);
+    }
+
+    void completed(boolean failed) {
+        running.decrementAndGet();
+        runs.incrementAndGet();
+        if (failed) {
+            this.failed.incrementAndGet();
+        }
+    }
+
+    void dropped(int count) {
+        pending.addAndGet(-count);
+    }
+
+    /**
+     * @return plans not due yet
+     */
+    public int getPlanned() {
+        return planned.getAsInt();
+    }
+
+    /**
+     * @return due runs, single tasks or batches, waiting for a worker
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    public int getRunning() {
+        return running.get();
+    }
+
+    public long getRuns() {
+        return runs.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return time between the due time and the actual start of the last run, batch window included
+     */
+    public long getLastLagMs() {
+        return lastLagMs.get();
+    }
+
+    public double getMeanLagMs() {
+        final long count = started.get();
+        return count == 0 ? 0 : (double) totalLagMs.get() / count;
+    }
+
+    public long getMaxLagMs() {
+        return maxLagMs.get();
+    }
+
+    /**
+     * @return summed lag of the started runs, for rates over time
+     */
+    public long getTotalLagMs() {
+        return totalLagMs.get();
+    }
+
+    /**
+     * @return started runs, completed or not
+     */
+    public long getStarted() {
+        return started.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SchedulerMetrics{planned=%d, pending=%d, running=%d, runs=%d, failed=%d, lag=%d/%.0f/%dms}", getPlanned(), getPending(), getRunning(),
+                getRuns(), getFailed(), getLastLagMs(), getMeanLagMs(), getMaxLagMs());
+    }
+}
@@ -1,27 +1,55 @@
 package org.teknux.service.automation;
 
+import com.amazonaws.regions.Regions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.teknux.service.BlockingExecutors;
 import org.teknux.service.IServiceManager;
 import org.teknux.service.ServiceException;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
+/**
+ * Scheduler arming a single alarm at the due time of the earliest plan: nothing runs while no plan is due,
+ * and due tasks are handed over to a worker pool sized for blocking EC2 calls. The alarm goes off a short batch window
+ * after the due time so that {@link BatchTask}s coming due together are run as one batch per batch key.
+ * <p>
+ * Plans of registered task types are written to a {@link ScheduleJournal} and recovered on start. Of the plans
+ * missed while stopped, only the latest one of each instance is fired, the earlier ones being superseded by it.
+ * <p>
+ * Recurring schedules only have their next occurrence planned: once it is due, the following occurrence is planned
+ * in its place, so that memory and journal stay proportional to the number of plans however long they recur.
+ */
 public class SchedulerServiceImpl implements ISchedulerService {
 
     private static final Logger LOG = LoggerFactory.getLogger(SchedulerServiceImpl.class);
 
-    private ScheduledExecutorService scheduledExecutorService;
-    private volatile Map<Schedule, Runnable> tasks;
+    public static final String WORKER_THREADS_PROPERTY = "scheduler.workerThreads";
+    public static final String BATCH_WINDOW_PROPERTY = "scheduler.batchWindowMs";
+    public static final String JOURNAL_DIR_PROPERTY = "scheduler.journalDir";
+    public static final String JOURNAL_COMPACT_THRESHOLD_PROPERTY = "scheduler.journalCompactThreshold";
+
+    private static final Duration MAX_ALARM_DELAY = Duration.ofMinutes(15);
+
+    private final ScheduleStore tasks = new ScheduleStore();
+    private final Map<String, BiFunction<String, Regions, ? extends Runnable>> taskTypes = new ConcurrentHashMap<>();
+    private final Object alarmLock = new Object();
+    private final Object planLock = new Object();
+    private final SchedulerMetrics metrics = new SchedulerMetrics(tasks::size);
+
+    private ScheduledExecutorService timer;
+    private ExecutorService workers;
+    private long batchWindowMs;
+    private ScheduledFuture<?> alarm;
+    private LocalDateTime alarmTime;
+    private ScheduleJournal journal;
 
     @Override
     public void plan(Runnable task, Schedule schedule) {
@@ -29,12 +57,35 @@ public class SchedulerServiceImpl implements ISchedulerService {
             return;
         }
 
-        tasks.put(schedule, task);
+        synchronized (planLock) {
+            tasks.put(task, schedule);
+            if (isJournaled(task)) {
+                final Ec2Task ec2Task = (Ec2Task) task;
+                journal.planned(task.getClass().getName(), ec2Task.getInstanceId(), ec2Task.getRegion(), schedule.when(), cronOf(schedule));
+                compactIfNeeded();
+            }
+        }
+        arm();
     }
 
     @Override
     public Collection<Runnable> planned() {
-        return tasks.values();
+        return tasks.tasks();
+    }
+
+    @Override
+    public Collection<Runnable> planned(String instanceId) {
+        return tasks.tasksOf(instanceId);
+    }
+
+    @Override
+    public Collection<Runnable> planned(Regions region) {
+        return tasks.tasksIn(region);
+    }
+
+    @Override
+    public <T extends Runnable> Map<T, Schedule> planned(Class<T> taskType) {
+        return tasks.entriesOf(taskType);
     }
 
     @Override
@@ -43,11 +94,8 @@ public class SchedulerServiceImpl implements ISchedulerService {
             return null;
         }
 
-        Optional<Map.Entry<Schedule, Runnable>> entry = tasks.entrySet().stream().filter(scheduleRunnableEntry -> scheduleRunnableEntry.getValue().equals(task)).findFirst();
-        if (entry.isPresent()) {
-            return entry.get().getKey();
-        }
-        return null;
+        final ScheduleStore.Entry entry = tasks.get(task);
+        return entry == null ? null : entry.schedule;
     }
 
     @Override
@@ -56,47 +104,294 @@ public class SchedulerServiceImpl implements ISchedulerService {
             return;
         }
 
-        if (tasks.containsValue(task)) {
-            final Schedule key = find(task);
-            tasks.remove(key);
+        synchronized (planLock) {
+            if (tasks.remove(task) != null && isJournaled(task)) {
+                final Ec2Task ec2Task = (Ec2Task) task;
+                journal.cancelled(task.getClass().getName(), ec2Task.getInstanceId(), ec2Task.getRegion());
+                compactIfNeeded();
+            }
+        }
+    }
+
+    @Override
+    public <T extends Runnable & Ec2Task> void registerTaskType(Class<T> taskType, BiFunction<String, Regions, T> factory) {
+        taskTypes.put(taskType.getName(), factory);
+    }
+
+    @Override
+    public SchedulerMetrics metrics() {
+        return metrics;
+    }
+
+    private boolean isJournaled(Runnable task) {
+        if (journal == null || !(task instanceof Ec2Task) || !taskTypes.containsKey(task.getClass().getName())) {
+            return false;
+        }
+        final Ec2Task ec2Task = (Ec2Task) task;
+        return ec2Task.getInstanceId() != null && ec2Task.getRegion() != null;
+    }
+
+    private void compactIfNeeded() {
+        if (journal.needsCompaction(tasks.size())) {
+            journal.compact(journaledPlans());
         }
     }
 
+    private List<ScheduleJournal.Record> journaledPlans() {
+        return tasks.entries().stream()
+                .filter(entry -> isJournaled(entry.task))
+                .sorted(Comparator.comparingLong(entry -> entry.sequence))
+                .map(entry -> {
+                    final Ec2Task ec2Task = (Ec2Task) entry.task;
+                    return new ScheduleJournal.Record(entry.task.getClass().getName(), ec2Task.getInstanceId(), ec2Task.getRegion(), entry.when, cronOf(entry.schedule));
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return recurrence persisted with the plan, only {@link RecurringSchedule}s being journaled as recurring
+     */
+    private static Cron cronOf(ISchedulerService.Schedule schedule) {
+        return schedule instanceof RecurringSchedule ? ((RecurringSchedule) schedule).getCron() : null;
+    }
+
     @Override
     public void init(IServiceManager serviceManager) {
-        tasks = new ConcurrentHashMap<>();
+
     }
 
     @Override
     public void start() throws ServiceException {
         LOG.trace("Starting scheduler...");
-        scheduledExecutorService = Executors.newScheduledThreadPool(128);
-        scheduledExecutorService.scheduleAtFixedRate(() -> {
-            LOG.trace("Lookup for registered tasks to trigger");
-            final List<Schedule> schedules = tasks.keySet().stream().filter(schedule -> schedule.when().isBefore(LocalDateTime.now())).collect(Collectors.toList());
-            LOG.trace(String.format("-- Found [%s]", schedules.size()));
-            schedules.parallelStream().forEach(schedule -> {
-                scheduledExecutorService.execute(() -> {
-                    final Runnable task = tasks.remove(schedule);
-                    LOG.trace(String.format("++ Running [%s] planned for [%s]", task, schedule.when()));
-                    task.run();
-                    LOG.trace(String.format("++ Completed [%s]", task));
-                });
-            });
-        }, 0, 30, TimeUnit.SECONDS);
+        workers = BlockingExecutors.newExecutor("scheduler", Integer.getInteger(WORKER_THREADS_PROPERTY, 16));
+        batchWindowMs = Math.max(0, Long.getLong(BATCH_WINDOW_PROPERTY, 500L));
+        timer = Executors.newSingleThreadScheduledExecutor();
+        recover();
+        arm();
         LOG.trace("Scheduler started");
     }
 
+    /**
+     * Opens the journal and plans again the recovered tasks of the registered types
+     */
+    private void recover() {
+        final String journalDir = System.getProperty(JOURNAL_DIR_PROPERTY, Paths.get(System.getProperty("user.home"), ".ec2-selfservice", "scheduler").toString());
+        if (journalDir.isEmpty()) {
+            LOG.warn("Schedule journal disabled, plans will not survive a restart");
+            return;
+        }
+
+        final long startTime = System.nanoTime();
+        final ScheduleJournal openedJournal = new ScheduleJournal(Paths.get(journalDir), Integer.getInteger(JOURNAL_COMPACT_THRESHOLD_PROPERTY, 10000));
+        final Collection<ScheduleJournal.Record> records;
+        try {
+            records = openedJournal.open();
+        } catch (IOException e) {
+            LOG.error("Unable to open the schedule journal in [{}], plans will not survive a restart", journalDir, e);
+            return;
+        }
+
+        final LocalDateTime now = LocalDateTime.now();
+        final Map<String, ScheduleJournal.Record> latestMissed = new HashMap<>();
+        records.stream()
+                .filter(record -> taskTypes.containsKey(record.type) && !record.when.isAfter(now))
+                .forEach(record -> latestMissed.merge(record.instanceId + '@' + record.region, record, (a, b) -> b.when.isAfter(a.when) ? b : a));
+
+        synchronized (planLock) {
+            journal = openedJournal;
+
+            int recovered = 0;
+            for (ScheduleJournal.Record record : records) {
+                if (!taskTypes.containsKey(record.type)) {
+                    LOG.warn("Unknown task type of recovered plan [{}], dropped", record);
+                } else if (record.when.isAfter(now)) {
+                    tasks.put(taskTypes.get(record.type).apply(record.instanceId, record.region), scheduleOf(record));
+                    recovered++;
+                } else if (latestMissed.get(record.instanceId + '@' + record.region) == record) {
+                    LOG.info("Plan [{}] missed while stopped, firing it now", record);
+                    tasks.put(taskTypes.get(record.type).apply(record.instanceId, record.region), scheduleOf(record));
+                } else {
+                    final ISchedulerService.Schedule next = scheduleOf(record).next(now);
+                    if (next == null) {
+                        LOG.info("Plan [{}] missed while stopped, superseded by a later one", record);
+                    } else {
+                        LOG.info("Plan [{}] missed while stopped, superseded by a later one, next occurrence planned", record);
+                        tasks.put(taskTypes.get(record.type).apply(record.instanceId, record.region), next);
+                        recovered++;
+                    }
+                }
+            }
+            journal.compact(journaledPlans());
+
+            LOG.info("Recovered [{}] plan(s) and [{}] missed one(s) from [{}] in [{}] ms", recovered, latestMissed.size(), journalDir,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
+    }
+
+    private static ISchedulerService.Schedule scheduleOf(ScheduleJournal.Record record) {
+        return record.cron == null ? new org.teknux.service.automation.Schedule(record.when) : new RecurringSchedule(record.cron, record.when);
+    }
+
+    /**
+     * Arms the alarm at the due time of the earliest plan, unless it is already armed earlier
+     */
+    private void arm() {
+        synchronized (alarmLock) {
+            if (timer == null || timer.isShutdown()) {
+                return;
+            }
+
+            final ScheduleStore.Entry next = tasks.first();
+            if (next == null) {
+                return;
+            }
+            if (alarm != null && !alarmTime.isAfter(next.when)) {
+                return;
+            }
+            if (alarm != null) {
+                alarm.cancel(false);
+            }
+
+            //capped so that wall clock changes are caught up with
+            final long delay = Math.min(MAX_ALARM_DELAY.toMillis(), Math.max(0, Duration.between(LocalDateTime.now(), next.when).toMillis()) + batchWindowMs);
+            alarmTime = next.when;
+            alarm = timer.schedule(this::dispatchDue, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void dispatchDue() {
+        synchronized (alarmLock) {
+            alarm = null;
+            alarmTime = null;
+        }
+
+        try {
+            final LocalDateTime now = LocalDateTime.now();
+            final List<ScheduleStore.Entry> dueEntries = tasks.pollDue(now);
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("-- Found [{}]", dueEntries.size());
+            }
+            dueEntries.forEach(entry -> plan(entry.task, entry.schedule.next(now)));
+
+            final Map<Object, List<ScheduleStore.Entry>> batches = new LinkedHashMap<>();
+            for (ScheduleStore.Entry entry : dueEntries) {
+                if (entry.task instanceof BatchTask) {
+                    batches.computeIfAbsent(((BatchTask) entry.task).getBatchKey(), key -> new ArrayList<>()).add(entry);
+                } else {
+                    dispatch(new DueRun(Collections.singletonList(entry), entry.task::run));
+                }
+            }
+            batches.values().forEach(batch -> {
+                final BatchTask first = (BatchTask) batch.get(0).task;
+                final List<Runnable> batchTasks = batch.stream().map(entry -> entry.task).collect(Collectors.toList());
+                dispatch(new DueRun(batch, () -> first.runBatch(batchTasks)));
+            });
+        } catch (RejectedExecutionException e) {
+            LOG.trace("Scheduler is stopping, due task(s) not dispatched");
+        } finally {
+            arm();
+        }
+    }
+
+    private void dispatch(DueRun dueRun) {
+        metrics.dispatched();
+        try {
+            workers.execute(dueRun);
+        } catch (RejectedExecutionException e) {
+            metrics.dropped(1);
+            throw e;
+        }
+    }
+
+    /**
+     * Journals the run plans as fired, unless they have been planned again meanwhile
+     */
+    private void fired(List<ScheduleStore.Entry> entries) {
+        synchronized (planLock) {
+            if (journal == null) {
+                return;
+            }
+            entries.stream().filter(entry -> isJournaled(entry.task) && tasks.get(entry.task) == null).forEach(entry -> {
+                final Ec2Task ec2Task = (Ec2Task) entry.task;
+                journal.fired(entry.task.getClass().getName(), ec2Task.getInstanceId(), ec2Task.getRegion());
+            });
+            compactIfNeeded();
+        }
+    }
+
     @Override
     public void stop() throws ServiceException {
         LOG.trace("Stopping scheduler...");
-        scheduledExecutorService.shutdownNow();
+        synchronized (alarmLock) {
+            timer.shutdownNow();
+            alarm = null;
+            alarmTime = null;
+        }
+        final List<Runnable> notRun = workers.shutdownNow();
+        metrics.dropped((int) notRun.stream().filter(runnable -> runnable instanceof DueRun).count());
         try {
-            scheduledExecutorService.awaitTermination(30, TimeUnit.SECONDS);
+            workers.awaitTermination(30, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             LOG.error("Scheduler took too long to shutodown, it has been killed!", e);
         }
-        tasks.clear();
+
+        synchronized (planLock) {
+            //due plans which never got a worker are kept, to be fired on next start
+            notRun.stream().filter(runnable -> runnable instanceof DueRun)
+                    .flatMap(runnable -> ((DueRun) runnable).entries.stream())
+                    .forEach(entry -> tasks.put(entry.task, entry.schedule));
+            if (journal != null) {
+                journal.compact(journaledPlans());
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    LOG.error("Unable to close the schedule journal", e);
+                }
+                journal = null;
+            }
+            tasks.clear();
+        }
         LOG.trace("Scheduler stopped");
     }
+
+    /**
+     * Run of due plans, either a single task or a batch
+     */
+    private class DueRun implements Runnable {
+
+        private final List<ScheduleStore.Entry> entries;
+        private final Runnable runnable;
+
+        DueRun(List<ScheduleStore.Entry> entries, Runnable runnable) {
+            this.entries = entries;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            final ScheduleStore.Entry first = entries.get(0);
+            final long lagMs = Duration.between(first.when, LocalDateTime.now()).toMillis();
+            metrics.started(lagMs);
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("++ Running [{}] planned for [{}] ({} ms late)", this, first.when, lagMs);
+            }
+            boolean failed = true;
+            try {
+                runnable.run();
+                failed = false;
+                LOG.trace("++ Completed [{}]", this);
+            } catch (Exception e) {
+                LOG.error("Planned task [{}] failed", this, e);
+            } finally {
+                metrics.completed(failed);
+                fired(entries);
+            }
+        }
+
+        @Override
+        public String toString() {
+            final Runnable first = entries.get(0).task;
+            return entries.size() == 1 ? String.valueOf(first) : "batch of " + entries.size() + " x " + first;
+        }
+    }
 }
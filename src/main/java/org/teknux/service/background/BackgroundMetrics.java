@@ -0,0 +1,181 @@
+package org.teknux.service.background;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue and execution statistics of the background service
+ */
+public class BackgroundMetrics {
+
+    private final int threads;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final Map<String, TaskTypeMetrics> taskTypes = new ConcurrentHashMap<>();
+
+    BackgroundMetrics(int threads) {
+        this.threads = threads;
+    }
+
+    void submitted() {
+        submitted.incrementAndGet();
+        queued.incrementAndGet();
+    }
+
+    void rejected() {
+        rejected.incrementAndGet();
+    }
+
+    void deduplicated() {
+        deduplicated.incrementAndGet();
+    }
+
+    void started(String taskType, long waitNanos) {
+        queued.decrementAndGet();
+        active.incrementAndGet();
+        taskTypes.computeIfAbsent(taskType, TaskTypeMetrics::new).started(waitNanos);
+    }
+
+    void completed(String taskType, long runNanos, boolean failed) {
+        active.decrementAndGet();
+        taskTypes.computeIfAbsent(taskType, TaskTypeMetrics::new).completed(runNanos, failed);
+    }
+
+    void dropped(int count) {
+        queued.addAndGet(-count);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return tasks waiting for a thread
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return tasks currently running
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    /**
+     * @return tasks refused because too many were pending
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return tasks not queued because an equal one was still pending
+     */
+    public long getDeduplicated() {
+        return deduplicated.get();
+    }
+
+    public Map<String, TaskTypeMetrics> getTaskTypes() {
+        return Collections.unmodifiableMap(taskTypes);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BackgroundMetrics{threads=%d, queued=%d, active=%d, submitted=%d, rejected=%d, deduplicated=%d, taskTypes=%s}", threads, getQueued(), getActive(),
+                getSubmitted(), getRejected(), getDeduplicated(), taskTypes.values());
+    }
+
+    /**
+     * Wait and run times of the tasks of one type
+     */
+    public static class TaskTypeMetrics {
+
+        private final String taskType;
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong totalRunNanos = new AtomicLong();
+        private final AtomicLong maxRunNanos = new AtomicLong();
+
+        TaskTypeMetrics(String taskType) {
+            this.taskType = taskType;
+        }
+
+        void started(long waitNanos) {
+            started.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+
+        void completed(long runNanos, boolean failed) {
+            completed.incrementAndGet();
+            if (failed) {
+                this.failed.incrementAndGet();
+            }
+            totalRunNanos.addAndGet(runNanos);
+            maxRunNanos.accumulateAndGet(runNanos, Math::max);
+        }
+
+        public String getTaskType() {
+            return taskType;
+        }
+
+        public long getStarted() {
+            return started.get();
+        }
+
+        public long getCompleted() {
+            return completed.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        public double getTotalWaitMs() {
+            return totalWaitNanos.get() / 1e6;
+        }
+
+        public double getMeanWaitMs() {
+            final long count = started.get();
+            return count == 0 ? 0 : totalWaitNanos.get() / 1e6 / count;
+        }
+
+        public double getMaxWaitMs() {
+            return maxWaitNanos.get() / 1e6;
+        }
+
+        public double getTotalRunMs() {
+            return totalRunNanos.get() / 1e6;
+        }
+
+        public double getMeanRunMs() {
+            final long count = completed.get();
+            return count == 0 ? 0 : totalRunNanos.get() / 1e6 / count;
+        }
+
+        public double getMaxRunMs() {
+            return maxRunNanos.get() / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{completed=%d, failed=%d, wait=%.1f/%.1fms, run=%.1f/%.1fms}", taskType, getCompleted(), getFailed(), getMeanWaitMs(), getMaxWaitMs(),
+                    getMeanRunMs(), getMaxRunMs());
+        }
+    }
+}
@@ -2,37 +2,106 @@ package org.teknux.service.background;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.teknux.service.BlockingExecutors;
 import org.teknux.service.IServiceManager;
 import org.teknux.service.ServiceException;
 
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.*;
 
+/**
+ * Bounded executor running the tasks of each owner in order, owners being served round-robin.
+ * Every queued task hands a ticket to a fixed pool, each ticket running the next task of the next owner in turn.
+ */
 public class BackgroundServiceImpl implements IBackgroundService {
 
     private static final Logger LOG = LoggerFactory.getLogger(BackgroundServiceImpl.class);
 
-    private volatile Map<Runnable, Future<?>> tasks;
+    public static final String THREADS_PROPERTY = "background.threads";
+    public static final String MAX_QUEUED_PROPERTY = "background.maxQueued";
+    public static final String MAX_QUEUED_PER_OWNER_PROPERTY = "background.maxQueuedPerOwner";
+
+    private static final Object SHARED_OWNER = new Object();
+
+    private final Object lock = new Object();
+    //owners with pending tasks, in serving order
+    private final LinkedHashMap<Object, Deque<Work>> queues = new LinkedHashMap<>();
+    private int queued;
+
     private ExecutorService executorService;
+    private BackgroundMetrics metrics;
+    private int maxQueued;
+    private int maxQueuedPerOwner;
 
     @Override
     public void execute(Runnable task) {
-        //make sure the same task (instance) does not run concurrently
-        synchronized (task) {
-            if (tasks.containsKey(task)) {
-                Future previousExecution = tasks.get(task);
-                if (!previousExecution.isDone() && !previousExecution.isCancelled()) {
-                    LOG.trace(String.format("Non-completed previous execution found [%s], cancelling it...", task));
-                    previousExecution.cancel(false);
-                }
+        execute(SHARED_OWNER, task);
+    }
+
+    @Override
+    public boolean execute(Object owner, Runnable task) {
+        synchronized (lock) {
+            final Deque<Work> queue = queues.get(owner);
+            if (queue != null && queue.stream().anyMatch(work -> work.task.equals(task))) {
+                metrics.deduplicated();
+                LOG.trace("Equal task already pending [{}], not queued again", task);
+                return false;
+            }
+            if (queued >= maxQueued || (queue != null && queue.size() >= maxQueuedPerOwner)) {
+                metrics.rejected();
+                throw new RejectedExecutionException(String.format("Too many pending background tasks (%d, %d for this owner)", queued, queue == null ? 0 : queue.size()));
             }
-            Future newExecution = executorService.submit(() -> {
-                task.run();
-                tasks.remove(task);
-            });
-            tasks.put(task, newExecution);
-            LOG.trace(String.format("New background execution submitted [%s]", task));
+
+            queues.computeIfAbsent(owner, key -> new ArrayDeque<>()).add(new Work(task));
+            queued++;
+            metrics.submitted();
+        }
+        executorService.execute(this::runNext);
+        LOG.trace("New background execution submitted [{}]", task);
+        return true;
+    }
+
+    private Work next() {
+        synchronized (lock) {
+            final Iterator<Map.Entry<Object, Deque<Work>>> owners = queues.entrySet().iterator();
+            if (!owners.hasNext()) {
+                return null;
+            }
+            final Map.Entry<Object, Deque<Work>> owner = owners.next();
+            final Work work = owner.getValue().poll();
+            //the owner goes to the end of the line
+            owners.remove();
+            if (!owner.getValue().isEmpty()) {
+                queues.put(owner.getKey(), owner.getValue());
+            }
+            queued--;
+            return work;
+        }
+    }
+
+    private void runNext() {
+        final Work work = next();
+        if (work == null) {
+            return;
         }
+
+        final String taskType = work.task.getClass().getSimpleName();
+        final long startTime = System.nanoTime();
+        metrics.started(taskType, startTime - work.queuedAt);
+        boolean failed = false;
+        try {
+            work.task.run();
+        } catch (Exception e) {
+            failed = true;
+            LOG.error("Background task [{}] failed", work.task, e);
+        } finally {
+            metrics.completed(taskType, System.nanoTime() - startTime, failed);
+        }
+    }
+
+    @Override
+    public BackgroundMetrics metrics() {
+        return metrics;
     }
 
     @Override
@@ -42,8 +111,11 @@ public class BackgroundServiceImpl implements IBackgroundService {
 
     @Override
     public void start() throws ServiceException {
-        tasks = new ConcurrentHashMap<>();
-        executorService = Executors.newCachedThreadPool();
+        final int threads = Integer.getInteger(THREADS_PROPERTY, 8);
+        maxQueued = Integer.getInteger(MAX_QUEUED_PROPERTY, 200);
+        maxQueuedPerOwner = Integer.getInteger(MAX_QUEUED_PER_OWNER_PROPERTY, 20);
+        metrics = new BackgroundMetrics(threads);
+        executorService = BlockingExecutors.newExecutor("background", threads);
     }
 
     @Override
@@ -54,5 +126,21 @@ public class BackgroundServiceImpl implements IBackgroundService {
         } catch (InterruptedException e) {
             LOG.error("Background task(s) killed, too long to complete!", e);
         }
+        synchronized (lock) {
+            metrics.dropped(queued);
+            queues.clear();
+            queued = 0;
+        }
+        LOG.debug("Background service stopped ({})", metrics);
+    }
+
+    private static class Work {
+
+        private final Runnable task;
+        private final long queuedAt = System.nanoTime();
+
+        Work(Runnable task) {
+            this.task = task;
+        }
     }
 }
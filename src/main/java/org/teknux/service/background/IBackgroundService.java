@@ -2,7 +2,20 @@ package org.teknux.service.background;
 
 import org.teknux.service.IService;
 
+import java.util.concurrent.RejectedExecutionException;
+
 public interface IBackgroundService extends IService {
 
     void execute(Runnable task);
+
+    /**
+     * Queues the task on behalf of the given owner (usually a session). Owners are served in turn so that one owner
+     * cannot starve the others, and a task equal to one still pending for the same owner is not queued twice.
+     *
+     * @return false if an equal task was still pending, this one being dropped
+     * @throws RejectedExecutionException if the owner, or the service as a whole, has too many pending tasks
+     */
+    boolean execute(Object owner, Runnable task);
+
+    BackgroundMetrics metrics();
 }
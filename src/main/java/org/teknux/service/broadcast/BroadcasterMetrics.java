@@ -0,0 +1,97 @@
+package org.teknux.service.broadcast;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Subscribed UIs, deltas pushed to them and how long a delta takes from its computation to a pushed UI
+ */
+public class BroadcasterMetrics {
+
+    private final IntSupplier subscribers;
+    private final IntSupplier subscriptions;
+    private final AtomicLong posted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong pushed = new AtomicLong();
+    private final AtomicLong lastPushNanos = new AtomicLong();
+    private final AtomicLong totalPushNanos = new AtomicLong();
+    private final AtomicLong maxPushNanos = new AtomicLong();
+
+    BroadcasterMetrics(IntSupplier subscribers, IntSupplier subscriptions) {
+        this.subscribers = subscribers;
+        this.subscriptions = subscriptions;
+    }
+
+    void posted() {
+        posted.incrementAndGet();
+    }
+
+    void failed() {
+        failed.incrementAndGet();
+    }
+
+    void pushed(long nanos) {
+        pushed.incrementAndGet();
+        lastPushNanos.set(nanos);
+        totalPushNanos.addAndGet(nanos);
+        maxPushNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @return subscribers of at least one region, one per open UI
+     */
+    public int getSubscribers() {
+        return subscribers.getAsInt();
+    }
+
+    /**
+     * @return region subscriptions, a UI showing all regions having one per region
+     */
+    public int getSubscriptions() {
+        return subscriptions.getAsInt();
+    }
+
+    /**
+     * @return deltas handed over to subscribers
+     */
+    public long getPosted() {
+        return posted.get();
+    }
+
+    /**
+     * @return deltas the subscriber failed to take
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return deltas shown and pushed by a UI
+     */
+    public long getPushed() {
+        return pushed.get();
+    }
+
+    public double getLastPushMs() {
+        return lastPushNanos.get() / 1e6;
+    }
+
+    public double getTotalPushMs() {
+        return totalPushNanos.get() / 1e6;
+    }
+
+    public double getMeanPushMs() {
+        final long count = pushed.get();
+        return count == 0 ? 0 : totalPushNanos.get() / 1e6 / count;
+    }
+
+    public double getMaxPushMs() {
+        return maxPushNanos.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BroadcasterMetrics{subscribers=%d, subscriptions=%d, posted=%d, failed=%d, pushed=%d, push=%.1f/%.1f/%.1fms}", getSubscribers(),
+                getSubscriptions(), getPosted(), getFailed(), getPushed(), getLastPushMs(), getMeanPushMs(), getMaxPushMs());
+    }
+}
@@ -0,0 +1,161 @@
+package org.teknux.service.broadcast;
+
+import com.amazonaws.regions.Regions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.teknux.service.IServiceManager;
+import org.teknux.service.ServiceException;
+import org.teknux.service.inventory.IInventoryService;
+import org.teknux.service.inventory.InventoryListener;
+import org.teknux.service.inventory.InventorySnapshot;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+public class BroadcasterServiceImpl implements IBroadcasterService, InventoryListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BroadcasterServiceImpl.class);
+
+    public static final String FANOUT_THREADS_PROPERTY = "broadcast.fanoutThreads";
+
+    private final Map<Regions, Set<Mailbox>> subscribers = new ConcurrentHashMap<>();
+    private final BroadcasterMetrics metrics = new BroadcasterMetrics(this::countSubscribers, this::countSubscriptions);
+
+    private IInventoryService inventoryService;
+    private ExecutorService fanoutExecutor;
+
+    @Override
+    public Subscription subscribe(Regions region, Subscriber subscriber) {
+        final Mailbox mailbox = new Mailbox(subscriber);
+        subscribers.computeIfAbsent(region, key -> new CopyOnWriteArraySet<>()).add(mailbox);
+        inventoryService.watch(region);
+        LOG.trace("Subscriber [{}] added to region [{}]", subscriber, region);
+
+        final InventorySnapshot snapshot = inventoryService.cached(region).orElse(null);
+        if (snapshot != null) {
+            mailbox.post(InventoryDelta.initial(snapshot));
+        } else {
+            //the first fetch of the region is broadcast to every subscriber, this one included
+            inventoryService.refresh(region);
+        }
+
+        return new Subscription() {
+            @Override
+            public Regions getRegion() {
+                return region;
+            }
+
+            @Override
+            public void unsubscribe() {
+                final Set<Mailbox> regionSubscribers = subscribers.get(region);
+                if (regionSubscribers != null && regionSubscribers.remove(mailbox)) {
+                    inventoryService.unwatch(region);
+                    LOG.trace("Subscriber [{}] removed from region [{}]", subscriber, region);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void inventoryUpdated(InventorySnapshot previous, InventorySnapshot current) {
+        final Set<Mailbox> regionSubscribers = subscribers.get(current.getRegion());
+        if (regionSubscribers == null || regionSubscribers.isEmpty()) {
+            return;
+        }
+
+        final InventoryDelta delta = InventoryDelta.between(previous, current);
+        if (delta.isEmpty()) {
+            return;
+        }
+
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Broadcasting {} to {} subscriber(s)", delta, regionSubscribers.size());
+        }
+        regionSubscribers.forEach(mailbox -> mailbox.post(delta));
+    }
+
+    @Override
+    public void pushed(InventoryDelta delta) {
+        metrics.pushed(System.nanoTime() - delta.getCreatedAt());
+    }
+
+    @Override
+    public BroadcasterMetrics metrics() {
+        return metrics;
+    }
+
+    private int countSubscribers() {
+        return subscribers.values().stream().flatMap(Set::stream).map(mailbox -> mailbox.subscriber).collect(Collectors.toSet()).size();
+    }
+
+    private int countSubscriptions() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @Override
+    public void init(IServiceManager serviceManager) {
+        inventoryService = serviceManager.getService(IInventoryService.class);
+    }
+
+    @Override
+    public void start() throws ServiceException {
+        fanoutExecutor = Executors.newFixedThreadPool(Integer.getInteger(FANOUT_THREADS_PROPERTY, 4));
+        inventoryService.addListener(this);
+    }
+
+    @Override
+    public void stop() throws ServiceException {
+        inventoryService.removeListener(this);
+        fanoutExecutor.shutdownNow();
+        try {
+            fanoutExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            LOG.error("Broadcast(s) killed, too long to complete!", e);
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * Delivers the deltas of one subscriber in order, without holding a fan-out thread while idle
+     */
+    private class Mailbox implements Runnable {
+
+        private final Subscriber subscriber;
+        private final Queue<InventoryDelta> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Mailbox(Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void post(InventoryDelta delta) {
+            metrics.posted();
+            pending.add(delta);
+            if (scheduled.compareAndSet(false, true)) {
+                fanoutExecutor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            InventoryDelta delta;
+            while ((delta = pending.poll()) != null) {
+                try {
+                    subscriber.onDelta(delta);
+                } catch (Exception e) {
+                    metrics.failed();
+                    LOG.error("Error while pushing {} to subscriber [{}]", delta, subscriber, e);
+                }
+            }
+            scheduled.set(false);
+            //a delta may have been posted between the last poll and the flag reset
+            if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+                fanoutExecutor.execute(this);
+            }
+        }
+    }
+}
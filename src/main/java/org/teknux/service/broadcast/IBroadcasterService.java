@@ -0,0 +1,35 @@
+package org.teknux.service.broadcast;
+
+import com.amazonaws.regions.Regions;
+import org.teknux.service.IService;
+
+/**
+ * Pushes inventory deltas of a region to every subscribed UI
+ */
+public interface IBroadcasterService extends IService {
+
+    /**
+     * Subscribes to a region, the subscriber first receives the whole current inventory then only deltas
+     */
+    Subscription subscribe(Regions region, Subscriber subscriber);
+
+    /**
+     * Reports a delta as shown and pushed to the browser by a subscriber, to time the way of deltas to the UIs
+     */
+    void pushed(InventoryDelta delta);
+
+    BroadcasterMetrics metrics();
+
+    /**
+     * Receives the deltas of its subscriptions, the same instance being used for every region of a UI
+     */
+    interface Subscriber {
+        void onDelta(InventoryDelta delta);
+    }
+
+    interface Subscription {
+        Regions getRegion();
+
+        void unsubscribe();
+    }
+}
@@ -0,0 +1,113 @@
+package org.teknux.service.broadcast;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.ec2.model.Instance;
+import org.teknux.service.inventory.InventorySnapshot;
+
+import java.util.*;
+
+/**
+ * Difference between two consecutive inventory snapshots of a region
+ */
+public class InventoryDelta {
+
+    private final InventorySnapshot snapshot;
+    private final List<Instance> added;
+    private final List<Instance> removed;
+    private final List<Instance> updated;
+    private final boolean elasticIPsChanged;
+    private final boolean initial;
+    private final long createdAt = System.nanoTime();
+
+    private InventoryDelta(InventorySnapshot snapshot, List<Instance> added, List<Instance> removed, List<Instance> updated, boolean elasticIPsChanged, boolean initial) {
+        this.snapshot = snapshot;
+        this.initial = initial;
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.updated = Collections.unmodifiableList(updated);
+        this.elasticIPsChanged = elasticIPsChanged;
+    }
+
+    /**
+     * Delta bringing a new subscriber from nothing to the given snapshot
+     */
+    public static InventoryDelta initial(InventorySnapshot snapshot) {
+        return new InventoryDelta(snapshot, new ArrayList<>(snapshot.getInstances()), Collections.emptyList(), Collections.emptyList(), true, true);
+    }
+
+    public static InventoryDelta between(InventorySnapshot previous, InventorySnapshot current) {
+        if (previous == null) {
+            return initial(current);
+        }
+
+        final Map<String, Instance> previousById = new HashMap<>(previous.getInstances().size() * 2);
+        previous.getInstances().forEach(instance -> previousById.put(instance.getInstanceId(), instance));
+
+        final List<Instance> added = new ArrayList<>();
+        final List<Instance> updated = new ArrayList<>();
+        for (Instance instance : current.getInstances()) {
+            final Instance previousInstance = previousById.remove(instance.getInstanceId());
+            if (previousInstance == null) {
+                added.add(instance);
+            } else if (!previousInstance.equals(instance)) {
+                updated.add(instance);
+            }
+        }
+        final List<Instance> removed = new ArrayList<>(previousById.values());
+
+        return new InventoryDelta(current, added, removed, updated, !previous.getElasticIPs().equals(current.getElasticIPs()), false);
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the delta was computed, to time its way to the UIs
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Regions getRegion() {
+        return snapshot.getRegion();
+    }
+
+    /**
+     * @return the full snapshot this delta leads to
+     */
+    public InventorySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public List<Instance> getAdded() {
+        return added;
+    }
+
+    public List<Instance> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return instances present in both snapshots whose state (or any other attribute) changed
+     */
+    public List<Instance> getUpdated() {
+        return updated;
+    }
+
+    public boolean isElasticIPsChanged() {
+        return elasticIPsChanged;
+    }
+
+    /**
+     * @return true if this delta carries the whole inventory, the subscriber has to drop what it had before
+     */
+    public boolean isInitial() {
+        return initial;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && updated.isEmpty() && !elasticIPsChanged;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InventoryDelta{region=%s, added=%d, removed=%d, updated=%d, elasticIPsChanged=%s}", getRegion(), added.size(), removed.size(), updated.size(), elasticIPsChanged);
+    }
+}
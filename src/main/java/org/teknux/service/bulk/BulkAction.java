@@ -0,0 +1,34 @@
+package org.teknux.service.bulk;
+
+import org.teknux.api.Ec2Api;
+
+import java.util.Set;
+
+public enum BulkAction {
+
+    START("Start") {
+        @Override
+        void apply(Ec2Api api, Set<String> instanceIds, Ec2Api.InstanceOutcomeListener listener) {
+            api.startInstances(instanceIds, listener);
+        }
+    },
+
+    STOP("Stop") {
+        @Override
+        void apply(Ec2Api api, Set<String> instanceIds, Ec2Api.InstanceOutcomeListener listener) {
+            api.stopInstances(instanceIds, listener);
+        }
+    };
+
+    private final String caption;
+
+    BulkAction(String caption) {
+        this.caption = caption;
+    }
+
+    public String getCaption() {
+        return caption;
+    }
+
+    abstract void apply(Ec2Api api, Set<String> instanceIds, Ec2Api.InstanceOutcomeListener listener);
+}
@@ -0,0 +1,167 @@
+package org.teknux.service.bulk;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.ec2.model.InstanceStateChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.teknux.api.Ec2Api;
+import org.teknux.service.IServiceManager;
+import org.teknux.service.ServiceException;
+import org.teknux.service.background.IBackgroundService;
+import org.teknux.service.client.IEc2ClientService;
+import org.teknux.service.inventory.IInventoryService;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+public class BulkActionServiceImpl implements IBulkActionService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkActionServiceImpl.class);
+
+    private IBackgroundService backgroundService;
+    private IEc2ClientService clientService;
+    private IInventoryService inventoryService;
+
+    @Override
+    public CompletableFuture<BulkProgress> submit(Object owner, BulkAction action, Map<Regions, Set<String>> instanceIds, ProgressListener listener) {
+        final BulkJob job = new BulkJob(action, copyOf(instanceIds), listener);
+        LOG.debug("Submitting {} of {} instance(s)", action, job.total);
+        //an equal job still pending (double click) is not queued again
+        if (!backgroundService.execute(owner, job)) {
+            job.result.cancel(false);
+        }
+        return job.result;
+    }
+
+    private static Map<Regions, Set<String>> copyOf(Map<Regions, Set<String>> instanceIds) {
+        final Map<Regions, Set<String>> copy = new EnumMap<>(Regions.class);
+        instanceIds.forEach((region, ids) -> {
+            if (!ids.isEmpty()) {
+                copy.put(region, Collections.unmodifiableSet(new LinkedHashSet<>(ids)));
+            }
+        });
+        return Collections.unmodifiableMap(copy);
+    }
+
+    @Override
+    public void init(IServiceManager serviceManager) {
+        backgroundService = serviceManager.getService(IBackgroundService.class);
+        clientService = serviceManager.getService(IEc2ClientService.class);
+        inventoryService = serviceManager.getService(IInventoryService.class);
+    }
+
+    @Override
+    public void start() throws ServiceException {
+
+    }
+
+    @Override
+    public void stop() throws ServiceException {
+
+    }
+
+    /**
+     * Applies the action region by region, reporting the outcomes of each EC2 call as a progress
+     */
+    private class BulkJob implements Runnable {
+
+        private final BulkAction action;
+        private final Map<Regions, Set<String>> instanceIds;
+        private final ProgressListener listener;
+        private final int total;
+        private final CompletableFuture<BulkProgress> result = new CompletableFuture<>();
+
+        private int succeeded;
+        private int failed;
+        private List<BulkProgress.Outcome> outcomes = new ArrayList<>();
+
+        BulkJob(BulkAction action, Map<Regions, Set<String>> instanceIds, ProgressListener listener) {
+            this.action = action;
+            this.instanceIds = instanceIds;
+            this.listener = listener;
+            this.total = instanceIds.values().stream().mapToInt(Set::size).sum();
+        }
+
+        @Override
+        public void run() {
+            instanceIds.forEach((region, ids) -> {
+                final Set<String> pending = new LinkedHashSet<>(ids);
+                final List<InstanceStateChange> stateChanges = new ArrayList<>();
+                try {
+                    action.apply(clientService.api(region), ids, new Ec2Api.InstanceOutcomeListener() {
+                        @Override
+                        public void changed(InstanceStateChange stateChange) {
+                            pending.remove(stateChange.getInstanceId());
+                            stateChanges.add(stateChange);
+                            succeeded++;
+                            outcomes.add(new BulkProgress.Outcome(region, stateChange.getInstanceId(), stateChange.getCurrentState().getName(), null));
+                        }
+
+                        @Override
+                        public void failed(String instanceId, AmazonServiceException e) {
+                            pending.remove(instanceId);
+                            failed++;
+                            outcomes.add(new BulkProgress.Outcome(region, instanceId, null, e.getErrorMessage()));
+                        }
+
+                        @Override
+                        public void batchCompleted() {
+                            publish(false);
+                        }
+                    });
+                } catch (Exception e) {
+                    //not a per instance failure (client not running, network...), the remaining instances of the region failed
+                    LOG.error("{} of {} instance(s) in region [{}] failed", action, pending.size(), region, e);
+                    pending.forEach(id -> {
+                        failed++;
+                        outcomes.add(new BulkProgress.Outcome(region, id, null, e.getMessage()));
+                    });
+                    publish(false);
+                }
+                //shows the pending / stopping states at once, then follows those instances only until they are stable
+                if (!stateChanges.isEmpty()) {
+                    try {
+                        inventoryService.track(region, stateChanges);
+                    } catch (Exception e) {
+                        //the changes are applied, the next refresh of the region shows them anyway
+                        LOG.error("Tracking of {} instance(s) in region [{}] failed", stateChanges.size(), region, e);
+                    }
+                }
+            });
+            result.complete(publish(true));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            BulkJob that = (BulkJob) o;
+
+            if (action != that.action) return false;
+            return instanceIds.equals(that.instanceIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * action.hashCode() + instanceIds.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("BulkJob{action=%s, instances=%d}", action, total);
+        }
+
+        private BulkProgress publish(boolean completed) {
+            final BulkProgress progress = new BulkProgress(action, total, succeeded, failed, outcomes, completed);
+            outcomes = new ArrayList<>();
+            try {
+                listener.onProgress(progress);
+            } catch (Exception e) {
+                LOG.error("Bulk progress listener [{}] failed", listener, e);
+            }
+            return progress;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.teknux.service.bulk;
+
+import com.amazonaws.regions.Regions;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable progress of a bulk job, carrying the outcomes received since the previous progress
+ */
+public class BulkProgress {
+
+    private final BulkAction action;
+    private final int total;
+    private final int succeeded;
+    private final int failed;
+    private final List<Outcome> outcomes;
+    private final boolean completed;
+
+    BulkProgress(BulkAction action, int total, int succeeded, int failed, List<Outcome> outcomes, boolean completed) {
+        this.action = action;
+        this.total = total;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.outcomes = Collections.unmodifiableList(outcomes);
+        this.completed = completed;
+    }
+
+    public BulkAction getAction() {
+        return action;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getDone() {
+        return succeeded + failed;
+    }
+
+    /**
+     * @return outcomes of the instances processed since the previous progress
+     */
+    public List<Outcome> getOutcomes() {
+        return outcomes;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BulkProgress{action=%s, done=%d/%d, failed=%d, completed=%s}", action, getDone(), total, failed, completed);
+    }
+
+    /**
+     * Outcome of the action on one instance, either its new state or the error preventing it
+     */
+    public static class Outcome {
+
+        private final Regions region;
+        private final String instanceId;
+        private final String state;
+        private final String error;
+
+        Outcome(Regions region, String instanceId, String state, String error) {
+            this.region = region;
+            this.instanceId = instanceId;
+            this.state = state;
+            this.error = error;
+        }
+
+        public Regions getRegion() {
+            return region;
+        }
+
+        public String getInstanceId() {
+            return instanceId;
+        }
+
+        /**
+         * @return state the instance is going to, null if failed
+         */
+        public String getState() {
+            return state;
+        }
+
+        /**
+         * @return error message, null if succeeded
+         */
+        public String getError() {
+            return error;
+        }
+
+        public boolean isSucceeded() {
+            return error == null;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.teknux.service.bulk;
+
+import com.amazonaws.regions.Regions;
+import org.teknux.service.IService;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs start / stop actions on many instances as one background job, in batched EC2 calls
+ */
+public interface IBulkActionService extends IService {
+
+    /**
+     * Submits the action on the given instance ids, captured beforehand so that the job never reads UI state
+     *
+     * @param owner    session the job is run for, jobs of the different sessions being run in turn
+     * @param listener receives the progress of the job after each EC2 call, in order, from a background thread
+     * @return the final progress of the job, cancelled if an equal job is still pending
+     * @throws java.util.concurrent.RejectedExecutionException if the owner already has too many pending jobs
+     */
+    CompletableFuture<BulkProgress> submit(Object owner, BulkAction action, Map<Regions, Set<String>> instanceIds, ProgressListener listener);
+
+    interface ProgressListener {
+        void onProgress(BulkProgress progress);
+    }
+}
@@ -0,0 +1,200 @@
+package org.teknux.service.client;
+
+import com.amazonaws.regions.Regions;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection pool usage, throttling, retries and per operation latency of a regional EC2 client
+ */
+public class Ec2ClientMetrics {
+
+    private final Regions region;
+    private final int maxConnections;
+
+    private final AtomicInteger leased = new AtomicInteger();
+    private final AtomicInteger peakLeased = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong throttles = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong retriesDenied = new AtomicLong();
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    private volatile Ec2RateLimiter rateLimiter;
+
+    public Ec2ClientMetrics(Regions region, int maxConnections) {
+        this.region = region;
+        this.maxConnections = maxConnections;
+    }
+
+    void requestStarted() {
+        requests.incrementAndGet();
+        final int current = leased.incrementAndGet();
+        peakLeased.accumulateAndGet(current, Math::max);
+    }
+
+    void requestCompleted() {
+        leased.decrementAndGet();
+    }
+
+    void requestFailed() {
+        leased.decrementAndGet();
+        errors.incrementAndGet();
+    }
+
+    void throttled() {
+        throttles.incrementAndGet();
+    }
+
+    void retried() {
+        retries.incrementAndGet();
+    }
+
+    void retryDenied() {
+        retriesDenied.incrementAndGet();
+    }
+
+    void called(String operation, long nanos, boolean failed) {
+        operations.computeIfAbsent(operation, OperationMetrics::new).record(nanos, failed);
+    }
+
+    void setRateLimiter(Ec2RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public Regions getRegion() {
+        return region;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * @return number of requests currently holding a pooled connection
+     */
+    public int getLeased() {
+        return leased.get();
+    }
+
+    public int getAvailable() {
+        return Math.max(0, maxConnections - leased.get());
+    }
+
+    public int getPeakLeased() {
+        return peakLeased.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @return requests answered by EC2 with a throttling error
+     */
+    public long getThrottles() {
+        return throttles.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * @return retries not attempted because the retry budget was exhausted
+     */
+    public long getRetriesDenied() {
+        return retriesDenied.get();
+    }
+
+    /**
+     * @return latency of each EC2 operation called so far, keyed by operation name such as DescribeInstances
+     */
+    public Map<String, OperationMetrics> getOperations() {
+        return Collections.unmodifiableMap(operations);
+    }
+
+    /**
+     * @return current allowed rate of describe calls, in requests per second
+     */
+    public double getDescribeRate() {
+        return rateLimiter == null ? 0 : rateLimiter.getRate(Ec2RateLimiter.Category.DESCRIBE);
+    }
+
+    /**
+     * @return current allowed rate of mutating calls, in requests per second
+     */
+    public double getMutateRate() {
+        return rateLimiter == null ? 0 : rateLimiter.getRate(Ec2RateLimiter.Category.MUTATE);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Ec2ClientMetrics{region=%s, leased=%d/%d, peak=%d, requests=%d, errors=%d, throttles=%d, retries=%d, retriesDenied=%d, %s}", region, getLeased(), maxConnections,
+                getPeakLeased(), getRequests(), getErrors(), getThrottles(), getRetries(), getRetriesDenied(), rateLimiter);
+    }
+
+    /**
+     * Count, errors, total and max duration of the calls of one operation, retries included
+     */
+    public static class OperationMetrics {
+
+        private final String operation;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        OperationMetrics(String operation) {
+            this.operation = operation;
+        }
+
+        void record(long nanos, boolean failed) {
+            count.incrementAndGet();
+            if (failed) {
+                errors.incrementAndGet();
+            }
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        public double getTotalMs() {
+            return totalNanos.get() / 1e6;
+        }
+
+        public double getMeanMs() {
+            final long n = count.get();
+            return n == 0 ? 0 : totalNanos.get() / 1e6 / n;
+        }
+
+        public double getMaxMs() {
+            return maxNanos.get() / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{count=%d, errors=%d, mean=%.1fms, max=%.1fms}", operation, getCount(), getErrors(), getMeanMs(), getMaxMs());
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package org.teknux.service.client;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.client.builder.ExecutorFactory;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.AmazonEC2Async;
+import com.amazonaws.services.ec2.AmazonEC2AsyncClientBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.teknux.api.Ec2Api;
+import org.teknux.api.Ec2AsyncApi;
+import org.teknux.api.PropertiesCredentialProvider;
+import org.teknux.service.BlockingExecutors;
+import org.teknux.service.IServiceManager;
+import org.teknux.service.ServiceException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+public class Ec2ClientServiceImpl implements IEc2ClientService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Ec2ClientServiceImpl.class);
+
+    public static final String REGIONS_PROPERTY = "ec2.regions";
+    public static final String MAX_CONNECTIONS_PROPERTY = "ec2.client.maxConnections";
+    public static final String CONNECTION_TIMEOUT_PROPERTY = "ec2.client.connectionTimeoutMs";
+    public static final String SOCKET_TIMEOUT_PROPERTY = "ec2.client.socketTimeoutMs";
+    public static final String CONNECTION_TTL_PROPERTY = "ec2.client.connectionTtlMs";
+    public static final String CONNECTION_MAX_IDLE_PROPERTY = "ec2.client.connectionMaxIdleMs";
+    public static final String TCP_KEEP_ALIVE_PROPERTY = "ec2.client.tcpKeepAlive";
+    public static final String DESCRIBE_RATE_PROPERTY = "ec2.client.describeRate";
+    public static final String DESCRIBE_BURST_PROPERTY = "ec2.client.describeBurst";
+    public static final String MUTATE_RATE_PROPERTY = "ec2.client.mutateRate";
+    public static final String MUTATE_BURST_PROPERTY = "ec2.client.mutateBurst";
+    public static final String MAX_RETRIES_PROPERTY = "ec2.client.maxRetries";
+    public static final String RETRY_BUDGET_PROPERTY = "ec2.client.retryBudget";
+    public static final String MAX_CONCURRENT_PROPERTY = "ec2.client.maxConcurrentPerRegion";
+    public static final String ASYNC_THREADS_PROPERTY = "ec2.client.asyncThreads";
+
+    private final ClientFactory clientFactory;
+    private final Map<Regions, AmazonEC2Async> clients = new ConcurrentHashMap<>();
+    private final Map<Regions, Ec2ClientMetrics> metrics = new ConcurrentHashMap<>();
+
+    private volatile List<Regions> regions = Collections.emptyList();
+    private volatile ClientConfiguration clientConfiguration;
+    private volatile boolean running;
+
+    public Ec2ClientServiceImpl() {
+        this(Ec2ClientServiceImpl::createAwsClient);
+    }
+
+    /**
+     * @param clientFactory creates the client of a region, e.g. a stand-in of EC2 in load tests
+     */
+    Ec2ClientServiceImpl(ClientFactory clientFactory) {
+        this.clientFactory = clientFactory;
+    }
+
+    @Override
+    public List<Regions> regions() {
+        return regions;
+    }
+
+    @Override
+    public AmazonEC2 client(Regions region) {
+        return asyncClient(region);
+    }
+
+    @Override
+    public AmazonEC2Async asyncClient(Regions region) {
+        if (!running) {
+            throw new IllegalStateException("EC2 client service is not running");
+        }
+        return clients.computeIfAbsent(region, this::createClient);
+    }
+
+    @Override
+    public Ec2Api api(Regions region) {
+        return new Ec2Api(client(region));
+    }
+
+    @Override
+    public Ec2AsyncApi asyncApi(Regions region) {
+        return new Ec2AsyncApi(asyncClient(region));
+    }
+
+    @Override
+    public Map<Regions, Ec2ClientMetrics> metrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * The async client is also the blocking one, so that both share the connection pool, rate limiter and metrics of the region.
+     */
+    private AmazonEC2Async createClient(Regions region) {
+        LOG.debug("Creating EC2 client for region [{}]", region);
+        final Ec2ClientMetrics regionMetrics = new Ec2ClientMetrics(region, clientConfiguration.getMaxConnections());
+        final Ec2RateLimiter rateLimiter = new Ec2RateLimiter(regionMetrics,
+                Double.parseDouble(System.getProperty(DESCRIBE_RATE_PROPERTY, "20")), Integer.getInteger(DESCRIBE_BURST_PROPERTY, 100),
+                Double.parseDouble(System.getProperty(MUTATE_RATE_PROPERTY, "5")), Integer.getInteger(MUTATE_BURST_PROPERTY, 50),
+                Integer.getInteger(RETRY_BUDGET_PROPERTY, 100));
+        regionMetrics.setRateLimiter(rateLimiter);
+        metrics.put(region, regionMetrics);
+
+        //retries are paced by the rate limiter, the SDK own throttled retries capacity would only add up to it
+        final ClientConfiguration regionConfiguration = new ClientConfiguration(clientConfiguration)
+                .withRetryPolicy(rateLimiter.retryPolicy(Integer.getInteger(MAX_RETRIES_PROPERTY, 5)))
+                .withThrottledRetries(false);
+
+        final int asyncThreads = Integer.getInteger(ASYNC_THREADS_PROPERTY, 10);
+        final MetricsRequestHandler requestHandler = new MetricsRequestHandler(regionMetrics, rateLimiter,
+                new Semaphore(Integer.getInteger(MAX_CONCURRENT_PROPERTY, clientConfiguration.getMaxConnections()), true));
+        return clientFactory.create(region, regionConfiguration, requestHandler, () -> BlockingExecutors.newExecutor("ec2-" + region.getName(), asyncThreads));
+    }
+
+    private static AmazonEC2Async createAwsClient(Regions region, ClientConfiguration configuration, RequestHandler2 requestHandler, ExecutorFactory executorFactory) {
+        return AmazonEC2AsyncClientBuilder.standard()
+                .withCredentials(new PropertiesCredentialProvider())
+                .withClientConfiguration(configuration)
+                .withExecutorFactory(executorFactory)
+                .withRequestHandlers(requestHandler)
+                .withRegion(region)
+                .build();
+    }
+
+    /**
+     * @return regions listed by name (us-east-1) or constant (US_EAST_1) in the property, all but GovCloud if not set
+     */
+    private static List<Regions> enabledRegions() {
+        final List<Regions> allRegions = Collections.unmodifiableList(Arrays.stream(Regions.values()).filter(region -> region != Regions.GovCloud).collect(Collectors.toList()));
+        final String property = System.getProperty(REGIONS_PROPERTY, "").trim();
+        if (property.isEmpty()) {
+            return allRegions;
+        }
+
+        final Set<Regions> enabled = new LinkedHashSet<>();
+        for (String name : property.split(",")) {
+            final String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            try {
+                enabled.add(Regions.fromName(trimmed));
+            } catch (IllegalArgumentException e) {
+                try {
+                    enabled.add(Regions.valueOf(trimmed));
+                } catch (IllegalArgumentException unknown) {
+                    LOG.warn("Unknown region [{}] in {}, ignored", trimmed, REGIONS_PROPERTY);
+                }
+            }
+        }
+        if (enabled.isEmpty()) {
+            LOG.warn("No known region in {}, all regions enabled", REGIONS_PROPERTY);
+            return allRegions;
+        }
+        return Collections.unmodifiableList(new ArrayList<>(enabled));
+    }
+
+    private static ClientConfiguration createClientConfiguration() {
+        return new ClientConfiguration()
+                .withMaxConnections(Integer.getInteger(MAX_CONNECTIONS_PROPERTY, 50))
+                .withConnectionTimeout(Integer.getInteger(CONNECTION_TIMEOUT_PROPERTY, 10 * 1000))
+                .withSocketTimeout(Integer.getInteger(SOCKET_TIMEOUT_PROPERTY, 30 * 1000))
+                .withConnectionTTL(Long.getLong(CONNECTION_TTL_PROPERTY, 5 * 60 * 1000L))
+                .withConnectionMaxIdleMillis(Long.getLong(CONNECTION_MAX_IDLE_PROPERTY, 60 * 1000L))
+                .withTcpKeepAlive(Boolean.parseBoolean(System.getProperty(TCP_KEEP_ALIVE_PROPERTY, "true")));
+    }
+
+    @Override
+    public void init(IServiceManager serviceManager) {
+
+    }
+
+    @Override
+    public void start() throws ServiceException {
+        regions = enabledRegions();
+        clientConfiguration = createClientConfiguration();
+        running = true;
+        LOG.debug("Enabled regions {}", regions);
+    }
+
+    @Override
+    public void stop() throws ServiceException {
+        running = false;
+        clients.forEach((region, client) -> {
+            LOG.debug("Shutting down EC2 client for region [{}] ({})", region, metrics.get(region));
+            client.shutdown();
+        });
+        clients.clear();
+        metrics.clear();
+    }
+
+    /**
+     * Creates the client of a region, given its configuration, request handler and async executor factory
+     */
+    @FunctionalInterface
+    interface ClientFactory {
+        AmazonEC2Async create(Regions region, ClientConfiguration configuration, RequestHandler2 requestHandler, ExecutorFactory executorFactory);
+    }
+
+    /**
+     * Caps the calls in flight on the region, retries included, then paces them through the rate limiter. The cap
+     * defaults to the connection pool size, beyond which calls would only wait for a pooled connection, and is what
+     * bounds EC2 calls when they run on virtual threads.
+     */
+    private static class MetricsRequestHandler extends RequestHandler2 {
+
+        private static final HandlerContextKey<Boolean> PERMIT = new HandlerContextKey<>("ConcurrencyPermit");
+        private static final HandlerContextKey<Long> STARTED_AT = new HandlerContextKey<>("StartedAt");
+
+        private final Ec2ClientMetrics metrics;
+        private final Ec2RateLimiter rateLimiter;
+        private final Semaphore concurrency;
+
+        MetricsRequestHandler(Ec2ClientMetrics metrics, Ec2RateLimiter rateLimiter, Semaphore concurrency) {
+            this.metrics = metrics;
+            this.rateLimiter = rateLimiter;
+            this.concurrency = concurrency;
+        }
+
+        @Override
+        public void beforeRequest(Request<?> request) {
+            request.addHandlerContext(STARTED_AT, System.nanoTime());
+            try {
+                concurrency.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AbortedException("Interrupted while waiting for a concurrency permit", e);
+            }
+            request.addHandlerContext(PERMIT, Boolean.TRUE);
+            rateLimiter.acquire(request.getOriginalRequest());
+            metrics.requestStarted();
+        }
+
+        @Override
+        public void afterResponse(Request<?> request, Response<?> response) {
+            release(request);
+            metrics.requestCompleted();
+            called(request, false);
+            rateLimiter.succeeded(request.getOriginalRequest());
+        }
+
+        @Override
+        public void afterError(Request<?> request, Response<?> response, Exception e) {
+            release(request);
+            metrics.requestFailed();
+            called(request, true);
+        }
+
+        /**
+         * Times the call from the wait for a permit to its outcome, so that pacing and retries show in its latency
+         */
+        private void called(Request<?> request, boolean failed) {
+            final Long startedAt = request.getHandlerContext(STARTED_AT);
+            if (startedAt != null) {
+                metrics.called(operation(request), System.nanoTime() - startedAt, failed);
+            }
+        }
+
+        private static String operation(Request<?> request) {
+            final String name = request.getOriginalRequest().getClass().getSimpleName();
+            return name.endsWith("Request") ? name.substring(0, name.length() - "Request".length()) : name;
+        }
+
+        private void release(Request<?> request) {
+            if (Boolean.TRUE.equals(request.getHandlerContext(PERMIT))) {
+                request.addHandlerContext(PERMIT, Boolean.FALSE);
+                concurrency.release();
+            }
+        }
+    }
+}
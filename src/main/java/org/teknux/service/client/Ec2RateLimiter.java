@@ -0,0 +1,189 @@
+package org.teknux.service.client;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client side rate limiting of a regional EC2 client, mirroring the EC2 request token buckets: describe calls and
+ * mutating calls each get a token bucket whose rate is adjusted AIMD style, halved when EC2 throttles and slowly
+ * increased back to the configured rate on success. Retries are jittered exponential backoffs, spent from a retry
+ * budget refilled by successful requests, so that a throttled region is not hammered by retry storms.
+ */
+class Ec2RateLimiter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Ec2RateLimiter.class);
+
+    private static final int RETRY_COST = 5;
+    private static final long BASE_BACKOFF_MS = 100;
+    private static final long THROTTLED_BASE_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 20 * 1000;
+
+    enum Category {
+        DESCRIBE, MUTATE;
+
+        static Category of(AmazonWebServiceRequest request) {
+            return request != null && request.getClass().getSimpleName().startsWith("Describe") ? DESCRIBE : MUTATE;
+        }
+    }
+
+    private final Ec2ClientMetrics metrics;
+    private final AdaptiveTokenBucket describeBucket;
+    private final AdaptiveTokenBucket mutateBucket;
+    private final int retryBudgetCapacity;
+
+    private int retryBudget;
+
+    Ec2RateLimiter(Ec2ClientMetrics metrics, double describeRate, int describeBurst, double mutateRate, int mutateBurst, int retryBudgetCapacity) {
+        this.metrics = metrics;
+        this.describeBucket = new AdaptiveTokenBucket(describeRate, describeBurst);
+        this.mutateBucket = new AdaptiveTokenBucket(mutateRate, mutateBurst);
+        this.retryBudgetCapacity = retryBudgetCapacity;
+        this.retryBudget = retryBudgetCapacity;
+    }
+
+    private AdaptiveTokenBucket bucket(Category category) {
+        return category == Category.DESCRIBE ? describeBucket : mutateBucket;
+    }
+
+    /**
+     * Blocks until a token of the request category is available
+     */
+    void acquire(AmazonWebServiceRequest request) {
+        final long waitNanos = bucket(Category.of(request)).reserve();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void succeeded(AmazonWebServiceRequest request) {
+        bucket(Category.of(request)).increase();
+        synchronized (this) {
+            retryBudget = Math.min(retryBudgetCapacity, retryBudget + 1);
+        }
+    }
+
+    double getRate(Category category) {
+        return bucket(category).getRate();
+    }
+
+    /**
+     * @return retry policy spending the retry budget, backing off with full jitter and waiting for a token before each retry
+     */
+    RetryPolicy retryPolicy(int maxRetries) {
+        return new RetryPolicy(this::shouldRetry, this::delayBeforeNextRetry, maxRetries, false);
+    }
+
+    private boolean shouldRetry(AmazonWebServiceRequest request, AmazonClientException exception, int retriesAttempted) {
+        if (isThrottling(exception)) {
+            metrics.throttled();
+            bucket(Category.of(request)).decrease();
+        }
+        if (!PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION.shouldRetry(request, exception, retriesAttempted)) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (retryBudget < RETRY_COST) {
+                metrics.retryDenied();
+                LOG.warn("Retry budget of [{}] exhausted, not retrying [{}]", metrics.getRegion(), request.getClass().getSimpleName());
+                return false;
+            }
+            retryBudget -= RETRY_COST;
+        }
+        metrics.retried();
+        return true;
+    }
+
+    private long delayBeforeNextRetry(AmazonWebServiceRequest request, AmazonClientException exception, int retriesAttempted) {
+        final long baseMs = isThrottling(exception) ? THROTTLED_BASE_BACKOFF_MS : BASE_BACKOFF_MS;
+        final long ceilingMs = Math.min(MAX_BACKOFF_MS, baseMs << Math.min(retriesAttempted, 16));
+        final long backoffMs = ThreadLocalRandom.current().nextLong(ceilingMs + 1);
+        final long tokenWaitMs = TimeUnit.NANOSECONDS.toMillis(bucket(Category.of(request)).reserve());
+        return Math.max(backoffMs, tokenWaitMs);
+    }
+
+    private static boolean isThrottling(AmazonClientException exception) {
+        return exception instanceof AmazonServiceException && RetryUtils.isThrottlingException((AmazonServiceException) exception);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("describe=%.1f/s, mutate=%.1f/s", describeBucket.getRate(), mutateBucket.getRate());
+    }
+
+    /**
+     * Token bucket letting callers go into debt: a reservation returns how long to wait for its token
+     */
+    private static class AdaptiveTokenBucket {
+
+        private static final double MIN_RATE = 0.5;
+        private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+        private final double maxRate;
+        private final int burst;
+
+        private double rate;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+        private long decreasedAt = refilledAt - DECREASE_INTERVAL_NANOS;
+
+        AdaptiveTokenBucket(double maxRate, int burst) {
+            this.maxRate = Math.max(MIN_RATE, maxRate);
+            this.burst = Math.max(1, burst);
+            this.rate = this.maxRate;
+            this.tokens = this.burst;
+        }
+
+        synchronized long reserve() {
+            refill();
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        private void refill() {
+            final long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+            refilledAt = now;
+        }
+
+        /**
+         * Additive increase, about one more request per second each second at full speed
+         */
+        synchronized void increase() {
+            if (rate < maxRate) {
+                refill();
+                rate = Math.min(maxRate, rate + 1 / rate);
+            }
+        }
+
+        /**
+         * Multiplicative decrease, at most once per second so that a burst of throttled requests counts once
+         */
+        synchronized void decrease() {
+            final long now = System.nanoTime();
+            if (now - decreasedAt >= DECREASE_INTERVAL_NANOS) {
+                refill();
+                rate = Math.max(MIN_RATE, rate / 2);
+                tokens = Math.min(tokens, 0);
+                decreasedAt = now;
+            }
+        }
+
+        synchronized double getRate() {
+            return rate;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.teknux.service.client;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.AmazonEC2Async;
+import org.teknux.api.Ec2Api;
+import org.teknux.api.Ec2AsyncApi;
+import org.teknux.service.IService;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of long-lived, thread-safe EC2 clients, one per region
+ */
+public interface IEc2ClientService extends IService {
+
+    /**
+     * @return regions enabled for this deployment, in display order
+     */
+    List<Regions> regions();
+
+    AmazonEC2 client(Regions region);
+
+    Ec2Api api(Regions region);
+
+    /**
+     * @return the same client as {@link #client(Regions)}, for calls completing on its own threads
+     */
+    AmazonEC2Async asyncClient(Regions region);
+
+    Ec2AsyncApi asyncApi(Regions region);
+
+    Map<Regions, Ec2ClientMetrics> metrics();
+}
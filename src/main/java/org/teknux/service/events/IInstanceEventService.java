@@ -0,0 +1,27 @@
+package org.teknux.service.events;
+
+import org.teknux.service.IService;
+
+/**
+ * Ingests EC2 instance state-change notifications (EventBridge events, possibly wrapped in SNS notifications) and
+ * applies them to the shared inventory, which then only needs a slow reconciliation poll. Events come from the HTTP
+ * webhook, an SQS queue the EventBridge rule targets, or files dropped in a local directory.
+ */
+public interface IInstanceEventService extends IService {
+
+    /**
+     * @param json a single event, a JSON array of events or an SNS notification wrapping an event
+     * @return count of state changes applied to the inventory
+     * @throws IllegalArgumentException if the payload is not a JSON event
+     */
+    int ingest(String json);
+
+    boolean isWebhookEnabled();
+
+    /**
+     * @return true if the token is the configured webhook token
+     */
+    boolean isWebhookAuthorized(String token);
+
+    InstanceEventMetrics metrics();
+}
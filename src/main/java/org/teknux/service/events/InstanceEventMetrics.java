@@ -0,0 +1,77 @@
+package org.teknux.service.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts of the ingested state-change events and how late they were received
+ */
+public class InstanceEventMetrics {
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong ignored = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+    private final AtomicLong totalDelayMs = new AtomicLong();
+    private final AtomicLong maxDelayMs = new AtomicLong();
+
+    void received(long delayMs) {
+        received.incrementAndGet();
+        totalDelayMs.addAndGet(Math.max(0, delayMs));
+        maxDelayMs.accumulateAndGet(delayMs, Math::max);
+    }
+
+    void applied() {
+        applied.incrementAndGet();
+    }
+
+    void ignored() {
+        ignored.incrementAndGet();
+    }
+
+    void malformed() {
+        malformed.incrementAndGet();
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return events which changed the state of a cached instance
+     */
+    public long getApplied() {
+        return applied.get();
+    }
+
+    /**
+     * @return events of other types, out of order, or about instances in a state already known
+     */
+    public long getIgnored() {
+        return ignored.get();
+    }
+
+    /**
+     * @return payloads which could not be read as events
+     */
+    public long getMalformed() {
+        return malformed.get();
+    }
+
+    /**
+     * @return mean time between the state change and the reception of its event
+     */
+    public double getMeanDelayMs() {
+        final long count = received.get();
+        return count == 0 ? 0 : (double) totalDelayMs.get() / count;
+    }
+
+    public long getMaxDelayMs() {
+        return maxDelayMs.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InstanceEventMetrics{received=%d, applied=%d, ignored=%d, malformed=%d, delay=%.0f/%dms}", getReceived(), getApplied(), getIgnored(),
+                getMalformed(), getMeanDelayMs(), getMaxDelayMs());
+    }
+}
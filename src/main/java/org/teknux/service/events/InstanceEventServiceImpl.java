@@ -0,0 +1,282 @@
+package org.teknux.service.events;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.util.json.Jackson;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.teknux.api.PropertiesCredentialProvider;
+import org.teknux.api.model.Ec2States;
+import org.teknux.service.IServiceManager;
+import org.teknux.service.ServiceException;
+import org.teknux.service.inventory.IInventoryService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class InstanceEventServiceImpl implements IInstanceEventService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InstanceEventServiceImpl.class);
+
+    public static final String WEBHOOK_TOKEN_PROPERTY = "events.webhookToken";
+    public static final String SQS_QUEUE_URL_PROPERTY = "events.sqsQueueUrl";
+    public static final String DROP_DIR_PROPERTY = "events.dropDir";
+
+    static final String STATE_CHANGE_DETAIL_TYPE = "EC2 Instance State-change Notification";
+
+    private static final long DROP_DIR_POLL_MS = 1000;
+    private static final long SQS_ERROR_PAUSE_MS = 5000;
+
+    private final InstanceEventMetrics metrics = new InstanceEventMetrics();
+
+    private IInventoryService inventoryService;
+    private byte[] webhookToken;
+    private AmazonSQS sqs;
+    private ExecutorService sqsPoller;
+    private ScheduledExecutorService dropDirPoller;
+    private volatile boolean running;
+
+    @Override
+    public int ingest(String json) {
+        final JsonNode root;
+        try {
+            root = Jackson.jsonNodeOf(json);
+        } catch (AmazonClientException e) {
+            metrics.malformed();
+            throw new IllegalArgumentException("Not a JSON event", e);
+        }
+        return ingest(root);
+    }
+
+    private int ingest(JsonNode node) {
+        if (node != null && node.isArray()) {
+            int applied = 0;
+            for (JsonNode event : node) {
+                applied += ingest(event);
+            }
+            return applied;
+        }
+        if (node == null || !node.isObject()) {
+            metrics.malformed();
+            throw new IllegalArgumentException("Not a JSON event");
+        }
+
+        //EventBridge rule targeting an SNS topic the queue is subscribed to
+        if ("Notification".equals(node.path("Type").asText()) && node.path("Message").isTextual()) {
+            return ingest(node.path("Message").asText());
+        }
+
+        if (!STATE_CHANGE_DETAIL_TYPE.equals(node.path("detail-type").asText())) {
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Event [{}] of type [{}] ignored", node.path("id").asText(), node.path("detail-type").asText());
+            }
+            metrics.ignored();
+            return 0;
+        }
+
+        final String instanceId = node.path("detail").path("instance-id").asText();
+        final Optional<Ec2States> state = Ec2States.fromName(node.path("detail").path("state").asText());
+        final Optional<Regions> region = region(node.path("region").asText());
+        final Optional<Instant> changedAt = time(node.path("time").asText());
+        if (instanceId.isEmpty() || !state.isPresent() || !region.isPresent() || !changedAt.isPresent()) {
+            metrics.malformed();
+            throw new IllegalArgumentException(String.format("Incomplete state-change event [%s]", node.path("id").asText()));
+        }
+
+        final long delayMs = Instant.now().toEpochMilli() - changedAt.get().toEpochMilli();
+        metrics.received(delayMs);
+        final boolean applied = inventoryService.applyStateChange(region.get(), instanceId, state.get(), LocalDateTime.ofInstant(changedAt.get(), ZoneId.systemDefault()));
+        if (applied) {
+            metrics.applied();
+        } else {
+            metrics.ignored();
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Instance [{}@{}] {} [{}], notified {}ms after the change", instanceId, region.get(), applied ? "now" : "already or unknown", state.get(), delayMs);
+        }
+        return applied ? 1 : 0;
+    }
+
+    private static Optional<Regions> region(String name) {
+        try {
+            return Optional.of(Regions.fromName(name));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<Instant> time(String text) {
+        try {
+            return Optional.of(Instant.parse(text));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean isWebhookEnabled() {
+        return running && webhookToken != null;
+    }
+
+    @Override
+    public boolean isWebhookAuthorized(String token) {
+        return isWebhookEnabled() && token != null && MessageDigest.isEqual(webhookToken, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public InstanceEventMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Long polls the queue, deleting the messages once ingested; messages which cannot be read are deleted too
+     * so they are not delivered again and again, the others come back after their visibility timeout
+     */
+    private void pollQueue(String queueUrl) {
+        final ReceiveMessageRequest request = new ReceiveMessageRequest(queueUrl).withWaitTimeSeconds(20).withMaxNumberOfMessages(10);
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                for (Message message : sqs.receiveMessage(request).getMessages()) {
+                    try {
+                        ingest(message.getBody());
+                    } catch (IllegalArgumentException e) {
+                        LOG.warn("Unreadable message [{}] deleted from the event queue: {}", message.getMessageId(), e.getMessage());
+                    }
+                    sqs.deleteMessage(queueUrl, message.getReceiptHandle());
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                LOG.error("Error while polling event queue [{}]", queueUrl, e);
+                try {
+                    Thread.sleep(SQS_ERROR_PAUSE_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Local stand-in of the queue: every *.json file of the directory is ingested then deleted, or renamed *.failed.
+     * Files should be written under another name then renamed, so that they are not read half written.
+     */
+    private void pollDropDir(Path directory) {
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.json")) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            LOG.error("Unable to list event directory [{}]", directory, e);
+            return;
+        }
+        Collections.sort(files);
+
+        for (Path file : files) {
+            try {
+                ingest(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                Files.delete(file);
+            } catch (IllegalArgumentException | IOException e) {
+                LOG.warn("Unable to ingest event file [{}]: {}", file, e.getMessage());
+                try {
+                    Files.move(file, file.resolveSibling(file.getFileName() + ".failed"), StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException moveError) {
+                    LOG.error("Unable to set event file [{}] aside", file, moveError);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return region of a queue URL such as https://sqs.eu-west-1.amazonaws.com/123456789012/ec2-events
+     */
+    private static Regions queueRegion(String queueUrl) throws ServiceException {
+        final String host = URI.create(queueUrl).getHost();
+        final String[] labels = host == null ? new String[0] : host.split("\\.");
+        if (labels.length < 2) {
+            throw new ServiceException(String.format("Unable to read the region of queue [%s]", queueUrl));
+        }
+        try {
+            return Regions.fromName(labels[1]);
+        } catch (IllegalArgumentException e) {
+            throw new ServiceException(String.format("Unknown region of queue [%s]", queueUrl), e);
+        }
+    }
+
+    @Override
+    public void init(IServiceManager serviceManager) {
+        inventoryService = serviceManager.getService(IInventoryService.class);
+    }
+
+    @Override
+    public void start() throws ServiceException {
+        final String token = System.getProperty(WEBHOOK_TOKEN_PROPERTY, "").trim();
+        webhookToken = token.isEmpty() ? null : token.getBytes(StandardCharsets.UTF_8);
+        final String queueUrl = System.getProperty(SQS_QUEUE_URL_PROPERTY, "").trim();
+        final String dropDir = System.getProperty(DROP_DIR_PROPERTY, "").trim();
+        running = true;
+
+        if (!queueUrl.isEmpty()) {
+            sqs = AmazonSQSClientBuilder.standard()
+                    .withCredentials(new PropertiesCredentialProvider())
+                    .withRegion(queueRegion(queueUrl))
+                    .build();
+            sqsPoller = Executors.newSingleThreadExecutor();
+            sqsPoller.execute(() -> pollQueue(queueUrl));
+            LOG.info("Polling instance events from queue [{}]", queueUrl);
+        }
+        if (!dropDir.isEmpty()) {
+            final Path directory = Paths.get(dropDir);
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new ServiceException(String.format("Unable to create event directory [%s]", directory), e);
+            }
+            dropDirPoller = Executors.newSingleThreadScheduledExecutor();
+            dropDirPoller.scheduleWithFixedDelay(() -> pollDropDir(directory), DROP_DIR_POLL_MS, DROP_DIR_POLL_MS, TimeUnit.MILLISECONDS);
+            LOG.info("Reading instance events dropped in [{}]", directory.toAbsolutePath());
+        }
+        if (webhookToken != null) {
+            LOG.info("Accepting instance events on the webhook");
+        }
+
+        inventoryService.setEventDriven(webhookToken != null || sqsPoller != null || dropDirPoller != null);
+    }
+
+    @Override
+    public void stop() throws ServiceException {
+        running = false;
+        inventoryService.setEventDriven(false);
+        if (dropDirPoller != null) {
+            dropDirPoller.shutdownNow();
+            dropDirPoller = null;
+        }
+        if (sqsPoller != null) {
+            sqsPoller.shutdownNow();
+            sqs.shutdown();
+            sqsPoller = null;
+            sqs = null;
+        }
+        LOG.debug("Instance event service stopped ({})", metrics);
+    }
+}
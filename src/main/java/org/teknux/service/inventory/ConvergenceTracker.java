@@ -0,0 +1,132 @@
+package org.teknux.service.inventory;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.ec2.model.Instance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.teknux.api.model.Ec2States;
+import org.teknux.api.model.InstanceQuery;
+import org.teknux.service.client.IEc2ClientService;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Describes instances just acted upon, and only them, until they reach a stable state. Polls start after a second
+ * and back off up to 15 seconds, each described instance being handed to the inventory as it goes.
+ */
+class ConvergenceTracker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConvergenceTracker.class);
+
+    private static final long FIRST_DELAY_MS = 1000;
+    private static final long MAX_DELAY_MS = 15 * 1000;
+    //EC2 accepts at most 200 values per filter
+    private static final int MAX_IDS_PER_DESCRIBE = 200;
+    private static final Set<Ec2States> STABLE_STATES = EnumSet.of(Ec2States.RUNNING, Ec2States.STOPPED, Ec2States.TERMINATED);
+
+    private final IEc2ClientService clientService;
+    private final ScheduledExecutorService scheduler;
+    private final InventoryMetrics metrics;
+    private final BiConsumer<Regions, Collection<Instance>> observer;
+    private final Duration timeout;
+
+    ConvergenceTracker(IEc2ClientService clientService, ScheduledExecutorService scheduler, InventoryMetrics metrics, BiConsumer<Regions, Collection<Instance>> observer,
+                       Duration timeout) {
+        this.clientService = clientService;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.observer = observer;
+        this.timeout = timeout;
+    }
+
+    CompletableFuture<Void> track(Regions region, Collection<String> instanceIds) {
+        final Tracking tracking = new Tracking(region, instanceIds);
+        if (instanceIds.isEmpty()) {
+            tracking.result.complete(null);
+        } else {
+            tracking.schedule(FIRST_DELAY_MS);
+        }
+        return tracking.result;
+    }
+
+    private class Tracking {
+
+        private final Regions region;
+        private final Set<String> pending;
+        private final long startedAt = System.nanoTime();
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private long delayMs = FIRST_DELAY_MS;
+
+        Tracking(Regions region, Collection<String> instanceIds) {
+            this.region = region;
+            this.pending = new LinkedHashSet<>(instanceIds);
+        }
+
+        void schedule(long delayMs) {
+            try {
+                scheduler.schedule(this::poll, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        void poll() {
+            if (System.nanoTime() - startedAt > timeout.toNanos()) {
+                LOG.warn("{} instance(s) of region [{}] still not stable after {}, no longer tracked: {}", pending.size(), region, timeout, pending);
+                result.completeExceptionally(new TimeoutException(String.format("Instances %s not stable after %s", pending, timeout)));
+                return;
+            }
+
+            final List<String> ids = new ArrayList<>(pending);
+            final List<CompletableFuture<Set<Instance>>> describes = new ArrayList<>();
+            try {
+                for (int from = 0; from < ids.size(); from += MAX_IDS_PER_DESCRIBE) {
+                    final List<String> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_DESCRIBE));
+                    describes.add(clientService.asyncApi(region).instancesAsync(InstanceQuery.all().withInstanceIds(chunk)));
+                    metrics.convergenceDescribed();
+                }
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+
+            CompletableFuture.allOf(describes.toArray(new CompletableFuture<?>[0])).whenComplete((done, e) -> {
+                if (e != null) {
+                    LOG.warn("Unable to describe tracked instances of region [{}], retrying", region, e);
+                    next();
+                    return;
+                }
+
+                final List<Instance> instances = new ArrayList<>();
+                describes.forEach(describe -> instances.addAll(describe.join()));
+                observer.accept(region, instances);
+
+                //instances no longer described are gone, nothing to wait for
+                final Set<String> unstable = new HashSet<>();
+                instances.stream()
+                        .filter(instance -> !Ec2States.fromCode(instance.getState().getCode()).filter(STABLE_STATES::contains).isPresent())
+                        .forEach(instance -> unstable.add(instance.getInstanceId()));
+                pending.retainAll(unstable);
+
+                if (pending.isEmpty()) {
+                    final long elapsed = System.nanoTime() - startedAt;
+                    metrics.record(InventoryMetrics.Stage.CONVERGENCE, elapsed);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("{} instance(s) of region [{}] stable after {}ms", ids.size(), region, TimeUnit.NANOSECONDS.toMillis(elapsed));
+                    }
+                    result.complete(null);
+                } else {
+                    next();
+                }
+            });
+        }
+
+        private void next() {
+            delayMs = Math.min(MAX_DELAY_MS, delayMs * 2);
+            schedule(delayMs);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.teknux.service.inventory;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.ec2.model.InstanceStateChange;
+import org.teknux.api.model.Ec2States;
+import org.teknux.service.IService;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Server-side cache of region inventories, shared by all UIs
+ */
+public interface IInventoryService extends IService {
+
+    /**
+     * Returns the cached snapshot of the region, waiting for the in-flight (or a new) fetch if none is recent enough
+     */
+    InventorySnapshot snapshot(Regions region);
+
+    /**
+     * Returns the cached snapshot of the region without ever fetching it
+     */
+    Optional<InventorySnapshot> cached(Regions region);
+
+    /**
+     * Forces a fetch of the region; concurrent callers share the same in-flight fetch
+     */
+    CompletableFuture<InventorySnapshot> refresh(Regions region);
+
+    /**
+     * Marks the region as in use so it is kept up to date by the periodic refresh
+     */
+    void watch(Regions region);
+
+    void unwatch(Regions region);
+
+    /**
+     * Applies a state change notified by EC2 to the cached snapshot of the region, without describing it again.
+     * The change is also applied over the result of a fetch started before it was received.
+     *
+     * @param changedAt when EC2 changed the state, changes older than the last one applied to the instance are ignored
+     * @return false if the change was ignored, or if the instance is not known yet (a fetch of the region is then started)
+     */
+    boolean applyStateChange(Regions region, String instanceId, Ec2States state, LocalDateTime changedAt);
+
+    /**
+     * Follows instances just started or stopped: their new state is applied at once, then only those instances are
+     * described, with a short backoff, until they reach a stable state (running, stopped or terminated)
+     *
+     * @return future completed once all the instances are stable, or exceptionally when giving up
+     */
+    CompletableFuture<Void> track(Regions region, Collection<InstanceStateChange> stateChanges);
+
+    /**
+     * Once state changes are notified, watched regions are only described again every reconciliation interval
+     */
+    void setEventDriven(boolean eventDriven);
+
+    void addListener(InventoryListener listener);
+
+    void removeListener(InventoryListener listener);
+
+    InventoryMetrics metrics();
+}
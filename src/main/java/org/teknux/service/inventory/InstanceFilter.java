@@ -0,0 +1,77 @@
+package org.teknux.service.inventory;
+
+import org.teknux.api.model.Ec2States;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable filter evaluated against an {@link InstanceIndex}, null criteria match everything
+ */
+public class InstanceFilter {
+
+    public static final InstanceFilter NONE = new InstanceFilter(null, null, null, null);
+
+    private final String nameContains;
+    private final Set<Ec2States> states;
+    private final Boolean scheduled;
+    private final Boolean elasticIp;
+
+    public InstanceFilter(String nameContains, Set<Ec2States> states, Boolean scheduled, Boolean elasticIp) {
+        this.nameContains = nameContains == null || nameContains.trim().isEmpty() ? null : nameContains.trim().toLowerCase();
+        this.states = states == null || states.isEmpty() ? null : Collections.unmodifiableSet(EnumSet.copyOf(states));
+        this.scheduled = scheduled;
+        this.elasticIp = elasticIp;
+    }
+
+    /**
+     * @return lower-cased name substring
+     */
+    public String getNameContains() {
+        return nameContains;
+    }
+
+    public Set<Ec2States> getStates() {
+        return states;
+    }
+
+    public Boolean getScheduled() {
+        return scheduled;
+    }
+
+    public Boolean getElasticIp() {
+        return elasticIp;
+    }
+
+    public boolean isEmpty() {
+        return nameContains == null && states == null && scheduled == null && elasticIp == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        InstanceFilter that = (InstanceFilter) o;
+
+        if (nameContains != null ? !nameContains.equals(that.nameContains) : that.nameContains != null) return false;
+        if (states != null ? !states.equals(that.states) : that.states != null) return false;
+        if (scheduled != null ? !scheduled.equals(that.scheduled) : that.scheduled != null) return false;
+        return elasticIp != null ? elasticIp.equals(that.elasticIp) : that.elasticIp == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = nameContains != null ? nameContains.hashCode() : 0;
+        result = 31 * result + (states != null ? states.hashCode() : 0);
+        result = 31 * result + (scheduled != null ? scheduled.hashCode() : 0);
+        result = 31 * result + (elasticIp != null ? elasticIp.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InstanceFilter{name=%s, states=%s, scheduled=%s, elasticIp=%s}", nameContains, states, scheduled, elasticIp);
+    }
+}
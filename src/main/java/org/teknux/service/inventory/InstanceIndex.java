@@ -0,0 +1,207 @@
+package org.teknux.service.inventory;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.ec2.model.Address;
+import com.amazonaws.services.ec2.model.Instance;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Immutable, query-able index of the instance rows of a snapshot.
+ * Sorted orders are computed once per sort criteria and shared by every query (and every UI) on the snapshot.
+ */
+public class InstanceIndex {
+
+    public enum SortKey {
+        NAME, STATE, ID, PUBLIC_IP, LAUNCH_TIME, REGION
+    }
+
+    private final InstanceRow[] rows;
+    private final String[] lowerNames;
+    private final Map<String, Integer> positions;
+
+    private final Map<List<Sort>, int[]> sortedOrders = new ConcurrentHashMap<>();
+
+    public InstanceIndex(Regions region, Collection<Instance> instances, Collection<Address> elasticIPs) {
+        final Set<String> elasticPublicIps = new HashSet<>(elasticIPs.size() * 2);
+        elasticIPs.forEach(address -> elasticPublicIps.add(address.getPublicIp()));
+
+        final int size = instances.size();
+        this.rows = new InstanceRow[size];
+        this.lowerNames = new String[size];
+        this.positions = new HashMap<>(size * 2);
+
+        int i = 0;
+        for (Instance instance : instances) {
+            rows[i] = InstanceRow.of(region, instance, elasticPublicIps.contains(instance.getPublicIpAddress()));
+            lowerNames[i] = rows[i].getName().toLowerCase();
+            positions.put(instance.getInstanceId(), i);
+            i++;
+        }
+    }
+
+    private InstanceIndex(InstanceRow[] rows, String[] lowerNames) {
+        this.rows = rows;
+        this.lowerNames = lowerNames;
+        this.positions = new HashMap<>(rows.length * 2);
+        for (int i = 0; i < rows.length; i++) {
+            positions.put(rows[i].getInstanceId(), i);
+        }
+    }
+
+    /**
+     * Merges the indexes of several regions, reusing their rows
+     */
+    public static InstanceIndex merge(Collection<InstanceIndex> indexes) {
+        if (indexes.size() == 1) {
+            return indexes.iterator().next();
+        }
+
+        final int size = indexes.stream().mapToInt(InstanceIndex::size).sum();
+        final InstanceRow[] rows = new InstanceRow[size];
+        final String[] lowerNames = new String[size];
+        int offset = 0;
+        for (InstanceIndex index : indexes) {
+            System.arraycopy(index.rows, 0, rows, offset, index.rows.length);
+            System.arraycopy(index.lowerNames, 0, lowerNames, offset, index.lowerNames.length);
+            offset += index.rows.length;
+        }
+        return new InstanceIndex(rows, lowerNames);
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    public InstanceRow get(int position) {
+        return rows[position];
+    }
+
+    public InstanceRow find(String instanceId) {
+        final Integer position = positions.get(instanceId);
+        return position == null ? null : rows[position];
+    }
+
+    /**
+     * Selects the positions of the instances matching the filter, in the requested order
+     *
+     * @param scheduled tells whether an instance id has a plan, only evaluated when the filter asks for it
+     */
+    public int[] select(InstanceFilter filter, List<Sort> sorts, Predicate<String> scheduled) {
+        final int[] order = sortedOrder(sorts);
+        if (filter == null || filter.isEmpty()) {
+            return order;
+        }
+
+        final int[] matches = new int[order.length];
+        int count = 0;
+        for (int position : order) {
+            if (matches(position, filter, scheduled)) {
+                matches[count++] = position;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    private boolean matches(int position, InstanceFilter filter, Predicate<String> scheduled) {
+        if (filter.getNameContains() != null && !lowerNames[position].contains(filter.getNameContains())) {
+            return false;
+        }
+        if (filter.getStates() != null && !filter.getStates().contains(rows[position].getState())) {
+            return false;
+        }
+        if (filter.getElasticIp() != null && filter.getElasticIp() != rows[position].isElastic()) {
+            return false;
+        }
+        if (filter.getScheduled() != null && filter.getScheduled() != scheduled.test(rows[position].getInstanceId())) {
+            return false;
+        }
+        return true;
+    }
+
+    private int[] sortedOrder(List<Sort> sorts) {
+        final List<Sort> key = sorts.isEmpty() ? Collections.singletonList(new Sort(SortKey.NAME, true)) : sorts;
+        return sortedOrders.computeIfAbsent(key, this::sort);
+    }
+
+    private int[] sort(List<Sort> sorts) {
+        Comparator<Integer> comparator = null;
+        for (Sort sort : sorts) {
+            Comparator<Integer> next = comparator(sort.getKey());
+            if (!sort.isAscending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        comparator = comparator.thenComparing(comparator(SortKey.ID));
+
+        final Integer[] boxed = new Integer[rows.length];
+        for (int i = 0; i < boxed.length; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, comparator);
+
+        final int[] order = new int[boxed.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = boxed[i];
+        }
+        return order;
+    }
+
+    private Comparator<Integer> comparator(SortKey key) {
+        switch (key) {
+            case NAME:
+                return Comparator.comparing(position -> lowerNames[position]);
+            case STATE:
+                return Comparator.comparing(position -> rows[position].getState());
+            case PUBLIC_IP:
+                return Comparator.comparing(position -> rows[position].getPublicIp(), Comparator.nullsFirst(Comparator.naturalOrder()));
+            case LAUNCH_TIME:
+                return Comparator.comparing(position -> rows[position].getLaunchTime(), Comparator.nullsFirst(Comparator.naturalOrder()));
+            case REGION:
+                return Comparator.comparing(position -> rows[position].getRegion().getName());
+            case ID:
+            default:
+                return Comparator.comparing(position -> rows[position].getInstanceId());
+        }
+    }
+
+    public static class Sort {
+
+        private final SortKey key;
+        private final boolean ascending;
+
+        public Sort(SortKey key, boolean ascending) {
+            this.key = key;
+            this.ascending = ascending;
+        }
+
+        public SortKey getKey() {
+            return key;
+        }
+
+        public boolean isAscending() {
+            return ascending;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Sort sort = (Sort) o;
+
+            if (ascending != sort.ascending) return false;
+            return key == sort.key;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = key != null ? key.hashCode() : 0;
+            result = 31 * result + (ascending ? 1 : 0);
+            return result;
+        }
+    }
+}
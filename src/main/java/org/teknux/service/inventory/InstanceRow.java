@@ -0,0 +1,151 @@
+package org.teknux.service.inventory;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.Tag;
+import org.teknux.api.model.Ec2States;
+import org.teknux.service.automation.ISchedulerService;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Immutable, display ready projection of an instance, computed once per snapshot
+ */
+public class InstanceRow {
+
+    private final Regions region;
+    private final String instanceId;
+    private final String name;
+    private final Ec2States state;
+    private final String stateName;
+    private final String publicIp;
+    private final boolean elastic;
+    private final LocalDateTime launchTime;
+    private final ISchedulerService.Schedule startSchedule;
+    private final ISchedulerService.Schedule stopSchedule;
+
+    private InstanceRow(Regions region, String instanceId, String name, Ec2States state, String stateName, String publicIp, boolean elastic, LocalDateTime launchTime, ISchedulerService.Schedule startSchedule, ISchedulerService.Schedule stopSchedule) {
+        this.region = region;
+        this.instanceId = instanceId;
+        this.name = name;
+        this.state = state;
+        this.stateName = stateName;
+        this.publicIp = publicIp;
+        this.elastic = elastic;
+        this.launchTime = launchTime;
+        this.startSchedule = startSchedule;
+        this.stopSchedule = stopSchedule;
+    }
+
+    public static InstanceRow of(Regions region, Instance instance, boolean elastic) {
+        final String publicIp = instance.getPublicIpAddress() == null || instance.getPublicIpAddress().isEmpty() ? null : instance.getPublicIpAddress();
+        final LocalDateTime launchTime = instance.getLaunchTime() == null ? null : LocalDateTime.ofInstant(instance.getLaunchTime().toInstant(), ZoneId.systemDefault());
+
+        return new InstanceRow(
+                region,
+                instance.getInstanceId(),
+                nameOf(instance),
+                Ec2States.fromCode(instance.getState().getCode()).orElse(Ec2States.UNKNOWN),
+                instance.getState().getName(),
+                publicIp,
+                publicIp != null && elastic,
+                launchTime,
+                null,
+                null);
+    }
+
+    private static String nameOf(Instance instance) {
+        for (Tag tag : instance.getTags()) {
+            if ("name".equalsIgnoreCase(tag.getKey())) {
+                return tag.getValue() == null ? "" : tag.getValue();
+            }
+        }
+        return "";
+    }
+
+    /**
+     * @return a copy of this row carrying the given plans, or this row if they are the same
+     */
+    public InstanceRow withSchedules(ISchedulerService.Schedule startSchedule, ISchedulerService.Schedule stopSchedule) {
+        if (startSchedule == this.startSchedule && stopSchedule == this.stopSchedule) {
+            return this;
+        }
+        return new InstanceRow(region, instanceId, name, state, stateName, publicIp, elastic, launchTime, startSchedule, stopSchedule);
+    }
+
+    public Regions getRegion() {
+        return region;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Ec2States getState() {
+        return state;
+    }
+
+    /**
+     * @return state name as reported by EC2
+     */
+    public String getStateName() {
+        return stateName;
+    }
+
+    public String getPublicIp() {
+        return publicIp;
+    }
+
+    public boolean isElastic() {
+        return elastic;
+    }
+
+    public LocalDateTime getLaunchTime() {
+        return launchTime;
+    }
+
+    public ISchedulerService.Schedule getStartSchedule() {
+        return startSchedule;
+    }
+
+    public ISchedulerService.Schedule getStopSchedule() {
+        return stopSchedule;
+    }
+
+    public boolean hasSchedule() {
+        return startSchedule != null || stopSchedule != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        InstanceRow that = (InstanceRow) o;
+
+        if (elastic != that.elastic) return false;
+        if (region != that.region) return false;
+        if (!instanceId.equals(that.instanceId)) return false;
+        if (!name.equals(that.name)) return false;
+        if (state != that.state) return false;
+        if (publicIp != null ? !publicIp.equals(that.publicIp) : that.publicIp != null) return false;
+        if (launchTime != null ? !launchTime.equals(that.launchTime) : that.launchTime != null) return false;
+        if (startSchedule != that.startSchedule) return false;
+        return stopSchedule == that.stopSchedule;
+    }
+
+    @Override
+    public int hashCode() {
+        return instanceId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InstanceRow{region=%s, id=%s, name=%s, state=%s}", region, instanceId, name, state);
+    }
+}
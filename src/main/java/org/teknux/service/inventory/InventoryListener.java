@@ -0,0 +1,13 @@
+package org.teknux.service.inventory;
+
+public interface InventoryListener {
+
+    /**
+     * Called from the fetching thread each time a region inventory has been refreshed, or from the thread applying
+     * a notified state change, one region at a time
+     *
+     * @param previous previous snapshot of the region, null on first fetch
+     * @param current  newly fetched snapshot
+     */
+    void inventoryUpdated(InventorySnapshot previous, InventorySnapshot current);
+}
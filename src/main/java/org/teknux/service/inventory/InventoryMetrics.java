@@ -0,0 +1,137 @@
+package org.teknux.service.inventory;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency of the inventory fetch pipeline, stage by stage
+ */
+public class InventoryMetrics {
+
+    public enum Stage {
+        /**
+         * DescribeInstances, all pages
+         */
+        INSTANCES,
+        /**
+         * DescribeAddresses, skipped while the previous elastic IPs are recent enough
+         */
+        ELASTIC_IPS,
+        /**
+         * Building the snapshot and its instance index once both calls are back
+         */
+        MERGE,
+        /**
+         * Whole fetch, the describe calls running concurrently
+         */
+        TOTAL,
+        /**
+         * Instances just started or stopped reaching a stable state, described alone until then
+         */
+        CONVERGENCE
+    }
+
+    private final Map<Stage, StageMetrics> stages = new EnumMap<>(Stage.class);
+    private final AtomicLong elasticIPsReused = new AtomicLong();
+    private final AtomicLong convergenceDescribes = new AtomicLong();
+
+    InventoryMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new StageMetrics(stage));
+        }
+    }
+
+    void record(Stage stage, long nanos) {
+        stages.get(stage).record(nanos);
+    }
+
+    void elasticIPsReused() {
+        elasticIPsReused.incrementAndGet();
+    }
+
+    void convergenceDescribed() {
+        convergenceDescribes.incrementAndGet();
+    }
+
+    public StageMetrics getStage(Stage stage) {
+        return stages.get(stage);
+    }
+
+    public Map<Stage, StageMetrics> getStages() {
+        return Collections.unmodifiableMap(stages);
+    }
+
+    /**
+     * @return fetches which reused the elastic IPs of the previous snapshot instead of describing them
+     */
+    public long getElasticIPsReused() {
+        return elasticIPsReused.get();
+    }
+
+    /**
+     * @return DescribeInstances calls limited to tracked instances
+     */
+    public long getConvergenceDescribes() {
+        return convergenceDescribes.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InventoryMetrics{stages=%s, elasticIPsReused=%d, convergenceDescribes=%d}", stages.values(), getElasticIPsReused(), getConvergenceDescribes());
+    }
+
+    /**
+     * Count, last, mean and max duration of one stage
+     */
+    public static class StageMetrics {
+
+        private final Stage stage;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong lastNanos = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        StageMetrics(Stage stage) {
+            this.stage = stage;
+        }
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            lastNanos.set(nanos);
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public double getLastMs() {
+            return lastNanos.get() / 1e6;
+        }
+
+        public double getTotalMs() {
+            return totalNanos.get() / 1e6;
+        }
+
+        public double getMeanMs() {
+            final long n = count.get();
+            return n == 0 ? 0 : totalNanos.get() / 1e6 / n;
+        }
+
+        public double getMaxMs() {
+            return maxNanos.get() / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{count=%d, last=%.1fms, mean=%.1fms, max=%.1fms}", stage, getCount(), getLastMs(), getMeanMs(), getMaxMs());
+        }
+    }
+}
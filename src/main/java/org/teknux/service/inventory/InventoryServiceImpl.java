@@ -0,0 +1,405 @@
+package org.teknux.service.inventory;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.ec2.model.Address;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.amazonaws.services.ec2.model.InstanceStateChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.teknux.api.Ec2AsyncApi;
+import org.teknux.api.model.Ec2States;
+import org.teknux.api.model.InstanceQuery;
+import org.teknux.service.IServiceManager;
+import org.teknux.service.ServiceException;
+import org.teknux.service.client.IEc2ClientService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.UnaryOperator;
+
+public class InventoryServiceImpl implements IInventoryService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InventoryServiceImpl.class);
+
+    public static final String REFRESH_INTERVAL_PROPERTY = "inventory.refreshIntervalSec";
+    public static final String PAGE_SIZE_PROPERTY = "inventory.pageSize";
+    public static final String HIDE_TERMINATED_PROPERTY = "inventory.hideTerminated";
+    public static final String FETCH_TIMEOUT_PROPERTY = "inventory.fetchTimeoutSec";
+    public static final String ELASTIC_IP_REFRESH_INTERVAL_PROPERTY = "inventory.elasticIpRefreshIntervalSec";
+    public static final String RECONCILE_INTERVAL_PROPERTY = "inventory.reconcileIntervalSec";
+    public static final String CONVERGENCE_TIMEOUT_PROPERTY = "inventory.convergenceTimeoutSec";
+
+    private final Map<Regions, InventorySnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<Regions, CompletableFuture<InventorySnapshot>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Regions, Integer> watchers = new ConcurrentHashMap<>();
+    private final List<InventoryListener> listeners = new CopyOnWriteArrayList<>();
+    private final InventoryMetrics metrics = new InventoryMetrics();
+    private final Map<Regions, Object> regionLocks = new ConcurrentHashMap<>();
+    //latest state change received per instance, guarded by the region lock
+    private final Map<Regions, Map<String, StateChange>> stateChanges = new ConcurrentHashMap<>();
+
+    private IEc2ClientService clientService;
+    private ScheduledExecutorService refreshScheduler;
+    private Duration refreshInterval;
+    private Duration fetchTimeout;
+    private Duration elasticIPRefreshInterval;
+    private Duration reconcileInterval;
+    private InstanceQuery instanceQuery;
+    private volatile boolean eventDriven;
+    private ConvergenceTracker convergenceTracker;
+
+    @Override
+    public InventorySnapshot snapshot(Regions region) {
+        CompletableFuture<InventorySnapshot> pending = inFlight.get(region);
+        if (pending == null) {
+            final InventorySnapshot snapshot = snapshots.get(region);
+            if (snapshot != null && !snapshot.isOlderThan(maxAge())) {
+                return snapshot;
+            }
+            pending = refresh(region);
+        }
+        return pending.join();
+    }
+
+    @Override
+    public Optional<InventorySnapshot> cached(Regions region) {
+        return Optional.ofNullable(snapshots.get(region));
+    }
+
+    @Override
+    public CompletableFuture<InventorySnapshot> refresh(Regions region) {
+        final CompletableFuture<InventorySnapshot> fetch = new CompletableFuture<>();
+        final CompletableFuture<InventorySnapshot> pending = inFlight.putIfAbsent(region, fetch);
+        if (pending != null) {
+            LOG.trace("Joining in-flight inventory fetch of region [{}]", region);
+            return pending;
+        }
+
+        fetch(region).whenComplete((snapshot, e) -> {
+            if (e != null) {
+                final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                LOG.error("Error while fetching inventory of region [{}]", region, cause);
+                inFlight.remove(region, fetch);
+                fetch.completeExceptionally(cause);
+                return;
+            }
+            final InventorySnapshot current;
+            synchronized (regionLock(region)) {
+                if (fetch.isDone()) {
+                    LOG.debug("Inventory of region [{}] fetched after its timeout, dropped", region);
+                    return;
+                }
+                current = withStateChangesSince(region, snapshot);
+                final InventorySnapshot previous = snapshots.put(region, current);
+                inFlight.remove(region, fetch);
+                notifyListeners(previous, current);
+            }
+            fetch.complete(current);
+        });
+
+        //waiters of a slow region must not wait forever, the other regions still come in
+        final ScheduledFuture<?> timeout = refreshScheduler.schedule(() -> {
+            if (fetch.completeExceptionally(new TimeoutException(String.format("Inventory fetch of region [%s] timed out after %s", region, fetchTimeout)))) {
+                LOG.warn("Inventory fetch of region [{}] timed out after {}", region, fetchTimeout);
+                inFlight.remove(region, fetch);
+            }
+        }, fetchTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        fetch.whenComplete((snapshot, e) -> timeout.cancel(false));
+        return fetch;
+    }
+
+    /**
+     * Describes the instances and the elastic IPs of the region concurrently, without holding a thread while waiting,
+     * then builds the snapshot and its index. Addresses rarely change, the ones of the previous snapshot are reused
+     * until they are older than the elastic IP refresh interval.
+     */
+    private CompletableFuture<InventorySnapshot> fetch(Regions region) {
+        LOG.trace("Fetching inventory of region [{}]...", region);
+        final Ec2AsyncApi api;
+        try {
+            api = clientService.asyncApi(region);
+        } catch (RuntimeException e) {
+            final CompletableFuture<InventorySnapshot> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        final long startedAt = System.nanoTime();
+        final LocalDateTime fetchedAt = LocalDateTime.now();
+        final Set<Instance> instances = new HashSet<>();
+        final CompletableFuture<Void> instancesFetched = api.instancesAsync(instanceQuery, page -> {
+            instances.addAll(page);
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("-- Page of {} instance(s) received for region [{}]", page.size(), region);
+            }
+        }).thenRun(() -> metrics.record(InventoryMetrics.Stage.INSTANCES, System.nanoTime() - startedAt));
+
+        final InventorySnapshot previous = snapshots.get(region);
+        final boolean reuseElasticIPs = previous != null && previous.getElasticIPsFetchedAt().plus(elasticIPRefreshInterval).isAfter(fetchedAt);
+        final CompletableFuture<List<Address>> elasticIPsFetched;
+        if (reuseElasticIPs) {
+            metrics.elasticIPsReused();
+            elasticIPsFetched = CompletableFuture.completedFuture(previous.getElasticIPs());
+        } else {
+            elasticIPsFetched = api.elasticIPsAsync().whenComplete((elasticIPs, e) -> {
+                if (e == null) {
+                    metrics.record(InventoryMetrics.Stage.ELASTIC_IPS, System.nanoTime() - startedAt);
+                }
+            });
+        }
+
+        return instancesFetched.thenCombine(elasticIPsFetched, (done, elasticIPs) -> {
+            final long mergeStartedAt = System.nanoTime();
+            final InventorySnapshot snapshot = new InventorySnapshot(region, instances, elasticIPs, fetchedAt, reuseElasticIPs ? previous.getElasticIPsFetchedAt() : fetchedAt);
+            snapshot.getIndex();
+            final long completedAt = System.nanoTime();
+            metrics.record(InventoryMetrics.Stage.MERGE, completedAt - mergeStartedAt);
+            metrics.record(InventoryMetrics.Stage.TOTAL, completedAt - startedAt);
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Inventory of region [{}] fetched in {}ms: {} instance(s), {} elastic IP(s){}", region, TimeUnit.NANOSECONDS.toMillis(completedAt - startedAt),
+                        instances.size(), elasticIPs.size(), reuseElasticIPs ? " (reused)" : "");
+            }
+            return snapshot;
+        });
+    }
+
+    @Override
+    public boolean applyStateChange(Regions region, String instanceId, Ec2States state, LocalDateTime changedAt) {
+        return apply(region, Collections.singletonList(new StateChange(instanceId, state, null, changedAt, LocalDateTime.now())));
+    }
+
+    @Override
+    public CompletableFuture<Void> track(Regions region, Collection<InstanceStateChange> stateChanges) {
+        final LocalDateTime now = LocalDateTime.now();
+        final List<StateChange> changes = new ArrayList<>(stateChanges.size());
+        stateChanges.forEach(stateChange -> Ec2States.fromCode(stateChange.getCurrentState().getCode())
+                .ifPresent(state -> changes.add(new StateChange(stateChange.getInstanceId(), state, null, now, now))));
+        apply(region, changes);
+
+        final Set<String> instanceIds = new LinkedHashSet<>();
+        stateChanges.forEach(stateChange -> instanceIds.add(stateChange.getInstanceId()));
+        return convergenceTracker.track(region, instanceIds);
+    }
+
+    /**
+     * Applies instances described by the convergence tracker, which replace the cached ones as a whole
+     */
+    private void observed(Regions region, Collection<Instance> instances) {
+        final LocalDateTime now = LocalDateTime.now();
+        final List<StateChange> changes = new ArrayList<>(instances.size());
+        instances.forEach(instance -> Ec2States.fromCode(instance.getState().getCode())
+                .ifPresent(state -> changes.add(new StateChange(instance.getInstanceId(), state, instance, now, now))));
+        apply(region, changes);
+    }
+
+    /**
+     * Applies the changes to the cached snapshot of the region in one go, remembering them until a fetch started after them completes
+     *
+     * @return true if the snapshot changed
+     */
+    private boolean apply(Regions region, List<StateChange> changes) {
+        final InventorySnapshot previous;
+        final List<StateChange> accepted = new ArrayList<>(changes.size());
+        synchronized (regionLock(region)) {
+            final Map<String, StateChange> known = stateChanges.computeIfAbsent(region, key -> new HashMap<>());
+            for (StateChange change : changes) {
+                final StateChange last = known.get(change.instanceId);
+                if (last != null && last.changedAt.isAfter(change.changedAt)) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("State [{}] of [{}@{}] at {} older than [{}] at {}, ignored", change.state, change.instanceId, region, change.changedAt, last.state, last.changedAt);
+                    }
+                    continue;
+                }
+                known.put(change.instanceId, change);
+                accepted.add(change);
+            }
+
+            previous = snapshots.get(region);
+            if (previous == null) {
+                //nobody looks at the region, or its first fetch is in flight and will get the changes applied
+                return false;
+            }
+            final InventorySnapshot current = previous.withUpdates(updatesOf(accepted));
+            if (current != previous) {
+                snapshots.put(region, current);
+                notifyListeners(previous, current);
+                return true;
+            }
+        }
+
+        if (accepted.stream().anyMatch(change -> !previous.contains(change.instanceId))) {
+            LOG.debug("State change of instance(s) unknown in region [{}], fetching it", region);
+            refresh(region);
+        }
+        return false;
+    }
+
+    /**
+     * Applies over a fetched snapshot the state changes received since the fetch started, and forgets the older ones
+     * which the fetch already describes
+     */
+    private InventorySnapshot withStateChangesSince(Regions region, InventorySnapshot fetched) {
+        final Map<String, StateChange> changes = stateChanges.get(region);
+        if (changes == null) {
+            return fetched;
+        }
+
+        changes.values().removeIf(change -> change.receivedAt.isBefore(fetched.getFetchedAt()));
+        return changes.isEmpty() ? fetched : fetched.withUpdates(updatesOf(changes.values()));
+    }
+
+    private static Map<String, UnaryOperator<Instance>> updatesOf(Collection<StateChange> changes) {
+        final Map<String, UnaryOperator<Instance>> updates = new HashMap<>(changes.size() * 2);
+        changes.forEach(change -> updates.put(change.instanceId, change::applyTo));
+        return updates;
+    }
+
+    private Object regionLock(Regions region) {
+        return regionLocks.computeIfAbsent(region, key -> new Object());
+    }
+
+    @Override
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+        if (eventDriven) {
+            LOG.info("Inventory event driven, reconciled every {}", reconcileInterval);
+        } else {
+            LOG.info("Inventory refreshed every {}", refreshInterval);
+        }
+    }
+
+    /**
+     * @return age after which a snapshot is described again
+     */
+    private Duration maxAge() {
+        return eventDriven ? reconcileInterval : refreshInterval;
+    }
+
+    private void notifyListeners(InventorySnapshot previous, InventorySnapshot current) {
+        for (InventoryListener listener : listeners) {
+            try {
+                listener.inventoryUpdated(previous, current);
+            } catch (Exception e) {
+                LOG.error("Inventory listener [{}] failed", listener, e);
+            }
+        }
+    }
+
+    @Override
+    public InventoryMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public void addListener(InventoryListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(InventoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void watch(Regions region) {
+        watchers.merge(region, 1, Integer::sum);
+    }
+
+    @Override
+    public void unwatch(Regions region) {
+        watchers.computeIfPresent(region, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void refreshWatchedRegions() {
+        watchers.keySet().forEach(region -> {
+            final InventorySnapshot snapshot = snapshots.get(region);
+            if (!eventDriven || snapshot == null || snapshot.isOlderThan(reconcileInterval)) {
+                refresh(region);
+            }
+        });
+
+        //drop snapshots nobody looked at for a while, they would be stale anyway
+        snapshots.entrySet().removeIf(entry -> !watchers.containsKey(entry.getKey()) && entry.getValue().isOlderThan(refreshInterval.multipliedBy(2)));
+    }
+
+    private static InstanceQuery createInstanceQuery() {
+        final InstanceQuery query = InstanceQuery.all().withPageSize(Integer.getInteger(PAGE_SIZE_PROPERTY, InstanceQuery.MAX_PAGE_SIZE));
+        if (Boolean.getBoolean(HIDE_TERMINATED_PROPERTY)) {
+            final Set<Ec2States> states = EnumSet.allOf(Ec2States.class);
+            states.remove(Ec2States.UNKNOWN);
+            states.remove(Ec2States.TERMINATED);
+            query.withStates(states);
+        }
+        return query;
+    }
+
+    @Override
+    public void init(IServiceManager serviceManager) {
+        clientService = serviceManager.getService(IEc2ClientService.class);
+    }
+
+    @Override
+    public void start() throws ServiceException {
+        refreshInterval = Duration.ofSeconds(Long.getLong(REFRESH_INTERVAL_PROPERTY, 30L));
+        fetchTimeout = Duration.ofSeconds(Long.getLong(FETCH_TIMEOUT_PROPERTY, 60L));
+        elasticIPRefreshInterval = Duration.ofSeconds(Long.getLong(ELASTIC_IP_REFRESH_INTERVAL_PROPERTY, 300L));
+        reconcileInterval = Duration.ofSeconds(Long.getLong(RECONCILE_INTERVAL_PROPERTY, 300L));
+        instanceQuery = createInstanceQuery();
+        refreshScheduler = Executors.newSingleThreadScheduledExecutor();
+        convergenceTracker = new ConvergenceTracker(clientService, refreshScheduler, metrics, this::observed,
+                Duration.ofSeconds(Long.getLong(CONVERGENCE_TIMEOUT_PROPERTY, 600L)));
+        refreshScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refreshWatchedRegions();
+            } catch (Exception e) {
+                LOG.error("Error while refreshing watched regions", e);
+            }
+        }, refreshInterval.getSeconds(), refreshInterval.getSeconds(), TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void stop() throws ServiceException {
+        refreshScheduler.shutdownNow();
+        LOG.debug("Inventory service stopped ({})", metrics);
+        inFlight.values().forEach(fetch -> fetch.cancel(true));
+        inFlight.clear();
+        stateChanges.clear();
+        snapshots.clear();
+        watchers.clear();
+        listeners.clear();
+    }
+
+    /**
+     * New state of an instance, notified or described as a whole
+     */
+    private static final class StateChange {
+
+        final String instanceId;
+        final Ec2States state;
+        final Instance instance;
+        final LocalDateTime changedAt;
+        final LocalDateTime receivedAt;
+
+        StateChange(String instanceId, Ec2States state, Instance instance, LocalDateTime changedAt, LocalDateTime receivedAt) {
+            this.instanceId = instanceId;
+            this.state = state;
+            this.instance = instance;
+            this.changedAt = changedAt;
+            this.receivedAt = receivedAt;
+        }
+
+        Instance applyTo(Instance current) {
+            if (instance != null) {
+                return instance;
+            }
+            if (current.getState() != null && state.getName().equals(current.getState().getName())) {
+                return current;
+            }
+            return current.clone().withState(new InstanceState().withCode(state.getCode()).withName(state.getName()));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.teknux.service.inventory;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.ec2.model.Address;
+import com.amazonaws.services.ec2.model.Instance;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Immutable view of the instances and elastic IPs of one region at a given time
+ */
+public class InventorySnapshot {
+
+    private final Regions region;
+    private final Set<Instance> instances;
+    private final List<Address> elasticIPs;
+    private final LocalDateTime fetchedAt;
+    private final LocalDateTime elasticIPsFetchedAt;
+
+    private volatile InstanceIndex index;
+
+    public InventorySnapshot(Regions region, Set<Instance> instances, List<Address> elasticIPs, LocalDateTime fetchedAt) {
+        this(region, instances, elasticIPs, fetchedAt, fetchedAt);
+    }
+
+    /**
+     * @param elasticIPsFetchedAt when the elastic IPs were described, earlier than the instances when carried over from a previous snapshot
+     */
+    public InventorySnapshot(Regions region, Set<Instance> instances, List<Address> elasticIPs, LocalDateTime fetchedAt, LocalDateTime elasticIPsFetchedAt) {
+        this.region = region;
+        this.instances = Collections.unmodifiableSet(instances);
+        this.elasticIPs = Collections.unmodifiableList(elasticIPs);
+        this.fetchedAt = fetchedAt;
+        this.elasticIPsFetchedAt = elasticIPsFetchedAt;
+    }
+
+    public Regions getRegion() {
+        return region;
+    }
+
+    public Set<Instance> getInstances() {
+        return instances;
+    }
+
+    public List<Address> getElasticIPs() {
+        return elasticIPs;
+    }
+
+    public LocalDateTime getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public LocalDateTime getElasticIPsFetchedAt() {
+        return elasticIPsFetchedAt;
+    }
+
+    /**
+     * @return the query index of the instances, built on first use and shared by every reader of the snapshot
+     */
+    public InstanceIndex getIndex() {
+        InstanceIndex result = index;
+        if (result == null) {
+            synchronized (this) {
+                result = index;
+                if (result == null) {
+                    index = result = new InstanceIndex(region, instances, elasticIPs);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param updates functions giving the new version of the instance of each id, unknown ids being ignored
+     * @return copy of this snapshot with the updated instances, this snapshot if none of them actually changed
+     */
+    public InventorySnapshot withUpdates(Map<String, UnaryOperator<Instance>> updates) {
+        final Set<Instance> updatedInstances = new HashSet<>(instances.size() * 2);
+        boolean changed = false;
+        for (Instance instance : instances) {
+            final UnaryOperator<Instance> update = updates.get(instance.getInstanceId());
+            final Instance updated = update == null ? instance : update.apply(instance);
+            changed |= !updated.equals(instance);
+            updatedInstances.add(updated);
+        }
+        return changed ? new InventorySnapshot(region, updatedInstances, elasticIPs, fetchedAt, elasticIPsFetchedAt) : this;
+    }
+
+    public boolean contains(String instanceId) {
+        return getIndex().find(instanceId) != null;
+    }
+
+    public boolean isOlderThan(Duration maxAge) {
+        return fetchedAt.plus(maxAge).isBefore(LocalDateTime.now());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        InventorySnapshot that = (InventorySnapshot) o;
+
+        if (region != that.region) return false;
+        if (!instances.equals(that.instances)) return false;
+        return elasticIPs.equals(that.elasticIPs);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = region != null ? region.hashCode() : 0;
+        result = 31 * result + instances.hashCode();
+        result = 31 * result + elasticIPs.hashCode();
+        return result;
+    }
+}
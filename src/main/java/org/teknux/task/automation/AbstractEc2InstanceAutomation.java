@@ -1,17 +1,88 @@
 package org.teknux.task.automation;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.regions.Regions;
+import com.amazonaws.services.ec2.model.InstanceStateChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.teknux.api.Ec2Api;
+import org.teknux.service.automation.ISchedulerService;
+import org.teknux.service.client.IEc2ClientService;
 
-public abstract class AbstractEc2InstanceAutomation {
+import java.util.*;
 
+/**
+ * Automation acting on one instance. Automations of the same type and region coming due together are sent as
+ * multi-instance EC2 calls, the resulting state changes being mapped back to each automation
+ */
+public abstract class AbstractEc2InstanceAutomation implements ISchedulerService.Ec2Task, ISchedulerService.BatchTask {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractEc2InstanceAutomation.class);
+
+    private final IEc2ClientService clientService;
     private String instanceId;
     private Regions region;
 
-    public AbstractEc2InstanceAutomation(String instanceId, Regions region) {
+    public AbstractEc2InstanceAutomation(IEc2ClientService clientService, String instanceId, Regions region) {
+        this.clientService = clientService;
         this.instanceId = instanceId;
         this.region = region;
     }
 
+    /**
+     * Applies the automation to all the given instances, reporting the outcome of each of them
+     */
+    protected abstract void apply(Ec2Api api, Set<String> instanceIds, Ec2Api.InstanceOutcomeListener listener);
+
+    @Override
+    public void run() {
+        runBatch(Collections.singletonList(this));
+    }
+
+    @Override
+    public Object getBatchKey() {
+        return Arrays.asList(getClass(), region);
+    }
+
+    @Override
+    public void runBatch(List<? extends Runnable> batch) {
+        final Map<String, AbstractEc2InstanceAutomation> automations = new LinkedHashMap<>();
+        batch.forEach(runnable -> {
+            final AbstractEc2InstanceAutomation automation = (AbstractEc2InstanceAutomation) runnable;
+            automations.putIfAbsent(automation.getInstanceId(), automation);
+        });
+
+        apply(clientService.api(region), automations.keySet(), new Ec2Api.InstanceOutcomeListener() {
+            @Override
+            public void changed(InstanceStateChange stateChange) {
+                final AbstractEc2InstanceAutomation automation = automations.get(stateChange.getInstanceId());
+                if (automation != null) {
+                    automation.applied(stateChange);
+                }
+            }
+
+            @Override
+            public void failed(String instanceId, AmazonServiceException e) {
+                automations.get(instanceId).failed(e);
+            }
+        });
+    }
+
+    protected void applied(InstanceStateChange stateChange) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} applied [{} -> {}]", this, stateChange.getPreviousState().getName(), stateChange.getCurrentState().getName());
+        }
+    }
+
+    protected void failed(Exception e) {
+        LOG.error("{} failed", this, e);
+    }
+
+    protected IEc2ClientService getClientService() {
+        return clientService;
+    }
+
+    @Override
     public String getInstanceId() {
         return instanceId;
     }
@@ -20,6 +91,7 @@ public abstract class AbstractEc2InstanceAutomation {
         this.instanceId = instanceId;
     }
 
+    @Override
     public Regions getRegion() {
         return region;
     }
@@ -45,4 +117,9 @@ public abstract class AbstractEc2InstanceAutomation {
         result = 31 * result + (region != null ? region.hashCode() : 0);
         return result;
     }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s@%s]", getClass().getSimpleName(), instanceId, region);
+    }
 }
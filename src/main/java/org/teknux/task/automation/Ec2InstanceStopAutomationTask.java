@@ -2,20 +2,18 @@ package org.teknux.task.automation;
 
 import com.amazonaws.regions.Regions;
 import org.teknux.api.Ec2Api;
+import org.teknux.service.client.IEc2ClientService;
 
-import java.util.HashSet;
 import java.util.Set;
 
 public class Ec2InstanceStopAutomationTask extends AbstractEc2InstanceAutomation implements Runnable {
 
-    public Ec2InstanceStopAutomationTask(String instanceId, Regions region) {
-        super(instanceId, region);
+    public Ec2InstanceStopAutomationTask(IEc2ClientService clientService, String instanceId, Regions region) {
+        super(clientService, instanceId, region);
     }
 
     @Override
-    public void run() {
-        final Set<String> ids = new HashSet<>(1);
-        ids.add(getInstanceId());
-        Ec2Api.instance(getRegion()).stopInstances(ids);
+    protected void apply(Ec2Api api, Set<String> instanceIds, Ec2Api.InstanceOutcomeListener listener) {
+        api.stopInstances(instanceIds, listener);
     }
 }
@@ -0,0 +1,179 @@
+package org.teknux.ui.data;
+
+import com.amazonaws.regions.Regions;
+import com.vaadin.data.provider.AbstractBackEndDataProvider;
+import com.vaadin.data.provider.Query;
+import com.vaadin.data.provider.QuerySortOrder;
+import com.vaadin.shared.data.sort.SortDirection;
+import org.teknux.service.automation.IEc2AutomationService;
+import org.teknux.service.automation.ISchedulerService;
+import org.teknux.service.broadcast.InventoryDelta;
+import org.teknux.service.inventory.InstanceFilter;
+import org.teknux.service.inventory.InstanceIndex;
+import org.teknux.service.inventory.InstanceRow;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Lazy instance rows provider keyed by instance id, sorting and filtering against the shared index of the
+ * current inventory snapshot so that only the visible window of rows is materialized and sent.
+ * When several regions are shown, their indexes are merged as their snapshots come in.
+ */
+public class InstanceDataProvider extends AbstractBackEndDataProvider<InstanceRow, InstanceFilter> {
+
+    public static final String SORT_NAME = "name";
+    public static final String SORT_STATE = "state";
+    public static final String SORT_ID = "id";
+    public static final String SORT_PUBLIC_IP = "publicIp";
+    public static final String SORT_LAUNCH_TIME = "launchTime";
+    public static final String SORT_REGION = "region";
+
+    private static final Map<String, InstanceIndex.SortKey> SORT_KEYS = new HashMap<>();
+
+    static {
+        SORT_KEYS.put(SORT_NAME, InstanceIndex.SortKey.NAME);
+        SORT_KEYS.put(SORT_STATE, InstanceIndex.SortKey.STATE);
+        SORT_KEYS.put(SORT_ID, InstanceIndex.SortKey.ID);
+        SORT_KEYS.put(SORT_PUBLIC_IP, InstanceIndex.SortKey.PUBLIC_IP);
+        SORT_KEYS.put(SORT_LAUNCH_TIME, InstanceIndex.SortKey.LAUNCH_TIME);
+        SORT_KEYS.put(SORT_REGION, InstanceIndex.SortKey.REGION);
+    }
+
+    private final IEc2AutomationService ec2AutomationService;
+
+    private final Map<Regions, InstanceIndex> regionIndexes = new EnumMap<>(Regions.class);
+    private volatile InstanceIndex index = InstanceIndex.merge(Collections.emptyList());
+    private volatile Map<String, ISchedulerService.Schedule> startSchedules = Collections.emptyMap();
+    private volatile Map<String, ISchedulerService.Schedule> stopSchedules = Collections.emptyMap();
+    private final Predicate<String> scheduled = instanceId -> startSchedules.containsKey(instanceId) || stopSchedules.containsKey(instanceId);
+
+    //last selection, a size query is usually followed by fetches of the same filter
+    private InstanceFilter lastFilter;
+    private List<InstanceIndex.Sort> lastSorts;
+    private int[] lastSelection;
+
+    public InstanceDataProvider(IEc2AutomationService ec2AutomationService) {
+        this.ec2AutomationService = ec2AutomationService;
+    }
+
+    @Override
+    public Object getId(InstanceRow item) {
+        return item.getInstanceId();
+    }
+
+    public InstanceIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return regions whose inventory has been received since the last clear
+     */
+    public synchronized Set<Regions> getLoadedRegions() {
+        return regionIndexes.isEmpty() ? EnumSet.noneOf(Regions.class) : EnumSet.copyOf(regionIndexes.keySet());
+    }
+
+    /**
+     * Drops every row, before showing other regions
+     */
+    public void clear() {
+        synchronized (this) {
+            regionIndexes.clear();
+            index = InstanceIndex.merge(Collections.emptyList());
+        }
+        refreshAll();
+    }
+
+    /**
+     * @return the row of the index with the plans known at last refresh
+     */
+    private InstanceRow withSchedules(InstanceRow row) {
+        return row.withSchedules(startSchedules.get(row.getInstanceId()), stopSchedules.get(row.getInstanceId()));
+    }
+
+    @Override
+    protected Stream<InstanceRow> fetchFromBackEnd(Query<InstanceRow, InstanceFilter> query) {
+        final int[] selection = select(query.getFilter().orElse(InstanceFilter.NONE), toSorts(query.getSortOrders()));
+        final InstanceIndex current = index;
+        final int from = Math.min(query.getOffset(), selection.length);
+        final int to = Math.min(from + query.getLimit(), selection.length);
+        return IntStream.range(from, to).mapToObj(i -> withSchedules(current.get(selection[i])));
+    }
+
+    @Override
+    protected int sizeInBackEnd(Query<InstanceRow, InstanceFilter> query) {
+        final InstanceFilter filter = query.getFilter().orElse(InstanceFilter.NONE);
+        if (filter.isEmpty()) {
+            return index.size();
+        }
+        //the count does not depend on the order, reuse the last one to hit the cached selection
+        return select(filter, lastSorts == null ? Collections.emptyList() : lastSorts).length;
+    }
+
+    private synchronized int[] select(InstanceFilter filter, List<InstanceIndex.Sort> sorts) {
+        if (lastSelection == null || !filter.equals(lastFilter) || !sorts.equals(lastSorts)) {
+            lastSelection = index.select(filter, sorts, scheduled);
+            lastFilter = filter;
+            lastSorts = sorts;
+        }
+        return lastSelection;
+    }
+
+    private static List<InstanceIndex.Sort> toSorts(List<QuerySortOrder> sortOrders) {
+        final List<InstanceIndex.Sort> sorts = new ArrayList<>(sortOrders.size());
+        sortOrders.forEach(sortOrder -> {
+            final InstanceIndex.SortKey key = SORT_KEYS.get(sortOrder.getSorted());
+            if (key != null) {
+                sorts.add(new InstanceIndex.Sort(key, sortOrder.getDirection() == SortDirection.ASCENDING));
+            }
+        });
+        return sorts;
+    }
+
+    public void apply(InventoryDelta delta) {
+        synchronized (this) {
+            regionIndexes.put(delta.getRegion(), delta.getSnapshot().getIndex());
+            index = InstanceIndex.merge(regionIndexes.values());
+            lastSelection = null;
+        }
+
+        if (delta.isInitial()) {
+            refreshAll();
+            return;
+        }
+
+        loadSchedules();
+
+        //also swaps the selected rows for the up to date ones
+        delta.getUpdated().forEach(instance -> {
+            final InstanceRow row = index.find(instance.getInstanceId());
+            if (row != null) {
+                refreshItem(withSchedules(row));
+            }
+        });
+
+        //size changes or elastic IP changes (rendered by every row) require a full refresh
+        if (!delta.getAdded().isEmpty() || !delta.getRemoved().isEmpty() || delta.isElasticIPsChanged()) {
+            refreshAll();
+        }
+    }
+
+    /**
+     * Refreshes every row, reloading the plans of the instances
+     */
+    @Override
+    public void refreshAll() {
+        loadSchedules();
+        synchronized (this) {
+            lastSelection = null;
+        }
+        super.refreshAll();
+    }
+
+    private void loadSchedules() {
+        startSchedules = ec2AutomationService.getStartSchedules();
+        stopSchedules = ec2AutomationService.getStopSchedules();
+    }
+}
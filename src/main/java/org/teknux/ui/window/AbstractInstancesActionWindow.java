@@ -1,26 +1,23 @@
 package org.teknux.ui.window;
 
-import com.amazonaws.regions.Regions;
-import com.amazonaws.services.ec2.model.Instance;
 import com.vaadin.server.Sizeable;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.Window;
 import com.vaadin.ui.themes.ValoTheme;
 import org.teknux.service.automation.IEc2AutomationService;
+import org.teknux.service.inventory.InstanceRow;
 
 import java.util.Set;
 
 public abstract class AbstractInstancesActionWindow extends Window {
 
-    private Set<Instance> selection;
-    private Regions region;
+    private Set<InstanceRow> selection;
     private IEc2AutomationService ec2AutomationService;
 
-    public AbstractInstancesActionWindow(String title, Set<Instance> selection, Regions region, IEc2AutomationService ec2AutomationService) {
+    public AbstractInstancesActionWindow(String title, Set<InstanceRow> selection, IEc2AutomationService ec2AutomationService) {
         super(title);
         this.selection = selection;
-        this.region = region;
         this.ec2AutomationService = ec2AutomationService;
 
         setResizable(false);
@@ -34,14 +31,10 @@ public abstract class AbstractInstancesActionWindow extends Window {
 
     protected abstract void createContent(VerticalLayout layout);
 
-    public Set<Instance> getSelection() {
+    public Set<InstanceRow> getSelection() {
         return selection;
     }
 
-    public Regions getRegion() {
-        return region;
-    }
-
     public IEc2AutomationService getEc2AutomationService() {
         return ec2AutomationService;
     }
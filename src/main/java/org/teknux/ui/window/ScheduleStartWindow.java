@@ -1,11 +1,11 @@
 package org.teknux.ui.window;
 
-import com.amazonaws.regions.Regions;
-import com.amazonaws.services.ec2.model.Instance;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.VerticalLayout;
 import org.teknux.service.automation.IEc2AutomationService;
+import org.teknux.service.inventory.InstanceRow;
 import org.teknux.service.automation.ISchedulerService;
+import org.teknux.service.automation.OfficeHours;
 import org.teknux.service.automation.Schedule;
 
 import java.time.DayOfWeek;
@@ -16,26 +16,26 @@ import java.util.Set;
 
 public class ScheduleStartWindow extends AbstractInstancesActionWindow {
 
-    public ScheduleStartWindow(Set<Instance> selection, Regions region, IEc2AutomationService ec2AutomationService) {
-        super("Start Instance(s) For", selection, region, ec2AutomationService);
+    public ScheduleStartWindow(Set<InstanceRow> selection, IEc2AutomationService ec2AutomationService) {
+        super("Start Instance(s) For", selection, ec2AutomationService);
     }
 
     protected void createContent(VerticalLayout layout) {
         Button tenMinutesBtn = createButton("10 Minutes", event1 -> {
             final LocalDateTime now = LocalDateTime.now();
-            doScheduleRunBetween(getSelection(), getRegion(), new Schedule(now), new Schedule(now.plusMinutes(10)));
+            doScheduleRunBetween(getSelection(), new Schedule(now), new Schedule(now.plusMinutes(10)));
             close();
         });
 
         Button oneHourBtn = createButton("1 Hour", event1 -> {
             final LocalDateTime now = LocalDateTime.now();
-            doScheduleRunBetween(getSelection(), getRegion(), new Schedule(now), new Schedule(now.plusHours(1)));
+            doScheduleRunBetween(getSelection(), new Schedule(now), new Schedule(now.plusHours(1)));
             close();
         });
 
         Button tenHoursBtn = createButton("10 Hours", event1 -> {
             final LocalDateTime now = LocalDateTime.now();
-            doScheduleRunBetween(getSelection(), getRegion(), new Schedule(now), new Schedule(now.plusHours(10)));
+            doScheduleRunBetween(getSelection(), new Schedule(now), new Schedule(now.plusHours(10)));
             close();
         });
 
@@ -43,7 +43,7 @@ public class ScheduleStartWindow extends AbstractInstancesActionWindow {
             final LocalDateTime startOfWeek = LocalDateTime.now();
             final LocalDateTime endOfWeek = startOfWeek.toLocalDate().with(TemporalAdjusters.nextOrSame(DayOfWeek.SATURDAY)).atStartOfDay();
 
-            doScheduleRunBetween(getSelection(), getRegion(), new Schedule(startOfWeek), new Schedule(endOfWeek));
+            doScheduleRunBetween(getSelection(), new Schedule(startOfWeek), new Schedule(endOfWeek));
             close();
         });
         final DayOfWeek todayDay = LocalDateTime.now().getDayOfWeek();
@@ -56,7 +56,7 @@ public class ScheduleStartWindow extends AbstractInstancesActionWindow {
             final LocalDateTime nextStartOfWeek = LocalDateTime.now().toLocalDate().with(TemporalAdjusters.next(DayOfWeek.MONDAY)).atStartOfDay();
             final LocalDateTime nextEndOfWeek = nextStartOfWeek.toLocalDate().with(TemporalAdjusters.next(DayOfWeek.SATURDAY)).atStartOfDay();
 
-            doScheduleRunBetween(getSelection(), getRegion(), new Schedule(nextStartOfWeek), new Schedule(nextEndOfWeek));
+            doScheduleRunBetween(getSelection(), new Schedule(nextStartOfWeek), new Schedule(nextEndOfWeek));
             close();
         });
 
@@ -64,16 +64,23 @@ public class ScheduleStartWindow extends AbstractInstancesActionWindow {
             final LocalDateTime now = LocalDateTime.now();
             final LocalDateTime nextMonth = now.toLocalDate().plusMonths(1).atStartOfDay();
 
-            doScheduleRunBetween(getSelection(), getRegion(), new Schedule(now), new Schedule(nextMonth));
+            doScheduleRunBetween(getSelection(), new Schedule(now), new Schedule(nextMonth));
             close();
         });
 
-        layout.addComponents(tenMinutesBtn, oneHourBtn, tenHoursBtn, workweekBtn,  nextWorkweekBtn, forOneMonthBtn);
+        final OfficeHours officeHours = getEc2AutomationService().getOfficeHours();
+        Button officeHoursBtn = createButton("Office Hours, Every Week", event1 -> {
+            getSelection().forEach(instance -> getEc2AutomationService().runDuring(instance.getInstanceId(), instance.getRegion(), officeHours));
+            close();
+        });
+        officeHoursBtn.setDescription(String.format("Started at the beginning and stopped at the end of the office hours (%s), until cancelled", officeHours));
+
+        layout.addComponents(tenMinutesBtn, oneHourBtn, tenHoursBtn, workweekBtn,  nextWorkweekBtn, forOneMonthBtn, officeHoursBtn);
     }
 
-    protected void doScheduleRunBetween(Set<Instance> instances, Regions region, ISchedulerService.Schedule startTime, ISchedulerService.Schedule endTime) {
+    protected void doScheduleRunBetween(Set<InstanceRow> instances, ISchedulerService.Schedule startTime, ISchedulerService.Schedule endTime) {
         instances.stream().forEach(instance -> {
-            getEc2AutomationService().runBetween(instance.getInstanceId(), region, startTime, endTime);
+            getEc2AutomationService().runBetween(instance.getInstanceId(), instance.getRegion(), startTime, endTime);
         });
     }
 }
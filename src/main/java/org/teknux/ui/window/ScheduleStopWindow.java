@@ -1,11 +1,12 @@
 package org.teknux.ui.window;
 
-import com.amazonaws.regions.Regions;
-import com.amazonaws.services.ec2.model.Instance;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.VerticalLayout;
 import org.teknux.service.automation.IEc2AutomationService;
+import org.teknux.service.inventory.InstanceRow;
 import org.teknux.service.automation.ISchedulerService;
+import org.teknux.service.automation.OfficeHours;
+import org.teknux.service.automation.RecurringSchedule;
 import org.teknux.service.automation.Schedule;
 
 import java.time.LocalDateTime;
@@ -13,48 +14,55 @@ import java.util.Set;
 
 public class ScheduleStopWindow extends ScheduleStartWindow {
 
-    public ScheduleStopWindow(Set<Instance> selection, Regions region, IEc2AutomationService ec2AutomationService) {
-        super(selection, region, ec2AutomationService);
+    public ScheduleStopWindow(Set<InstanceRow> selection, IEc2AutomationService ec2AutomationService) {
+        super(selection, ec2AutomationService);
         setCaption("Stop Instance(s) In");
     }
 
     protected void createContent(VerticalLayout layout) {
         Button tenMinutesBtn = createButton("10 Minutes", event1 -> {
             final LocalDateTime now = LocalDateTime.now();
-            doScheduleStop(getSelection(), getRegion(), new Schedule(now.plusMinutes(10)));
+            doScheduleStop(getSelection(), new Schedule(now.plusMinutes(10)));
             close();
         });
 
         Button oneHourBtn = createButton("1 Hour", event1 -> {
             final LocalDateTime now = LocalDateTime.now();
-            doScheduleStop(getSelection(), getRegion(), new Schedule(now.plusHours(1)));
+            doScheduleStop(getSelection(), new Schedule(now.plusHours(1)));
             close();
         });
 
         Button tenHoursBtn = createButton("10 Hours", event1 -> {
             final LocalDateTime now = LocalDateTime.now();
-            doScheduleStop(getSelection(), getRegion(), new Schedule(now.plusHours(10)));
+            doScheduleStop(getSelection(), new Schedule(now.plusHours(10)));
             close();
         });
 
         Button workweekBtn = createButton("5 Days", event1 -> {
             final LocalDateTime now = LocalDateTime.now();
-            doScheduleStop(getSelection(), getRegion(), new Schedule(now.toLocalDate().plusDays(5).atStartOfDay()));
+            doScheduleStop(getSelection(), new Schedule(now.toLocalDate().plusDays(5).atStartOfDay()));
             close();
         });
 
         Button nextMonthBtn = createButton("1 Month", event1 -> {
             final LocalDateTime inOneMonth = LocalDateTime.now().toLocalDate().plusMonths(1).atStartOfDay();
-            doScheduleStop(getSelection(), getRegion(), new Schedule(inOneMonth));
+            doScheduleStop(getSelection(), new Schedule(inOneMonth));
             close();
         });
 
-        layout.addComponents(tenMinutesBtn, oneHourBtn, tenHoursBtn, workweekBtn, nextMonthBtn);
+        final OfficeHours officeHours = getEc2AutomationService().getOfficeHours();
+        Button officeHoursEndBtn = createButton("End of Office Hours, Every Week", event1 -> {
+            doScheduleStop(getSelection(), RecurringSchedule.first(officeHours.endCron(), LocalDateTime.now()));
+            close();
+        });
+        officeHoursEndBtn.setDescription(String.format("Stopped at the end of the office hours (%s), until cancelled", officeHours));
+
+        layout.addComponents(tenMinutesBtn, oneHourBtn, tenHoursBtn, workweekBtn, nextMonthBtn, officeHoursEndBtn);
     }
 
-    protected void doScheduleStop(Set<Instance> instances, Regions region, ISchedulerService.Schedule endTime) {
+    protected void doScheduleStop(Set<InstanceRow> instances, ISchedulerService.Schedule endTime) {
         instances.stream().forEach(instance -> {
-            getEc2AutomationService().stopOn(instance.getInstanceId(), region, endTime);
+            getEc2AutomationService().stopOn(instance.getInstanceId(), instance.getRegion(), endTime);
         });
     }
 }
@@ -0,0 +1,24 @@
+package org.teknux.api.model;
+
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class Ec2StatesTest {
+
+    @Test
+    public void ignoresTheHighByteOfStateCodes() {
+        assertEquals(Optional.of(Ec2States.PENDING), Ec2States.fromCode(0));
+        assertEquals(Optional.of(Ec2States.RUNNING), Ec2States.fromCode(272));
+        assertEquals(Optional.of(Ec2States.STOPPED), Ec2States.fromCode(80 | 0x200));
+        assertFalse(Ec2States.fromCode(99).isPresent());
+    }
+
+    @Test
+    public void findsStatesByEc2Name() {
+        assertEquals(Optional.of(Ec2States.SHUTTING_DOWN), Ec2States.fromName("shutting-down"));
+        assertFalse(Ec2States.fromName("unknown").isPresent());
+    }
+}
@@ -0,0 +1,112 @@
+package org.teknux.service.automation;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.*;
+
+public class CronTest {
+
+    private static final ZoneId PARIS = ZoneId.of("Europe/Paris");
+
+    /**
+     * @return the given time of the zone as a time of the system time zone, as taken and returned by cron
+     */
+    private static LocalDateTime at(ZoneId zone, int year, int month, int day, int hour, int minute) {
+        return toSystem(ZonedDateTime.of(year, month, day, hour, minute, 0, 0, zone));
+    }
+
+    private static LocalDateTime toSystem(ZonedDateTime dateTime) {
+        return dateTime.withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+    }
+
+    private static LocalDateTime utc(int year, int month, int day, int hour, int minute) {
+        return at(ZoneOffset.UTC, year, month, day, hour, minute);
+    }
+
+    @Test
+    public void returnsTheNextOccurrenceStrictlyAfter() {
+        final Cron cron = Cron.parse("0 8 * * *", ZoneOffset.UTC);
+        assertEquals(utc(2026, 10, 19, 8, 0), cron.nextAfter(utc(2026, 10, 19, 7, 59)));
+        assertEquals(utc(2026, 10, 20, 8, 0), cron.nextAfter(utc(2026, 10, 19, 8, 0)));
+        assertEquals(utc(2026, 10, 20, 8, 0), cron.nextAfter(utc(2026, 10, 19, 8, 0).plusSeconds(30)));
+    }
+
+    @Test
+    public void movesOccurrencesSkippedByADstGapForward() {
+        //clocks go from 02:00 to 03:00 on 2026-03-29 in Paris
+        final Cron cron = Cron.parse("30 2 * * *", PARIS);
+        assertEquals(toSystem(ZonedDateTime.of(2026, 3, 29, 3, 30, 0, 0, PARIS)), cron.nextAfter(at(PARIS, 2026, 3, 29, 0, 0)));
+        assertEquals(at(PARIS, 2026, 3, 30, 2, 30), cron.nextAfter(at(PARIS, 2026, 3, 29, 3, 30)));
+    }
+
+    @Test
+    public void takesOccurrencesRepeatedByADstOverlapOnce() {
+        //clocks go from 03:00 back to 02:00 on 2026-10-25 in Paris
+        final Cron cron = Cron.parse("30 2 * * *", PARIS);
+        final LocalDateTime first = cron.nextAfter(at(PARIS, 2026, 10, 25, 0, 0));
+        assertEquals(toSystem(ZonedDateTime.of(2026, 10, 25, 0, 30, 0, 0, ZoneOffset.UTC)), first);
+        assertEquals(at(PARIS, 2026, 10, 26, 2, 30), cron.nextAfter(first));
+    }
+
+    @Test
+    public void appliesRangesListsAndSteps() {
+        final Cron cron = Cron.parse("*/15 8-18/2 * * MON-FRI", ZoneOffset.UTC);
+        //Friday
+        assertEquals(utc(2026, 10, 16, 18, 45), cron.nextAfter(utc(2026, 10, 16, 18, 30)));
+        assertEquals(utc(2026, 10, 19, 8, 0), cron.nextAfter(utc(2026, 10, 16, 18, 45)));
+        //Monday, 9 is not in the hours
+        assertEquals(utc(2026, 10, 19, 10, 0), cron.nextAfter(utc(2026, 10, 19, 8, 45)));
+
+        assertEquals(utc(2026, 10, 19, 10, 30), Cron.parse("0,30 10 * * *", ZoneOffset.UTC).nextAfter(utc(2026, 10, 19, 10, 0)));
+    }
+
+    @Test
+    public void acceptsNamesAndSevenForSunday() {
+        final LocalDateTime after = utc(2026, 10, 19, 0, 0);
+        final LocalDateTime nextSundayOfJanuary = utc(2027, 1, 3, 12, 0);
+        assertEquals(nextSundayOfJanuary, Cron.parse("0 12 * JAN SUN", ZoneOffset.UTC).nextAfter(after));
+        assertEquals(nextSundayOfJanuary, Cron.parse("0 12 * 1 7", ZoneOffset.UTC).nextAfter(after));
+        assertEquals(nextSundayOfJanuary, Cron.parse("0 12 ? jan 0", ZoneOffset.UTC).nextAfter(after));
+    }
+
+    @Test
+    public void matchesEitherDayFieldWhenBothAreRestricted() {
+        //the 13th or any Friday, 2026-01-02 being a Friday and 2026-01-13 a Tuesday
+        final Cron cron = Cron.parse("0 0 13 * FRI", ZoneOffset.UTC);
+        assertEquals(utc(2026, 1, 2, 0, 0), cron.nextAfter(utc(2026, 1, 1, 0, 0)));
+        assertEquals(utc(2026, 1, 9, 0, 0), cron.nextAfter(utc(2026, 1, 2, 0, 0)));
+        assertEquals(utc(2026, 1, 13, 0, 0), cron.nextAfter(utc(2026, 1, 9, 0, 0)));
+
+        //a single restricted day field must match on its own
+        assertEquals(utc(2026, 2, 13, 0, 0), Cron.parse("0 0 13 * *", ZoneOffset.UTC).nextAfter(utc(2026, 1, 13, 0, 0)));
+    }
+
+    @Test
+    public void findsRareDaysAndGivesUpOnImpossibleOnes() {
+        assertEquals(utc(2028, 2, 29, 0, 0), Cron.parse("0 0 29 2 *", ZoneOffset.UTC).nextAfter(utc(2026, 10, 19, 0, 0)));
+        assertNull(Cron.parse("0 0 30 2 *", ZoneOffset.UTC).nextAfter(utc(2026, 10, 19, 0, 0)));
+    }
+
+    @Test
+    public void rejectsInvalidExpressions() {
+        for (String expression : new String[]{"0 8 * *", "0 8 * * * *", "60 8 * * *", "0 24 * * *", "0 8 0 * *", "0 8 * 13 *",
+                "0 8 * * 8", "5-1 8 * * *", "x 8 * * *", "*/0 8 * * *", "0 8 * * FOO"}) {
+            try {
+                Cron.parse(expression, ZoneOffset.UTC);
+                fail("Accepted " + expression);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void equalsIgnoresCaseAndSpacing() {
+        assertEquals(Cron.parse("0 8 * * mon-fri", PARIS), Cron.parse(" 0  8 * * MON-FRI ", PARIS));
+        assertNotEquals(Cron.parse("0 8 * * MON-FRI", PARIS), Cron.parse("0 8 * * MON-FRI", ZoneOffset.UTC));
+    }
+}
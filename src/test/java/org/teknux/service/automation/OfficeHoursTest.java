@@ -0,0 +1,83 @@
+package org.teknux.service.automation;
+
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.EnumSet;
+
+import static java.time.DayOfWeek.*;
+import static org.junit.Assert.*;
+
+public class OfficeHoursTest {
+
+    private static final ZoneId PARIS = ZoneId.of("Europe/Paris");
+
+    private static LocalDateTime paris(int year, int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(year, month, day, hour, minute, 0, 0, PARIS).withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+    }
+
+    @Test
+    public void parsesDaysHoursAndZone() {
+        final OfficeHours officeHours = OfficeHours.parse(" MON-FRI  08:00-20:00 Europe/Paris ", ZoneOffset.UTC);
+        assertEquals(EnumSet.of(MONDAY, TUESDAY, WEDNESDAY, THURSDAY, FRIDAY), officeHours.getDays());
+        assertEquals(LocalTime.of(8, 0), officeHours.getStart());
+        assertEquals(LocalTime.of(20, 0), officeHours.getEnd());
+        assertEquals(PARIS, officeHours.getZone());
+        assertEquals(Cron.parse("0 8 * * MON,TUE,WED,THU,FRI", PARIS), officeHours.startCron());
+        assertEquals(Cron.parse("0 20 * * MON,TUE,WED,THU,FRI", PARIS), officeHours.endCron());
+    }
+
+    @Test
+    public void usesTheDefaultZoneWhenThereIsNone() {
+        assertEquals(ZoneOffset.UTC, OfficeHours.parse("MON-FRI 08:00-20:00", ZoneOffset.UTC).getZone());
+    }
+
+    @Test
+    public void parsesListsAndRangesWrappingAroundTheWeek() {
+        assertEquals(EnumSet.of(FRIDAY, SATURDAY, SUNDAY, MONDAY), OfficeHours.parse("FRI-MON 09:00-17:30", PARIS).getDays());
+        assertEquals(EnumSet.of(MONDAY, WEDNESDAY, SATURDAY, SUNDAY), OfficeHours.parse("mon,wed,SAT-sun 09:00-17:30", PARIS).getDays());
+        assertEquals(EnumSet.of(SUNDAY), OfficeHours.parse("SUN 09:00-17:30", PARIS).getDays());
+    }
+
+    @Test
+    public void rejectsInvalidOfficeHours() {
+        for (String text : new String[]{"MON-FRI", "MON-FRI 08:00-20:00 Europe/Paris extra", "MON-FRI 20:00-08:00", "MON-FRI 08:00-08:00",
+                "MON-FRI 08:00", "MON-FRI 8h-20h", "XYZ 08:00-20:00", "MON-XYZ 08:00-20:00", "MON-FRI 08:00-20:00 Mars/Olympus"}) {
+            try {
+                OfficeHours.parse(text, PARIS);
+                fail("Accepted " + text);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void containsTimesWithinTheHoursOfTheDays() {
+        final OfficeHours officeHours = OfficeHours.parse("MON-FRI 08:00-20:00", PARIS);
+        //2026-10-16 is a Friday
+        assertFalse(officeHours.contains(paris(2026, 10, 16, 7, 59)));
+        assertTrue(officeHours.contains(paris(2026, 10, 16, 8, 0)));
+        assertTrue(officeHours.contains(paris(2026, 10, 16, 19, 59)));
+        assertFalse(officeHours.contains(paris(2026, 10, 16, 20, 0)));
+        assertFalse(officeHours.contains(paris(2026, 10, 17, 12, 0)));
+    }
+
+    @Test
+    public void startsAndEndsOnTheOfficeDaysOnly() {
+        final OfficeHours officeHours = OfficeHours.parse("MON-FRI 08:00-20:00", PARIS);
+        assertEquals(paris(2026, 10, 19, 8, 0), officeHours.startCron().nextAfter(paris(2026, 10, 16, 8, 0)));
+        assertEquals(paris(2026, 10, 19, 20, 0), officeHours.endCron().nextAfter(paris(2026, 10, 16, 20, 0)));
+    }
+
+    @Test
+    public void keepsTheDaysOfItsDescription() {
+        final OfficeHours officeHours = new OfficeHours(EnumSet.of(DayOfWeek.TUESDAY, DayOfWeek.MONDAY), LocalTime.of(9, 0), LocalTime.of(17, 30), PARIS);
+        assertEquals("MON,TUE 09:00-17:30 Europe/Paris", officeHours.toString());
+        assertEquals(officeHours.getDays(), OfficeHours.parse(officeHours.toString(), ZoneOffset.UTC).getDays());
+    }
+}
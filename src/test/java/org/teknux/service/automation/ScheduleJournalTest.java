@@ -0,0 +1,244 @@
+package org.teknux.service.automation;
+
+import com.amazonaws.regions.Regions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+public class ScheduleJournalTest {
+
+    private static final int MAGIC = 0x45433253;
+    private static final int HEADER_SIZE = 5;
+    private static final byte PLAN = 1;
+    private static final byte CANCEL = 2;
+
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2026, 10, 19, 8, 0);
+    private static final Cron WEEKDAY_EVENINGS = Cron.parse("0 20 * * MON-FRI", ZoneId.of("Europe/Paris"));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private Path journalFile;
+    private ScheduleJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot().toPath();
+        journalFile = directory.resolve(ScheduleJournal.JOURNAL_FILE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private List<ScheduleJournal.Record> reopen() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        journal = new ScheduleJournal(directory, 100);
+        return new ArrayList<>(journal.open());
+    }
+
+    private static void assertRecord(ScheduleJournal.Record record, String type, String instanceId, LocalDateTime when, Cron cron) {
+        assertEquals(type, record.type);
+        assertEquals(instanceId, record.instanceId);
+        assertEquals(Regions.EU_WEST_1, record.region);
+        assertEquals(when, record.when);
+        assertEquals(cron, record.cron);
+    }
+
+    @Test
+    public void replaysPlansCancelsAndFiredRecords() throws IOException {
+        assertTrue(reopen().isEmpty());
+        journal.planned("start", "i-1", Regions.EU_WEST_1, MONDAY, null);
+        journal.planned("stop", "i-1", Regions.EU_WEST_1, MONDAY.plusHours(12).plusNanos(5), WEEKDAY_EVENINGS);
+        journal.planned("start", "i-2", Regions.EU_WEST_1, MONDAY, null);
+        journal.planned("stop", "i-2", Regions.EU_WEST_1, MONDAY, null);
+        journal.cancelled("start", "i-2", Regions.EU_WEST_1);
+        journal.fired("stop", "i-2", Regions.EU_WEST_1);
+        //planned again, it moves after the others
+        journal.planned("start", "i-1", Regions.EU_WEST_1, MONDAY.plusDays(1), null);
+
+        final List<ScheduleJournal.Record> live = reopen();
+        assertEquals(2, live.size());
+        assertRecord(live.get(0), "stop", "i-1", MONDAY.plusHours(12).plusNanos(5), WEEKDAY_EVENINGS);
+        assertRecord(live.get(1), "start", "i-1", MONDAY.plusDays(1), null);
+    }
+
+    @Test
+    public void compactionKeepsTheLivePlans() throws IOException {
+        reopen();
+        journal.planned("start", "i-1", Regions.EU_WEST_1, MONDAY, null);
+        journal.planned("start", "i-2", Regions.EU_WEST_1, MONDAY, null);
+        journal.cancelled("start", "i-2", Regions.EU_WEST_1);
+        final List<ScheduleJournal.Record> replayed = reopen();
+        journal.compact(replayed);
+        assertEquals(HEADER_SIZE, Files.size(journalFile));
+        assertTrue(Files.exists(directory.resolve(ScheduleJournal.SNAPSHOT_FILE)));
+
+        journal.planned("stop", "i-1", Regions.EU_WEST_1, MONDAY, WEEKDAY_EVENINGS);
+        final List<ScheduleJournal.Record> live = reopen();
+        assertEquals(2, live.size());
+        assertRecord(live.get(0), "start", "i-1", MONDAY, null);
+        assertRecord(live.get(1), "stop", "i-1", MONDAY, WEEKDAY_EVENINGS);
+    }
+
+    @Test
+    public void dropsATornRecord() throws IOException {
+        reopen();
+        journal.planned("start", "i-1", Regions.EU_WEST_1, MONDAY, null);
+        journal.close();
+        journal = null;
+        final long validLength = Files.size(journalFile);
+        //length of a record whose payload and CRC were never written
+        Files.write(journalFile, ByteBuffer.allocate(10).putInt(40).array(), StandardOpenOption.APPEND);
+
+        final List<ScheduleJournal.Record> live = reopen();
+        assertEquals(1, live.size());
+        assertEquals(validLength, Files.size(journalFile));
+
+        journal.planned("start", "i-2", Regions.EU_WEST_1, MONDAY, null);
+        assertEquals(2, reopen().size());
+    }
+
+    @Test
+    public void dropsACorruptedRecordAndWhatFollows() throws IOException {
+        reopen();
+        journal.planned("start", "i-1", Regions.EU_WEST_1, MONDAY, null);
+        final long firstLength = Files.size(journalFile);
+        journal.planned("start", "i-2", Regions.EU_WEST_1, MONDAY, null);
+        journal.close();
+        journal = null;
+
+        final byte[] bytes = Files.readAllBytes(journalFile);
+        bytes[bytes.length - 1] ^= 0x01;
+        Files.write(journalFile, bytes);
+
+        final List<ScheduleJournal.Record> live = reopen();
+        assertEquals(1, live.size());
+        assertRecord(live.get(0), "start", "i-1", MONDAY, null);
+        assertEquals(firstLength, Files.size(journalFile));
+    }
+
+    @Test
+    public void readsAndUpgradesAVersionOneJournal() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).put((byte) 1).array());
+        bytes.write(versionOneRecord(PLAN, "start", "i-1", MONDAY));
+        bytes.write(versionOneRecord(PLAN, "stop", "i-1", MONDAY.plusHours(12)));
+        bytes.write(versionOneRecord(CANCEL, "start", "i-1", null));
+        Files.write(journalFile, bytes.toByteArray());
+
+        List<ScheduleJournal.Record> live = reopen();
+        assertEquals(1, live.size());
+        assertRecord(live.get(0), "stop", "i-1", MONDAY.plusHours(12), null);
+        assertEquals(2, Files.readAllBytes(journalFile)[4]);
+
+        journal.planned("start", "i-2", Regions.EU_WEST_1, MONDAY, WEEKDAY_EVENINGS);
+        live = reopen();
+        assertEquals(2, live.size());
+        assertRecord(live.get(0), "stop", "i-1", MONDAY.plusHours(12), null);
+        assertRecord(live.get(1), "start", "i-2", MONDAY, WEEKDAY_EVENINGS);
+    }
+
+    @Test
+    public void setsAsideAFileOfUnknownFormat() throws IOException {
+        Files.write(journalFile, "not a journal".getBytes("UTF-8"));
+
+        final Collection<ScheduleJournal.Record> live = reopen();
+        assertTrue(live.isEmpty());
+        assertTrue(Files.exists(directory.resolve(ScheduleJournal.JOURNAL_FILE + ".unreadable")));
+
+        journal.planned("start", "i-1", Regions.EU_WEST_1, MONDAY, null);
+        assertEquals(1, reopen().size());
+    }
+
+    @Test
+    public void skipsRecordsItCannotDecode() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).put((byte) 2).array());
+        bytes.write(versionTwoRecord("start", "i-1", Regions.EU_WEST_1.name(), null, null));
+        bytes.write(versionTwoRecord("start", "i-2", "MARS_NORTH_1", null, null));
+        bytes.write(versionTwoRecord("stop", "i-1", Regions.EU_WEST_1.name(), "0 25 * * *", "Europe/Paris"));
+        bytes.write(versionTwoRecord("stop", "i-2", Regions.EU_WEST_1.name(), "0 20 * * *", "Mars/Olympus"));
+        bytes.write(versionTwoRecord("stop", "i-3", Regions.EU_WEST_1.name(), "0 20 * * MON-FRI", "Europe/Paris"));
+        Files.write(journalFile, bytes.toByteArray());
+
+        final List<ScheduleJournal.Record> live = reopen();
+        assertEquals(2, live.size());
+        assertRecord(live.get(0), "start", "i-1", MONDAY, null);
+        assertRecord(live.get(1), "stop", "i-3", MONDAY, WEEKDAY_EVENINGS);
+
+        //records appended after the skipped ones are replayed
+        journal.planned("start", "i-4", Regions.EU_WEST_1, MONDAY, null);
+        assertEquals(3, reopen().size());
+    }
+
+    /**
+     * Record as written before recurring plans, without the cron flag
+     */
+    private static byte[] versionOneRecord(byte op, String type, String instanceId, LocalDateTime when) throws IOException {
+        final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(payloadBytes)) {
+            out.writeByte(op);
+            out.writeUTF(type);
+            out.writeUTF(instanceId);
+            out.writeUTF(Regions.EU_WEST_1.name());
+            if (op == PLAN) {
+                out.writeLong(when.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(when.getNano());
+            }
+        }
+        return frame(payloadBytes.toByteArray());
+    }
+
+    /**
+     * Plan of Monday as the current version writes it, with names which may not be valid
+     */
+    private static byte[] versionTwoRecord(String type, String instanceId, String region, String cron, String zone) throws IOException {
+        final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(payloadBytes)) {
+            out.writeByte(PLAN);
+            out.writeUTF(type);
+            out.writeUTF(instanceId);
+            out.writeUTF(region);
+            out.writeLong(MONDAY.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(MONDAY.getNano());
+            out.writeBoolean(cron != null);
+            if (cron != null) {
+                out.writeUTF(cron);
+                out.writeUTF(zone);
+            }
+        }
+        return frame(payloadBytes.toByteArray());
+    }
+
+    private static byte[] frame(byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(payload.length + 8).putInt(payload.length).put(payload).putInt((int) crc.getValue()).array();
+    }
+}